@@ -0,0 +1,76 @@
+package cm.antic.cell_geolocator.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Resolved-cell result cache: an in-process L1 in front of the {@code geolocation_cache}
+ * table (L2). How long a result is kept depends on the provider that produced it.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "geolocation.cache")
+public class ResultCacheProperties {
+
+    /** TTL for results of providers not listed in {@link #ttlMinutes}. */
+    private long defaultTtlMinutes = 1440;
+
+    /**
+     * TTL per provider, keyed by the provider name as it appears in providerUsed
+     * ("Combain", "LOCAL_DB_ORANGE"...). A key also matches names it is a prefix of,
+     * so "LOCAL_DB" covers every local table.
+     */
+    private Map<String, Long> ttlMinutes = new LinkedHashMap<>();
+
+    /**
+     * Share of an entry's TTL after which a hit still serves it but re-resolves the cell
+     * in the background. 0, or 1 and above, turns refresh-ahead off.
+     */
+    private double refreshAheadRatio = 0.75;
+
+    private L1 l1 = new L1();
+
+    private L2 l2 = new L2();
+
+    private Negative negative = new Negative();
+
+    @Data
+    public static class L1 {
+
+        private long maxSize = 10000;
+
+        /** Upper bound on how long an entry stays in memory, whatever its TTL. */
+        private long maxTtlMinutes = 60;
+    }
+
+    @Data
+    public static class L2 {
+
+        private boolean enabled = true;
+
+        /** Rows per batched upsert when the write-behind queue is flushed. */
+        private int batchSize = 200;
+
+        /** Writes waiting for a flush; beyond this, new writes are dropped (L1 still has them). */
+        private int maxPending = 10000;
+    }
+
+    /**
+     * Cells that tiers (providers, local tables) did not know. Kept in memory only, and
+     * briefly, so a cell added upstream is picked up soon.
+     */
+    @Data
+    public static class Negative {
+
+        private boolean enabled = true;
+
+        private long maxSize = 50000;
+
+        private long ttlMinutes = 15;
+    }
+}
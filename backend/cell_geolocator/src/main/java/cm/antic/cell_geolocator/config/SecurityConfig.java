@@ -1,5 +1,6 @@
 package cm.antic.cell_geolocator.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -40,13 +41,19 @@ public class SecurityConfig {
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             // Authorization rules
             .authorizeHttpRequests(auth -> auth
+                // Async results and errors are dispatched again without the JWT filter;
+                // the original request was already authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 // Public endpoints
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
                 .requestMatchers("/api/v1/auth/**").permitAll()
+                .requestMatchers("/api/v1/ready").permitAll()
                 // All other endpoints require authentication
                 .requestMatchers("/api/v1/geolocate/priority").permitAll()
                 .requestMatchers("/api/v1/geolocate/cells/by-area").permitAll()
                 .requestMatchers("/api/v1/geolocate/coverage/penetration").permitAll()
+                // Operational state and index reloads: administrators only
+                .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             // Insert JWT filter before Spring's default username/password filter
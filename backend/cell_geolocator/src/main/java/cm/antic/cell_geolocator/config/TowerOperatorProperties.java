@@ -0,0 +1,76 @@
+package cm.antic.cell_geolocator.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Local tower sources, one per (MCC, MNC). Each entry names the table holding the
+ * operator's cells, how its columns map onto the fields we read, and where its
+ * addresses come from. Adding an operator is a matter of adding an entry here.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tower")
+public class TowerOperatorProperties {
+
+    private List<Operator> operators = new ArrayList<>();
+
+    private Routing routing = new Routing();
+
+    @Data
+    public static class Operator {
+
+        /** Short name used in providerUsed ("LOCAL_DB_ORANGE") and in stats. */
+        private String name;
+
+        private int mcc;
+
+        private int mnc;
+
+        private String table;
+
+        /** True if lac/ci are numeric columns (bound with CAST(? AS BIGINT)), false if text. */
+        private boolean numericIds;
+
+        private AddressSource addressSource = AddressSource.REVERSE_GEOCODE;
+
+        private Columns columns = new Columns();
+    }
+
+    /**
+     * SQL expressions for each field. Unset optional fields are selected as NULL.
+     */
+    @Data
+    public static class Columns {
+        private String lac = "lac";
+        private String ci = "ci";
+        private String latitude = "latitude";
+        private String longitude = "longitude";
+        private String siteName;
+        private String btsId;
+        private String technoCell;
+        private String frequenceCell;
+        private String arrondissement;
+        private String departement;
+        private String region;
+        private String azimuth;
+    }
+
+    public enum AddressSource {
+        /** Address resolved from coordinates by ReverseGeocodeService. */
+        REVERSE_GEOCODE,
+        /** Address built from the table's own site/arrondissement/region columns. */
+        TABLE
+    }
+
+    @Data
+    public static class Routing {
+        /** When no operator matches the request's MCC/MNC, probe every operator in order. */
+        private boolean probeAllOnUnknown = false;
+    }
+}
@@ -10,9 +10,6 @@ import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import reactor.core.publisher.Mono;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 
-import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
-import io.github.resilience4j.timelimiter.TimeLimiterConfig;
-import io.github.resilience4j.retry.RetryConfig;
 
 import reactor.netty.http.client.HttpClient;
 
@@ -24,7 +21,7 @@ public class WebClientConfig {
 
         // Reactor Netty Client settings
         HttpClient httpClient = HttpClient.create()
-                .responseTimeout(Duration.ofSeconds(5)) // Max wait time for response
+                .responseTimeout(Duration.ofSeconds(5)) // Hard cap; providers get adaptive deadlines below it (ProviderInvoker)
                 .compress(true)
                 .followRedirect(true);
 
@@ -46,34 +43,4 @@ public class WebClientConfig {
                         .build())
                 .build();
     }
-
-    // Resilience4j Circuit Breaker
-    @Bean
-    public CircuitBreakerConfig circuitBreakerConfig() {
-        return CircuitBreakerConfig.custom()
-                .failureRateThreshold(50)
-                .waitDurationInOpenState(Duration.ofSeconds(10))
-                .slidingWindowSize(5)
-                .permittedNumberOfCallsInHalfOpenState(3)
-                .build();
-    }
-
-    // Time limiter (Prevents async futures hanging)
-    @Bean
-    public TimeLimiterConfig timeLimiterConfig() {
-        return TimeLimiterConfig.custom()
-                .timeoutDuration(Duration.ofSeconds(5))
-                .cancelRunningFuture(true)
-                .build();
-    }
-
-    // Retry Strategy for provider failures
-    @Bean
-    public RetryConfig retryConfig() {
-        return RetryConfig.custom()
-                .maxAttempts(3)
-                .waitDuration(Duration.ofMillis(300))
-                .retryExceptions(Exception.class)
-                .build();
-    }
 }
@@ -0,0 +1,122 @@
+package cm.antic.cell_geolocator.controller;
+
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import cm.antic.cell_geolocator.service.GeolocationCacheService;
+import cm.antic.cell_geolocator.service.RequestLogWriter;
+import cm.antic.cell_geolocator.service.ReverseGeocodeService;
+import cm.antic.cell_geolocator.service.geo.AdminBoundaryService;
+import cm.antic.cell_geolocator.service.provider.ProviderInvoker;
+import cm.antic.cell_geolocator.service.tower.OperatorRegistry;
+import cm.antic.cell_geolocator.service.tower.TowerIndexService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+@Tag(name = "Administration", description = "Operational state of the geolocation service")
+public class AdminController {
+
+    private final TowerIndexService towerIndexService;
+    private final OperatorRegistry operatorRegistry;
+    private final AdminBoundaryService adminBoundaryService;
+    private final ReverseGeocodeService reverseGeocodeService;
+    private final ProviderInvoker providerInvoker;
+    private final GeolocationCacheService geolocationCacheService;
+    private final RequestLogWriter requestLogWriter;
+
+    public AdminController(TowerIndexService towerIndexService, OperatorRegistry operatorRegistry,
+                           AdminBoundaryService adminBoundaryService,
+                           ReverseGeocodeService reverseGeocodeService,
+                           ProviderInvoker providerInvoker,
+                           GeolocationCacheService geolocationCacheService,
+                           RequestLogWriter requestLogWriter) {
+        this.towerIndexService = towerIndexService;
+        this.operatorRegistry = operatorRegistry;
+        this.adminBoundaryService = adminBoundaryService;
+        this.reverseGeocodeService = reverseGeocodeService;
+        this.providerInvoker = providerInvoker;
+        this.geolocationCacheService = geolocationCacheService;
+        this.requestLogWriter = requestLogWriter;
+    }
+
+    @Operation(
+        summary = "Tower index statistics",
+        description = "Returns the in-memory tower index size, load time and hit/miss counters."
+    )
+    @GetMapping("/tower-index")
+    public ResponseEntity<Map<String, Object>> getTowerIndexStats() {
+        return ResponseEntity.ok(towerIndexService.stats());
+    }
+
+    @Operation(
+        summary = "Refresh the tower index",
+        description = "Rebuilds the tower index from the operator tables and swaps it in without "
+                + "blocking lookups. Returns the new index version and the build duration."
+    )
+    @PostMapping("/tower-index/refresh")
+    public ResponseEntity<Map<String, Object>> refreshTowerIndex() {
+        return ResponseEntity.ok(towerIndexService.refresh());
+    }
+
+    @Operation(
+        summary = "Local tower routing statistics",
+        description = "Returns the configured operator sources with per-operator lookup, hit and miss counters."
+    )
+    @GetMapping("/operators")
+    public ResponseEntity<Map<String, Object>> getOperatorStats() {
+        return ResponseEntity.ok(operatorRegistry.stats());
+    }
+
+    @Operation(
+        summary = "Administrative boundary statistics",
+        description = "Returns whether the offline boundary file is loaded, its polygon count and lookup hits/misses."
+    )
+    @GetMapping("/boundaries")
+    public ResponseEntity<Map<String, Object>> getBoundaryStats() {
+        return ResponseEntity.ok(adminBoundaryService.stats());
+    }
+
+    @Operation(
+        summary = "Reverse-geocode cache statistics",
+        description = "Returns the external geocoder cache size, hit ratio, upstream calls made and calls saved."
+    )
+    @GetMapping("/geocode-cache")
+    public ResponseEntity<Map<String, Object>> getGeocodeCacheStats() {
+        return ResponseEntity.ok(reverseGeocodeService.cacheStats());
+    }
+
+    @Operation(
+        summary = "External provider timeouts",
+        description = "Returns each provider's current adaptive timeout, its latency percentiles over the "
+                + "rolling window, and call/timeout counters."
+    )
+    @GetMapping("/providers")
+    public ResponseEntity<Map<String, Object>> getProviderStats() {
+        return ResponseEntity.ok(providerInvoker.stats());
+    }
+
+    @Operation(
+        summary = "Result cache statistics",
+        description = "Returns L1 (memory) and L2 (database) hit ratios of the resolved-cell cache, "
+                + "and the state of its write-behind queue."
+    )
+    @GetMapping("/result-cache")
+    public ResponseEntity<Map<String, Object>> getResultCacheStats() {
+        return ResponseEntity.ok(geolocationCacheService.stats());
+    }
+
+    @Operation(
+        summary = "Request log writer statistics",
+        description = "Returns the depth of the request log write-behind queue, batch insert "
+                + "latencies, and how many rows were sampled out or dropped under load."
+    )
+    @GetMapping("/request-log")
+    public ResponseEntity<Map<String, Object>> getRequestLogStats() {
+        return ResponseEntity.ok(requestLogWriter.stats());
+    }
+}
@@ -1,25 +1,40 @@
 package cm.antic.cell_geolocator.controller;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import cm.antic.cell_geolocator.model.AreaCell;
+import cm.antic.cell_geolocator.model.BatchGeolocationResponse;
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
 import cm.antic.cell_geolocator.model.CoverageRequest;
 import cm.antic.cell_geolocator.model.CoverageResponse;
+import cm.antic.cell_geolocator.model.DeferredAddress;
+import cm.antic.cell_geolocator.model.FallbackCandidate;
 import cm.antic.cell_geolocator.model.GeolocationRequest;
 import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.model.NearbyCell;
+import cm.antic.cell_geolocator.model.RelatedCells;
 import cm.antic.cell_geolocator.service.GeolocationService;
 import cm.antic.cell_geolocator.service.GeolocationAggregatorService;
 import cm.antic.cell_geolocator.service.CellTowerLocalService;
 import cm.antic.cell_geolocator.service.AreaCellService;
+import cm.antic.cell_geolocator.service.BatchGeolocationService;
 import cm.antic.cell_geolocator.service.CoverageService;
+import cm.antic.cell_geolocator.service.DeferredAddressService;
+import cm.antic.cell_geolocator.service.StreamGeolocationService;
 
 import io.github.bucket4j.Bucket;
+import reactor.core.publisher.Flux;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -51,6 +66,20 @@ public class GeolocationController {
     @Autowired
     private CoverageService coverageService;
 
+    @Autowired
+    private DeferredAddressService deferredAddressService;
+
+    @Autowired
+    private BatchGeolocationService batchGeolocationService;
+
+    @Autowired
+    private StreamGeolocationService streamGeolocationService;
+
+    // Database-backed endpoints run here so servlet threads are released meanwhile
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
     // PRIORITY-FIRST FASTEST RESULT FROM PROVIDERS
     @Operation(
         summary = "Resolve geolocation (async priority-first)",
@@ -59,112 +88,151 @@ public class GeolocationController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Resolved",
             content = @Content(schema = @Schema(implementation = GeolocationResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Malformed MCC, MNC, LAC or Cell ID"),
         @ApiResponse(responseCode = "429", description = "Too Many Requests")
     })
     @PostMapping("/geolocate")
-    public ResponseEntity<CompletableFuture<GeolocationResponse>> resolveGeolocation(
+    public CompletableFuture<ResponseEntity<GeolocationResponse>> resolveGeolocation(
             @RequestBody GeolocationRequest request) {
 
+        // Rejects malformed identities (400) before any lookup
+        request.cellIdentity();
+
         if (!rateLimiterBucket.tryConsumeAndReturnRemaining(1).isConsumed()) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
+        }
+
+        return geolocationService.resolveAsync(request).thenApply(ResponseEntity::ok);
+    }
+
+
+    // BATCH OF CELLS
+    @Operation(
+        summary = "Resolve a batch of cells",
+        description = "Resolves many cells in one call: duplicates are resolved once, local cells in bulk, "
+                    + "and only local misses go to the external providers. Results follow the request order. "
+                    + "Uses one rate-limit token per batch."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Resolved",
+            content = @Content(schema = @Schema(implementation = BatchGeolocationResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Empty batch or more cells than allowed"),
+        @ApiResponse(responseCode = "429", description = "Too Many Requests")
+    })
+    @PostMapping("/geolocate/batch")
+    public CompletableFuture<ResponseEntity<BatchGeolocationResponse>> resolveBatch(
+            @RequestBody List<GeolocationRequest> requests) {
+
+        if (requests == null || requests.isEmpty() || requests.size() > batchGeolocationService.getMaxBatchSize()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if (!rateLimiterBucket.tryConsumeAndReturnRemaining(1).isConsumed()) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
         }
 
-        CompletableFuture<GeolocationResponse> future = geolocationService.resolveAsync(request);
-        return ResponseEntity.ok(future);
+        return batchGeolocationService.resolveBatch(requests).thenApply(ResponseEntity::ok);
     }
 
 
+    // STREAM OF CELLS (NDJSON IN, NDJSON OUT)
+    @Operation(
+        summary = "Resolve a stream of cells",
+        description = "Reads one GeolocationRequest JSON object per line and writes one GeolocationResponse "
+                    + "per line, in input order, as soon as each is known. Lines are read only as fast as "
+                    + "results are written, with a bounded number in flight. Uses one rate-limit token per stream."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Streaming results"),
+        @ApiResponse(responseCode = "429", description = "Too Many Requests")
+    })
+    @PostMapping(value = "/geolocate/stream",
+                 consumes = MediaType.APPLICATION_NDJSON_VALUE,
+                 produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<GeolocationResponse>> resolveStream(InputStream body) {
+
+        if (!rateLimiterBucket.tryConsumeAndReturnRemaining(1).isConsumed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+
+        return ResponseEntity.ok(streamGeolocationService.resolveStream(body));
+    }
+
     /**
      * Returns all prioritized geolocation results (from all sources)
-     * plus related cells if the local DB result is used.
+     * plus one page of related cells if the local DB result is used.
      */
     @Operation(
         summary = "Resolve with priority + distance optimization",
-        description = "Compares provider distances & priority rankings, and returns chosen + related cells."
+        description = "Compares provider distances & priority rankings, and returns chosen + related cells. "
+                    + "Related cells are paged with relatedOffset / relatedLimit (capped server-side)."
     )
     @PostMapping("/geolocate/priority")
-    public ResponseEntity<Map<String, Object>> getPriority(@RequestBody GeolocationRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getPriority(
+            @RequestBody GeolocationRequest request,
+            @RequestParam(defaultValue = "0") int relatedOffset,
+            @RequestParam(defaultValue = "0") int relatedLimit) {
 
-        Map<String, Object> result =
-            aggregatorService.resolveWithPriorityAsync(request)
+        request.cellIdentity();
+
+        return aggregatorService.resolveWithPriorityAsync(request)
                 .thenApply(priorityResult -> {
-                    List<Map<String, Object>> relatedCells = List.of();
-
-                    // Check if the top priority (chosen) result came from the local DB
-                    if (priorityResult.getChosen() != null &&
-                        priorityResult.getChosen().getProviderUsed() != null &&
-                        priorityResult.getChosen().getProviderUsed().contains("LOCAL_DB")) {
-
-                        String providerUsed = priorityResult.getChosen().getProviderUsed().toLowerCase();
-
-                    String providerType;
-                    if (providerUsed.contains("orange")) {
-                        providerType = "orange";
-                    } else if (providerUsed.contains("mtn")) {
-                        providerType = "mtn";
-                    } else {
-                        providerType = "unknown";
-                    }
-
-                        try {
-                            relatedCells = cellTowerLocalService.findCellsByBtsId(
-                                    String.valueOf(request.getCellId()), providerType);
-                        } catch (Exception e) {
-                            System.err.println("Failed to fetch related cells: " + e.getMessage());
-                        }
-                    }
+                    RelatedCells related = findRelatedCells(
+                            request, priorityResult.getChosen(), relatedOffset, relatedLimit);
 
                     // Return all priority results and related local cells (if applicable)
-                    return Map.of(
+                    return ResponseEntity.ok(Map.of(
                         "priorityResults", priorityResult,
-                        "relatedCells", relatedCells
-                    );
-                })
-                .join(); 
-
-        return ResponseEntity.ok(result);
+                        "relatedCells", related.getCells(),
+                        "relatedCellsTotal", related.getTotal()
+                    ));
+                });
     }
 
 
     /**
      * Returns only the chosen (best) geolocation result,
-     * plus other nearby cells if the result is from the local DB.
+     * plus other cells of the same site if the result is from the local DB.
      */
     @Operation(
         summary = "Get only the chosen best provider (with related cells)",
         description = "Returns the selected result and related cells based on same BTS."
     )
     @PostMapping("/geolocate/priority/chosen")
-    public ResponseEntity<Map<String, Object>> getPriorityChosen(@RequestBody GeolocationRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getPriorityChosen(
+            @RequestBody GeolocationRequest request,
+            @RequestParam(defaultValue = "0") int relatedOffset,
+            @RequestParam(defaultValue = "0") int relatedLimit) {
 
-        Map<String, Object> result =
-        aggregatorService.resolveWithPriorityAsync(request)
+        request.cellIdentity();
+
+        return aggregatorService.resolveWithPriorityAsync(request)
             .thenApply(priorityResult -> {
                 GeolocationResponse chosen = priorityResult.getChosen();
-
-                List<Map<String, Object>> relatedCells = List.of(); // Empty by default
-
-                // Only get related cells if local DB provided the chosen result
-                if (chosen != null && chosen.getProviderUsed() != null &&
-                        chosen.getProviderUsed().contains("LOCAL_DB(orange_cameroon)")) {
-                    try {
-                        relatedCells = cellTowerLocalService.findCellsByBtsId(
-                                String.valueOf(request.getCellId()), "orange_cameroon");
-                    } catch (Exception e) {
-                        System.err.println("Failed to fetch related cells: " + e.getMessage());
-                    }
-                }
+                RelatedCells related = findRelatedCells(request, chosen, relatedOffset, relatedLimit);
 
                 // Send back both the requested cell and others from the same BTS
-                return Map.of(
+                return ResponseEntity.ok(Map.of(
                     "requestedCell", chosen,
-                    "relatedCells", relatedCells
-                );
-
-            })
-            .join(); 
+                    "relatedCells", related.getCells(),
+                    "relatedCellsTotal", related.getTotal()
+                ));
+            });
+    }
 
-        return ResponseEntity.ok(result);
+    // Related cells only make sense when the chosen result is a local tower row
+    private RelatedCells findRelatedCells(GeolocationRequest request, GeolocationResponse chosen,
+                                          int offset, int limit) {
+        if (chosen == null || chosen.getProviderUsed() == null
+                || !chosen.getProviderUsed().startsWith("LOCAL_DB")) {
+            return RelatedCells.empty(offset, limit);
+        }
+        // On a fallback hit the chosen cell is the substituted one, not the requested one
+        CellGlobalIdentity cell = chosen.getCellId() != null
+                ? CellGlobalIdentity.parse(request.getMcc(), request.getMnc(), request.getLac(), chosen.getCellId())
+                : request.cellIdentity();
+        return cellTowerLocalService.findRelatedCells(cell, offset, limit);
     }
 
     // GET ALL CELLS BY AREA
@@ -174,14 +242,78 @@ public class GeolocationController {
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Resolved",
-            content = @Content(schema = @Schema(implementation = Map.class))),
+            content = @Content(schema = @Schema(implementation = AreaCell.class))),
         @ApiResponse(responseCode = "429", description = "Too Many Requests")
     })
 
     @GetMapping("/cells/by-area")
-    public ResponseEntity<List<Map<String, Object>>> getCellsByArea(@RequestParam String query, @RequestParam(defaultValue = "orange") String provider) {
-        List<Map<String, Object>> cells = areaCellService.getCellsByArea(query, provider);
-        return ResponseEntity.ok(cells);
+    public CompletableFuture<ResponseEntity<List<AreaCell>>> getCellsByArea(@RequestParam String query, @RequestParam(defaultValue = "orange") String provider) {
+        return CompletableFuture.supplyAsync(
+                () -> ResponseEntity.ok(areaCellService.getCellsByArea(query, provider)), taskExecutor);
+    }
+
+    // CLOSEST CELLS OF A LAC (LOCAL FALLBACK CANDIDATES)
+    @Operation(
+        summary = "Get closest cells in a location area",
+        description = "Returns up to k local cells of the given LAC, ranked by Cell ID distance to the requested cell. "
+                    + "With MCC/MNC only the matching operator is searched."
+    )
+    @GetMapping("/cells/fallback-candidates")
+    public ResponseEntity<List<FallbackCandidate>> getFallbackCandidates(
+            @RequestParam(required = false) String mcc,
+            @RequestParam(required = false) String mnc,
+            @RequestParam String lac,
+            @RequestParam String cellId,
+            @RequestParam(defaultValue = "5") int k) {
+        int limit = Math.max(1, Math.min(k, 50));
+        if (mcc == null || mnc == null) {
+            return ResponseEntity.ok(cellTowerLocalService.findClosestCells(lac, cellId, limit));
+        }
+        return ResponseEntity.ok(cellTowerLocalService.findClosestCells(
+                CellGlobalIdentity.parse(mcc, mnc, lac, cellId), limit));
+    }
+
+    // NEAREST CELLS TO A POSITION
+    @Operation(
+        summary = "Get the cells nearest to a position",
+        description = "Returns up to k local cells closest to (lat, lon) by great-circle distance, "
+                    + "optionally for one operator (orange, mtn). Served from memory, no database query."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Resolved"),
+        @ApiResponse(responseCode = "400", description = "Latitude or longitude out of range")
+    })
+    @GetMapping("/cells/nearest")
+    public ResponseEntity<List<NearbyCell>> getNearestCells(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(required = false) String provider) {
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            return ResponseEntity.badRequest().build();
+        }
+        int limit = Math.max(1, Math.min(k, 50));
+        return ResponseEntity.ok(cellTowerLocalService.findNearestCells(lat, lon, limit, provider));
+    }
+
+    // DEFERRED ADDRESS
+    @Operation(
+        summary = "Get a deferred address",
+        description = "Returns the address of a local result that was answered before reverse geocoding "
+                    + "finished, using the addressToken from that response."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Address ready (or geocoding failed)"),
+        @ApiResponse(responseCode = "202", description = "Geocoding still running"),
+        @ApiResponse(responseCode = "404", description = "Unknown or expired token")
+    })
+    @GetMapping("/address/{token}")
+    public ResponseEntity<DeferredAddress> getDeferredAddress(@PathVariable String token) {
+        return deferredAddressService.find(token)
+                .map(address -> address.getStatus() == DeferredAddress.Status.PENDING
+                        ? ResponseEntity.status(HttpStatus.ACCEPTED).body(address)
+                        : ResponseEntity.ok(address))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     // GET PENETRATION RATE
@@ -196,9 +328,11 @@ public class GeolocationController {
     })
     
     @PostMapping("/coverage/penetration")
-    public ResponseEntity<CoverageResponse> calculateCoverage(@RequestBody CoverageRequest request) {
-        CoverageResponse resp = coverageService.calculateCoverage(request.getArea(), request.getRadiusMeters(), request.getProvider());
-        return ResponseEntity.ok(resp);
+    public CompletableFuture<ResponseEntity<CoverageResponse>> calculateCoverage(@RequestBody CoverageRequest request) {
+        return CompletableFuture.supplyAsync(
+                () -> ResponseEntity.ok(coverageService.calculateCoverage(
+                        request.getArea(), request.getRadiusMeters(), request.getProvider())),
+                taskExecutor);
     }
 
 }    
\ No newline at end of file
@@ -0,0 +1,57 @@
+package cm.antic.cell_geolocator.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import cm.antic.cell_geolocator.service.CacheWarmupService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@RequestMapping("/api/v1")
+@Tag(name = "Health", description = "Probes for load balancers and orchestrators")
+public class ReadinessController {
+
+    private final ApplicationAvailability applicationAvailability;
+    private final CacheWarmupService cacheWarmupService;
+
+    public ReadinessController(ApplicationAvailability applicationAvailability,
+                               CacheWarmupService cacheWarmupService) {
+        this.applicationAvailability = applicationAvailability;
+        this.cacheWarmupService = cacheWarmupService;
+    }
+
+    // Spring marks the application ready right after startup; this also waits for the cache warm-up
+    @Operation(
+        summary = "Readiness probe",
+        description = "200 once the application accepts traffic and the startup cache warm-up has finished "
+                + "(or timed out), 503 before. The body reports the warm-up progress."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Ready"),
+        @ApiResponse(responseCode = "503", description = "Starting or warming up")
+    })
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        boolean accepting = applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
+        boolean warmedUp = cacheWarmupService.isFinished();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", !accepting ? "REFUSING_TRAFFIC" : warmedUp ? "READY" : "WARMING_UP");
+        body.put("warmup", cacheWarmupService.stats());
+
+        return ResponseEntity.status(accepting && warmedUp ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(body);
+    }
+}
@@ -0,0 +1,37 @@
+package cm.antic.cell_geolocator.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resolved cell as stored in the L2 result cache. The response is kept as JSON.
+ */
+@Entity
+@Table(name = "geolocation_cache", indexes = @Index(name = "idx_geolocation_cache_expires_at", columnList = "expiresAt"))
+@Data
+public class CachedGeolocation {
+
+    /** The cell, packed as in CellGlobalIdentity#packed(). */
+    @Id
+    private Long cellKey;
+
+    private String providerUsed;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    private LocalDateTime createdAt;
+
+    /** After this the row is stale: still served, but the cell is resolved again. */
+    private LocalDateTime refreshAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+}
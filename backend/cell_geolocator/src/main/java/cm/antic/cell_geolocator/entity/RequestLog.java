@@ -2,7 +2,9 @@ package cm.antic.cell_geolocator.entity;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -11,8 +13,12 @@ import java.time.LocalDateTime;
 @Data
 public class RequestLog {
 
+    /** Ids taken per request_log_seq call (its increment); RequestLogWriter allocates the same way. */
+    public static final int ID_BLOCK_SIZE = 50;
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "request_log_seq")
+    @SequenceGenerator(name = "request_log_seq", sequenceName = "request_log_seq", allocationSize = ID_BLOCK_SIZE)
     private Long id;
     private String mcc;
     private String mnc;
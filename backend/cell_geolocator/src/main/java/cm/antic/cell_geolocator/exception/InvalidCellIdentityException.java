@@ -0,0 +1,13 @@
+package cm.antic.cell_geolocator.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCellIdentityException extends RuntimeException {
+
+    public InvalidCellIdentityException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,61 @@
+package cm.antic.cell_geolocator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * One cell returned by an area search, read straight from the result set.
+ */
+@Schema(description = "A cell whose locality, department or region matches the searched area")
+public record AreaCell(
+
+    @Schema(description = "Latitude of the cell", example = "3.8480")
+    Double latitude,
+
+    @Schema(description = "Longitude of the cell", example = "11.5021")
+    Double longitude,
+
+    @Schema(description = "Location Area Code", example = "7033")
+    String lac,
+
+    @Schema(description = "Cell ID", example = "56790")
+    String ci,
+
+    @JsonProperty("site_name")
+    @Schema(description = "Site name", example = "YAOUNDE_CENTRE")
+    String siteName,
+
+    @JsonProperty("bts_id")
+    @Schema(description = "BTS identifier (Orange only)", example = "YDE_0123")
+    String btsId,
+
+    @Schema(description = "Locality", example = "Yaounde")
+    String localite,
+
+    @Schema(description = "Neighbourhood (Orange only)", example = "Bastos")
+    String quartier,
+
+    @Schema(description = "Department", example = "Mfoundi")
+    String departement,
+
+    @JsonProperty("region_terr")
+    @Schema(description = "Administrative region", example = "Centre")
+    String regionTerr,
+
+    @JsonProperty("region_bus")
+    @Schema(description = "Operator business region (Orange only)", example = "Centre")
+    String regionBus,
+
+    @JsonProperty("techno_cell")
+    @Schema(description = "Radio technology (Orange only)", example = "4G")
+    String technoCell,
+
+    @JsonProperty("frequence_cell")
+    @Schema(description = "Frequency band (Orange only)", example = "L1800")
+    String frequenceCell,
+
+    @Schema(description = "Operator table the cell comes from", example = "orange")
+    String provider
+) {
+}
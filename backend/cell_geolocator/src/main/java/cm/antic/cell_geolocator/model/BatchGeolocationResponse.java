@@ -0,0 +1,35 @@
+package cm.antic.cell_geolocator.model;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "Results of a batch geolocation, in the order of the requests")
+public class BatchGeolocationResponse {
+
+    @Schema(description = "Number of cells in the request", example = "1000")
+    private int requested;
+
+    @Schema(description = "Number of distinct cells after deduplication", example = "640")
+    private int unique;
+
+    @Schema(description = "Distinct cells resolved from the local tower tables", example = "590")
+    private int localHits;
+
+    @Schema(description = "Distinct cells sent to the external providers", example = "50")
+    private int providerLookups;
+
+    @Schema(description = "Distinct cells with a position", example = "625")
+    private int resolved;
+
+    @Schema(description = "Time to resolve the batch, in ms", example = "850")
+    private long tookMs;
+
+    @Schema(description = "Requested cells per second for this batch", example = "1176.5")
+    private double cellsPerSecond;
+
+    @Schema(description = "One result per requested cell, in request order; duplicates share a result")
+    private List<GeolocationResponse> results;
+}
@@ -0,0 +1,92 @@
+package cm.antic.cell_geolocator.model;
+
+import cm.antic.cell_geolocator.exception.InvalidCellIdentityException;
+import cm.antic.cell_geolocator.service.tower.TowerIndex;
+
+/**
+ * A validated cell identity (MCC, MNC, LAC/TAC, CI). Components may be as wide as a 5G
+ * NR cell needs (24-bit TAC, 36-bit NCI), which is wider than the packed layout of
+ * {@link TowerIndex#pack}: such a cell is still a valid request and a usable key for
+ * the in-memory result cache and batch deduplication, but it is not {@link #packable()},
+ * so it cannot be in the tower index (a local miss) and has no L2 cache row.
+ *
+ * Parse it once where a request enters ({@link GeolocationRequest#cellIdentity()});
+ * lookups from there on use the numbers, without re-parsing or building string keys.
+ */
+public record CellGlobalIdentity(int mcc, int mnc, int lac, long ci) {
+
+    /** Widest LAC/TAC accepted: the 24-bit 5G NR TAC. */
+    public static final int LAC_BITS = 24;
+
+    /** Widest CI accepted: the 36-bit 5G NR cell identity. */
+    public static final int CI_BITS = 36;
+
+    public CellGlobalIdentity {
+        if (mcc < 0 || mcc >= (1 << TowerIndex.MCC_BITS)
+                || mnc < 0 || mnc >= (1 << TowerIndex.MNC_BITS)
+                || lac < 0 || lac >= (1 << LAC_BITS)
+                || ci < 0 || ci >= (1L << CI_BITS)) {
+            throw new InvalidCellIdentityException(
+                "Cell identity out of range: mcc=" + mcc + ", mnc=" + mnc + ", lac=" + lac + ", cellId=" + ci);
+        }
+    }
+
+    /**
+     * Parses the four decimal fields of a request.
+     *
+     * @throws InvalidCellIdentityException if a field is missing, not a plain decimal
+     *         number, or wider than any cell identity
+     */
+    public static CellGlobalIdentity parse(String mcc, String mnc, String lac, String cellId) {
+        return new CellGlobalIdentity(
+            (int) field("mcc", mcc, TowerIndex.MCC_BITS),
+            (int) field("mnc", mnc, TowerIndex.MNC_BITS),
+            (int) field("lac", lac, LAC_BITS),
+            field("cellId", cellId, CI_BITS));
+    }
+
+    /** Whether this identity fits the {@link TowerIndex} key layout. */
+    public boolean packable() {
+        return packed() != TowerIndex.INVALID_KEY;
+    }
+
+    /** This identity as one long, in {@link TowerIndex} key order; INVALID_KEY if it does not fit. */
+    public long packed() {
+        if (ci >= (1L << TowerIndex.CI_BITS)) {
+            return TowerIndex.INVALID_KEY;
+        }
+        return TowerIndex.pack(mcc, mnc, lac, (int) ci);
+    }
+
+    public static CellGlobalIdentity fromPacked(long key) {
+        return new CellGlobalIdentity(
+            TowerIndex.mccOf(key), TowerIndex.mncOf(key), TowerIndex.lacOf(key), TowerIndex.ciOf(key));
+    }
+
+    @Override
+    public String toString() {
+        return mcc + "_" + mnc + "_" + lac + "_" + ci;
+    }
+
+    private static long field(String name, String value, int bits) {
+        if (value == null || value.isBlank()) {
+            throw new InvalidCellIdentityException(name + " is required");
+        }
+        String digits = value.trim();
+        if (digits.length() > 12) {
+            throw new InvalidCellIdentityException(name + " is too large: " + digits);
+        }
+        long parsed = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new InvalidCellIdentityException(name + " must be a decimal number: " + digits);
+            }
+            parsed = parsed * 10 + (c - '0');
+        }
+        if (parsed >= (1L << bits)) {
+            throw new InvalidCellIdentityException(name + " is too large: " + digits);
+        }
+        return parsed;
+    }
+}
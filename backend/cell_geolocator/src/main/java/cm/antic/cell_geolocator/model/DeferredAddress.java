@@ -0,0 +1,22 @@
+package cm.antic.cell_geolocator.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "Address of a local result that was returned before its reverse geocoding finished")
+public class DeferredAddress {
+
+    public enum Status { PENDING, READY, FAILED }
+
+    @Schema(description = "Token from the geolocation response", example = "5f0c3e0e-8b1a-4d8e-9a57-2c1f0d7b9e21")
+    private String token;
+
+    @Schema(description = "PENDING while geocoding runs, READY once done, FAILED if no address was found", example = "READY")
+    private Status status;
+
+    @Schema(description = "Address of the resolved location", example = "YAOUNDE_CENTRE, Yaounde I, Centre, Cameroon")
+    private String address;
+
+    private GeolocationResponse.AddressDetail addressDetail;
+}
@@ -0,0 +1,30 @@
+package cm.antic.cell_geolocator.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "A cell of the requested location area, ranked by Cell ID distance")
+public class FallbackCandidate {
+
+    @Schema(description = "Operator table the cell comes from", example = "orange")
+    private String provider;
+
+    @Schema(description = "Location Area Code", example = "7033")
+    private String lac;
+
+    @Schema(description = "Cell ID", example = "56790")
+    private String cellId;
+
+    @Schema(description = "Absolute difference between this Cell ID and the requested one", example = "1")
+    private long distance;
+
+    @Schema(description = "Latitude of the cell", example = "3.8480")
+    private Double latitude;
+
+    @Schema(description = "Longitude of the cell", example = "11.5021")
+    private Double longitude;
+
+    @Schema(description = "Site name", example = "YAOUNDE_CENTRE")
+    private String siteName;
+}
@@ -1,7 +1,14 @@
 package cm.antic.cell_geolocator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
 @Schema(description = "Request payload for resolving a cell tower geolocation")
@@ -21,4 +28,29 @@ public class GeolocationRequest {
 
     @Schema(description = "Range in meters", example = "100")
     private Integer range;
+
+    @Schema(description = "How long a local result may wait for its address, in ms. "
+            + "If the address is not ready in time, the response carries an addressToken instead "
+            + "(see GET /api/v1/address/{token}). Defaults to the server setting.", example = "0")
+    private Integer addressTimeoutMs;
+
+    // Parsed from mcc/mnc/lac/cellId on first use; they are not expected to change after
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private CellGlobalIdentity cellIdentity;
+
+    /**
+     * The validated cell identity of this request.
+     *
+     * @throws cm.antic.cell_geolocator.exception.InvalidCellIdentityException if malformed
+     */
+    public CellGlobalIdentity cellIdentity() {
+        if (cellIdentity == null) {
+            cellIdentity = CellGlobalIdentity.parse(mcc, mnc, lac, cellId);
+        }
+        return cellIdentity;
+    }
 }
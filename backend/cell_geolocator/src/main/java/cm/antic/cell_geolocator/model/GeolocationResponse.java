@@ -1,5 +1,7 @@
 package cm.antic.cell_geolocator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.Data;
 import java.util.HashMap;
 import java.util.Map;
@@ -43,10 +45,19 @@ public class GeolocationResponse {
 
     private AddressDetail addressDetail;
 
+    @Schema(description = "Set when the address was not ready in time; fetch it from GET /api/v1/address/{token}",
+            example = "5f0c3e0e-8b1a-4d8e-9a57-2c1f0d7b9e21")
+    private String addressToken;
+
     @Schema(description = "Error message if resolution failed", example = "Provider error")
     private String error;
 
     private Map<String, Object> rawResponses = new HashMap<>();
+
+    // Set by a provider that answered it has no such cell (as opposed to an error); not serialized
+    @JsonIgnore
+    private boolean unknownCell;
+
     @Data
     public static class AddressDetail {
         private String country;
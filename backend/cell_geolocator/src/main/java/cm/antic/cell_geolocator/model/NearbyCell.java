@@ -0,0 +1,45 @@
+package cm.antic.cell_geolocator.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "A local cell ranked by great-circle distance to a position")
+public class NearbyCell {
+
+    @Schema(description = "Operator table the cell comes from", example = "orange")
+    private String provider;
+
+    @Schema(description = "Mobile Country Code", example = "624")
+    private String mcc;
+
+    @Schema(description = "Mobile Network Code", example = "2")
+    private String mnc;
+
+    @Schema(description = "Location Area Code", example = "7033")
+    private String lac;
+
+    @Schema(description = "Cell ID", example = "56790")
+    private String cellId;
+
+    @Schema(description = "Haversine distance to the requested position, in km", example = "0.42")
+    private double distanceKm;
+
+    @Schema(description = "Latitude of the cell", example = "3.8480")
+    private Double latitude;
+
+    @Schema(description = "Longitude of the cell", example = "11.5021")
+    private Double longitude;
+
+    @Schema(description = "Site name", example = "YAOUNDE_CENTRE")
+    private String siteName;
+
+    @Schema(description = "BTS identifier (Orange only)", example = "YDE_0123")
+    private String btsId;
+
+    @Schema(description = "Radio technology", example = "4G")
+    private String technoCell;
+
+    @Schema(description = "Frequency band", example = "L1800")
+    private String frequenceCell;
+}
@@ -0,0 +1,39 @@
+package cm.antic.cell_geolocator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "Another cell installed on the same site as the resolved cell")
+public class RelatedCell {
+
+    @Schema(description = "Location Area Code", example = "7033")
+    private String lac;
+
+    @Schema(description = "Cell ID", example = "56790")
+    private String ci;
+
+    @JsonProperty("Id BTS New")
+    @Schema(description = "BTS identifier (Orange)", example = "YDE_0123")
+    private String btsId;
+
+    @JsonProperty("site_name")
+    @Schema(description = "Site name", example = "YAOUNDE_CENTRE")
+    private String siteName;
+
+    @Schema(description = "Latitude of the cell", example = "3.8480")
+    private Double latitude;
+
+    @Schema(description = "Longitude of the cell", example = "11.5021")
+    private Double longitude;
+
+    @JsonProperty("techno_cell")
+    @Schema(description = "Radio technology", example = "4G")
+    private String technoCell;
+
+    @JsonProperty("frequence_cell")
+    @Schema(description = "Frequency band", example = "L1800")
+    private String frequenceCell;
+}
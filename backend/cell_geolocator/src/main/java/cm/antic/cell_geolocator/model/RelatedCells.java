@@ -0,0 +1,31 @@
+package cm.antic.cell_geolocator.model;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "One page of the cells sharing a site with the resolved cell")
+public class RelatedCells {
+
+    @Schema(description = "Number of related cells on the site", example = "5")
+    private int total;
+
+    @Schema(description = "Index of the first returned cell", example = "0")
+    private int offset;
+
+    @Schema(description = "Maximum number of cells in this page", example = "50")
+    private int limit;
+
+    @Schema(description = "Related cells of this page, in LAC / Cell ID order")
+    private List<RelatedCell> cells;
+
+    public static RelatedCells empty(int offset, int limit) {
+        RelatedCells page = new RelatedCells();
+        page.setOffset(offset);
+        page.setLimit(limit);
+        page.setCells(List.of());
+        return page;
+    }
+}
@@ -0,0 +1,19 @@
+package cm.antic.cell_geolocator.repository;
+
+import cm.antic.cell_geolocator.entity.CachedGeolocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface CachedGeolocationRepository extends JpaRepository<CachedGeolocation, Long> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CachedGeolocation c WHERE c.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+}
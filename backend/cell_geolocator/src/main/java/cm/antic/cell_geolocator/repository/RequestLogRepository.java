@@ -1,8 +1,34 @@
 package cm.antic.cell_geolocator.repository;
 
 import cm.antic.cell_geolocator.entity.RequestLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface RequestLogRepository extends JpaRepository<RequestLog, Long> {
 
+    /** A cell and how often it was resolved. */
+    interface HotCell {
+        String getMcc();
+        String getMnc();
+        String getLac();
+        String getCellId();
+        long getRequests();
+    }
+
+    /**
+     * The cells most often resolved to a position since {@code since}, most requested
+     * first; the page size is the number of cells wanted.
+     */
+    @Query("SELECT r.mcc AS mcc, r.mnc AS mnc, r.lac AS lac, r.cellId AS cellId, COUNT(r) AS requests "
+         + "FROM RequestLog r "
+         + "WHERE r.timestamp >= :since AND r.latitude IS NOT NULL "
+         + "GROUP BY r.mcc, r.mnc, r.lac, r.cellId "
+         + "ORDER BY COUNT(r) DESC")
+    List<HotCell> findHotCells(@Param("since") LocalDateTime since, Pageable page);
+
 }
@@ -1,11 +1,13 @@
 package cm.antic.cell_geolocator.security;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
-import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
-
-import java.util.concurrent.Executor;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -14,10 +16,30 @@ import org.springframework.scheduling.annotation.EnableAsync;
 @EnableAsync
 public class AsyncSecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(AsyncSecurityConfig.class);
+
+    /**
+     * Executor for aggregator work, local lookups and request log persistence.
+     * {@code virtual} starts one virtual thread per task, so tasks blocked on JDBC do not
+     * hold a platform thread; {@code platform} is a fixed pool of {@code pool-size} threads.
+     * Either way the caller's SecurityContext is propagated to the task.
+     */
     @Bean
-    public Executor taskExecutor() {
-        Executor delegate = Executors.newFixedThreadPool(20);
-        return new DelegatingSecurityContextExecutor(delegate);
+    public ExecutorService taskExecutor(
+            @Value("${geolocation.executor.mode:virtual}") String mode,
+            @Value("${geolocation.executor.pool-size:20}") int poolSize) {
+
+        boolean platform = "platform".equalsIgnoreCase(mode);
+        ExecutorService delegate = platform
+                ? Executors.newFixedThreadPool(poolSize)
+                : Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("geo-task-", 0).factory());
+
+        if (platform) {
+            log.info("Task executor: fixed pool of {} platform threads", poolSize);
+        } else {
+            log.info("Task executor: virtual thread per task");
+        }
+        return new DelegatingSecurityContextExecutorService(delegate);
     }
 
 }
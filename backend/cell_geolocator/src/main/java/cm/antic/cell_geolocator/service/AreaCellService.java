@@ -1,25 +1,46 @@
 package cm.antic.cell_geolocator.service;
 
+import cm.antic.cell_geolocator.model.AreaCell;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class AreaCellService {
 
     private static final Logger log = LoggerFactory.getLogger(AreaCellService.class);
 
+    // Reads each row straight into an AreaCell, by column position (see the select lists below)
+    private static final RowMapper<AreaCell> AREA_CELL_MAPPER = (rs, rowNum) -> new AreaCell(
+        nullableDouble(rs, 1),
+        nullableDouble(rs, 2),
+        rs.getString(3),
+        rs.getString(4),
+        rs.getString(5),
+        rs.getString(6),
+        rs.getString(7),
+        rs.getString(8),
+        rs.getString(9),
+        rs.getString(10),
+        rs.getString(11),
+        rs.getString(12),
+        rs.getString(13),
+        rs.getString(14)
+    );
+
     private final JdbcTemplate jdbcTemplate;
 
     public AreaCellService(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public List<Map<String, Object>> getCellsByArea(String query, String provider) {
+    public List<AreaCell> getCellsByArea(String query, String provider) {
 
         String normalizedArea = normalizeAreaName(query);
         String searchTerm = "%" + normalizedArea + "%";
@@ -29,7 +50,7 @@ public class AreaCellService {
             normalizedArea, provider
         );
 
-        List<Map<String, Object>> cells;
+        List<AreaCell> cells;
 
         try {
             if ("mtn".equalsIgnoreCase(provider)) {
@@ -57,7 +78,7 @@ public class AreaCellService {
 
     // ORANGE SEARCH
 
-    private List<Map<String, Object>> searchOrange(String term) {
+    private List<AreaCell> searchOrange(String term) {
 
         String sql = """
             SELECT DISTINCT ON (lac, ci)
@@ -83,14 +104,14 @@ public class AreaCellService {
                OR LOWER("Region Bus") LIKE LOWER(?)
         """;
 
-        return jdbcTemplate.queryForList(
-            sql, term, term, term, term, term
+        return jdbcTemplate.query(
+            sql, AREA_CELL_MAPPER, term, term, term, term, term
         );
     }
 
     //MTN SEARCH 
 
-    private List<Map<String, Object>> searchMtn(String term) {
+    private List<AreaCell> searchMtn(String term) {
 
         String sql = """
             SELECT DISTINCT ON (lac, ci)
@@ -114,7 +135,12 @@ public class AreaCellService {
                OR LOWER("Region Terr") LIKE LOWER(?)
         """;
 
-        return jdbcTemplate.queryForList(sql, term, term, term);
+        return jdbcTemplate.query(sql, AREA_CELL_MAPPER, term, term, term);
+    }
+
+    private static Double nullableDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
     }
 
     // NORMALIZATION 
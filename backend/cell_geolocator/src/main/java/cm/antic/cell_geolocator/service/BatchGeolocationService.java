@@ -0,0 +1,209 @@
+package cm.antic.cell_geolocator.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import cm.antic.cell_geolocator.exception.InvalidCellIdentityException;
+import cm.antic.cell_geolocator.model.BatchGeolocationResponse;
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+
+/**
+ * Resolves a batch of cells (e.g. from call detail records) in one request.
+ *
+ * The caller is verified once. Malformed cells are rejected without any lookup, and
+ * duplicate cells are resolved once. All distinct cells go
+ * through the local tables together ({@link CellTowerLocalService#findLocalTowers}),
+ * and only the misses are looked up in the result cache, then sent to the providers,
+ * at most {@code provider-concurrency} at a time. Cells the local tables or a provider
+ * are known not to have (negative cache) are not looked up there again. Addresses still
+ * being geocoded for local hits are awaited once for the whole batch, on one deadline,
+ * while the providers are queried; those not in by then keep their token.
+ */
+@Service
+public class BatchGeolocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchGeolocationService.class);
+
+    private final CellTowerLocalService cellTowerLocalService;
+    private final GeolocationService geolocationService;
+    private final GeolocationCacheService geolocationCacheService;
+    private final DeferredAddressService deferredAddressService;
+    private final PriorityService priorityService;
+    private final Executor taskExecutor;
+
+    @Value("${geolocation.batch.max-size:5000}")
+    private int maxBatchSize;
+
+    @Value("${geolocation.batch.provider-concurrency:8}")
+    private int providerConcurrency;
+
+    public BatchGeolocationService(CellTowerLocalService cellTowerLocalService,
+                                   GeolocationService geolocationService,
+                                   GeolocationCacheService geolocationCacheService,
+                                   DeferredAddressService deferredAddressService,
+                                   PriorityService priorityService,
+                                   @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.cellTowerLocalService = cellTowerLocalService;
+        this.geolocationService = geolocationService;
+        this.geolocationCacheService = geolocationCacheService;
+        this.deferredAddressService = deferredAddressService;
+        this.priorityService = priorityService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public CompletableFuture<BatchGeolocationResponse> resolveBatch(List<GeolocationRequest> requests) {
+        geolocationService.requireVerification();
+        long start = System.nanoTime();
+
+        // slot[i] = position of request i among the distinct cells, -1 for a null or
+        // malformed entry (rejected[i] says why; nothing is looked up for it)
+        List<GeolocationRequest> unique = new ArrayList<>();
+        Map<CellGlobalIdentity, Integer> positions = new HashMap<>();
+        int[] slot = new int[requests.size()];
+        String[] rejected = new String[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            GeolocationRequest request = requests.get(i);
+            CellGlobalIdentity cell;
+            try {
+                cell = request != null ? request.cellIdentity() : null;
+            } catch (InvalidCellIdentityException e) {
+                cell = null;
+                rejected[i] = e.getMessage();
+            }
+            if (cell == null) {
+                slot[i] = -1;
+                continue;
+            }
+            slot[i] = positions.computeIfAbsent(cell, k -> {
+                unique.add(request);
+                return unique.size() - 1;
+            });
+        }
+
+        // Cells the local tables are known not to have are left out (null) of the local lookup
+        List<String> localTier = List.of(GeolocationCacheService.LOCAL_TIER);
+        List<GeolocationRequest> localQuery = new ArrayList<>(unique.size());
+        for (GeolocationRequest request : unique) {
+            localQuery.add(geolocationCacheService.knownMisses(request, localTier).isEmpty() ? request : null);
+        }
+
+        return CompletableFuture.supplyAsync(() -> cellTowerLocalService.findLocalTowers(localQuery), taskExecutor)
+            .thenCompose(local -> {
+                GeolocationResponse[] resolved = local.toArray(new GeolocationResponse[0]);
+
+                Queue<Integer> misses = new ConcurrentLinkedQueue<>();
+                for (int u = 0; u < resolved.length; u++) {
+                    if (resolved[u] != null && resolved[u].getLatitude() != null) {
+                        geolocationService.saveLogAsync(unique.get(u), resolved[u]);
+                    } else {
+                        // Null is a miss; a response without a position is a failed lookup
+                        if (localQuery.get(u) != null && resolved[u] == null) {
+                            geolocationCacheService.recordMisses(unique.get(u), localTier);
+                        }
+                        misses.add(u);
+                    }
+                }
+                int localHits = resolved.length - misses.size();
+                int providerLookups = misses.size();
+
+                // One wait for all the local hits' pending addresses, alongside the providers
+                CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(providerConcurrency, misses.size()) + 1];
+                workers[0] = deferredAddressService.awaitAddresses(local, addressTimeoutMs(unique));
+                for (int w = 1; w < workers.length; w++) {
+                    workers[w] = drain(misses, unique, localQuery, resolved);
+                }
+
+                return CompletableFuture.allOf(workers).thenApply(done -> {
+                    List<GeolocationResponse> results = new ArrayList<>(requests.size());
+                    for (int i = 0; i < slot.length; i++) {
+                        results.add(slot[i] >= 0 ? resolved[slot[i]] : invalid(rejected[i]));
+                    }
+
+                    long tookMs = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+                    BatchGeolocationResponse response = new BatchGeolocationResponse();
+                    response.setRequested(requests.size());
+                    response.setUnique(unique.size());
+                    response.setLocalHits(localHits);
+                    response.setProviderLookups(providerLookups);
+                    response.setResolved((int) Arrays.stream(resolved)
+                            .filter(r -> r != null && r.getLatitude() != null).count());
+                    response.setTookMs(tookMs);
+                    response.setCellsPerSecond(requests.size() * 1000.0 / tookMs);
+                    response.setResults(results);
+
+                    log.info("Batch geolocation | requested={} | unique={} | localHits={} | providerLookups={} | took={}ms",
+                            requests.size(), unique.size(), localHits, providerLookups, tookMs);
+                    return response;
+                });
+            });
+    }
+
+    /**
+     * One provider worker: resolves queued misses one after another until the queue is
+     * empty. Each step continues on the task executor, so answers that complete
+     * immediately (open circuits) do not deepen the stack.
+     */
+    private CompletableFuture<Void> drain(Queue<Integer> misses, List<GeolocationRequest> unique,
+                                          List<GeolocationRequest> localQuery, GeolocationResponse[] resolved) {
+        Integer u = misses.poll();
+        if (u == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        GeolocationRequest request = unique.get(u);
+
+        // A cell the local tables were just asked about only counts as unknown if every
+        // provider is also known not to have it
+        List<String> tiers = new ArrayList<>(priorityService.getProviderPriorities());
+        if (localQuery.get(u) == null) {
+            tiers.add(GeolocationCacheService.LOCAL_TIER);
+        }
+        return geolocationCacheService.getOrResolve(request, tiers, geolocationService::resolveWithProviders)
+            .handle((resp, e) -> {
+                if (e != null) {
+                    log.warn("Batch provider lookup failed for cell {}: {}", request.cellIdentity(), e.getMessage());
+                    GeolocationResponse err = new GeolocationResponse();
+                    err.setError("Provider lookup failed: " + e.getMessage());
+                    resp = err;
+                }
+                resolved[u] = resp;
+                geolocationService.saveLogAsync(request, resp);
+                return null;
+            })
+            .thenComposeAsync(v -> drain(misses, unique, localQuery, resolved), taskExecutor);
+    }
+
+    // The largest budget the batch's cells ask for; the server default if any does not say
+    private static Integer addressTimeoutMs(List<GeolocationRequest> requests) {
+        int max = 0;
+        for (GeolocationRequest request : requests) {
+            if (request.getAddressTimeoutMs() == null) return null;
+            max = Math.max(max, request.getAddressTimeoutMs());
+        }
+        return max;
+    }
+
+    private static GeolocationResponse invalid(String reason) {
+        GeolocationResponse err = new GeolocationResponse();
+        err.setError(reason != null ? "Invalid request: " + reason : "Invalid request");
+        return err;
+    }
+}
@@ -0,0 +1,221 @@
+package cm.antic.cell_geolocator.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import cm.antic.cell_geolocator.exception.InvalidCellIdentityException;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.repository.RequestLogRepository;
+import cm.antic.cell_geolocator.repository.RequestLogRepository.HotCell;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+
+/**
+ * Fills the result cache at startup with the cells most often resolved recently, so
+ * the first traffic after a deploy does not pay provider latency for them.
+ *
+ * The top {@code top-n} cells of the request log (over {@code lookback-days}) are
+ * resolved {@code concurrency} at a time. Cells already in the L2 table cost no provider
+ * call; the others go to the providers at most {@code max-per-second}. Warm-up stops
+ * dispatching after {@code timeout-seconds}. The instance reports ready
+ * ({@link #isFinished}) once warm-up is done, has timed out, or has failed.
+ */
+@Service
+public class CacheWarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmupService.class);
+
+    public enum Phase { PENDING, RUNNING, DONE, TIMED_OUT, FAILED, DISABLED }
+
+    private final RequestLogRepository requestLogRepository;
+    private final GeolocationService geolocationService;
+    private final Executor taskExecutor;
+
+    @Value("${geolocation.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${geolocation.warmup.top-n:1000}")
+    private int topN;
+
+    @Value("${geolocation.warmup.lookback-days:7}")
+    private int lookbackDays;
+
+    @Value("${geolocation.warmup.concurrency:4}")
+    private int concurrency;
+
+    // Provider lookups per second; cache hits are not paced
+    @Value("${geolocation.warmup.max-per-second:5}")
+    private int maxPerSecond;
+
+    @Value("${geolocation.warmup.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    private volatile Phase phase = Phase.PENDING;
+    private volatile boolean stopped;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile int planned;
+    private volatile Bucket providerPace;
+
+    private final LongAdder warmed = new LongAdder();
+    private final LongAdder unresolved = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public CacheWarmupService(RequestLogRepository requestLogRepository,
+                              GeolocationService geolocationService,
+                              @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.requestLogRepository = requestLogRepository;
+        this.geolocationService = geolocationService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (!enabled || topN <= 0) {
+            log.info("Cache warm-up disabled");
+            finish(Phase.DISABLED);
+            return;
+        }
+
+        phase = Phase.RUNNING;
+        startedAt = Instant.now();
+        int perSecond = Math.max(maxPerSecond, 1);
+        providerPace = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(perSecond)
+                        .refillGreedy(perSecond, Duration.ofSeconds(1))
+                        .build())
+                .build();
+
+        CompletableFuture.supplyAsync(this::hotCells, taskExecutor)
+            .thenCompose(this::warm)
+            .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+            .whenComplete((v, e) -> {
+                if (e == null) {
+                    finish(Phase.DONE);
+                } else if (e instanceof TimeoutException) {
+                    stopped = true;
+                    finish(Phase.TIMED_OUT);
+                } else {
+                    stopped = true;
+                    log.error("Cache warm-up failed", e);
+                    finish(Phase.FAILED);
+                }
+            });
+    }
+
+    private Queue<GeolocationRequest> hotCells() {
+        List<HotCell> hot = requestLogRepository.findHotCells(
+                LocalDateTime.now().minusDays(lookbackDays), PageRequest.of(0, topN));
+
+        Queue<GeolocationRequest> queue = new ConcurrentLinkedQueue<>();
+        for (HotCell cell : hot) {
+            GeolocationRequest request = new GeolocationRequest();
+            request.setMcc(cell.getMcc());
+            request.setMnc(cell.getMnc());
+            request.setLac(cell.getLac());
+            request.setCellId(cell.getCellId());
+            try {
+                request.cellIdentity();
+                queue.add(request);
+            } catch (InvalidCellIdentityException e) {
+                log.debug("Skipping malformed logged cell: {}", e.getMessage());
+            }
+        }
+        planned = queue.size();
+        log.info("Cache warm-up started | cells={} | concurrency={} | maxPerSecond={}",
+                planned, concurrency, maxPerSecond);
+        return queue;
+    }
+
+    private CompletableFuture<Void> warm(Queue<GeolocationRequest> queue) {
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(Math.max(concurrency, 1), queue.size())];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = drain(queue);
+        }
+        return CompletableFuture.allOf(workers);
+    }
+
+    // One worker: resolves queued cells one after another until the queue is empty or warm-up stops
+    private CompletableFuture<Void> drain(Queue<GeolocationRequest> queue) {
+        GeolocationRequest request = stopped ? null : queue.poll();
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return geolocationService.resolveCached(request, this::admit)
+            .handle((resp, e) -> {
+                if (e != null) {
+                    failed.increment();
+                    log.debug("Warm-up of cell {} failed: {}", request.cellIdentity(), e.getMessage());
+                } else if (resp.getLatitude() != null) {
+                    warmed.increment();
+                } else {
+                    unresolved.increment();
+                }
+                return null;
+            })
+            .thenComposeAsync(v -> drain(queue), taskExecutor);
+    }
+
+    // Completes when the next provider lookup may start, without holding a thread meanwhile
+    private CompletableFuture<Void> admit() {
+        ConsumptionProbe probe = providerPace.tryConsumeAndReturnRemaining(1);
+        if (probe.isConsumed()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Executor later = CompletableFuture.delayedExecutor(
+                probe.getNanosToWaitForRefill(), TimeUnit.NANOSECONDS, taskExecutor);
+        return CompletableFuture.runAsync(() -> { }, later).thenCompose(v -> admit());
+    }
+
+    private void finish(Phase outcome) {
+        finishedAt = Instant.now();
+        phase = outcome;
+        if (outcome != Phase.DISABLED) {
+            log.info("Cache warm-up {} | planned={} | warmed={} | unresolved={} | failed={} | took={}ms",
+                    outcome, planned, warmed.sum(), unresolved.sum(), failed.sum(),
+                    Duration.between(startedAt, finishedAt).toMillis());
+        }
+    }
+
+    /** True once warm-up no longer holds back readiness (done, timed out, failed or disabled). */
+    public boolean isFinished() {
+        Phase current = phase;
+        return current != Phase.PENDING && current != Phase.RUNNING;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("phase", phase.name());
+        result.put("planned", planned);
+        result.put("warmed", warmed.sum());
+        result.put("unresolved", unresolved.sum());
+        result.put("failed", failed.sum());
+        result.put("startedAt", startedAt);
+        result.put("finishedAt", finishedAt);
+        result.put("topN", topN);
+        result.put("timeoutSeconds", timeoutSeconds);
+        return result;
+    }
+}
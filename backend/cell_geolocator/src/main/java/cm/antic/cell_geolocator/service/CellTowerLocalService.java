@@ -1,11 +1,33 @@
 package cm.antic.cell_geolocator.service;
 
+import cm.antic.cell_geolocator.exception.InvalidCellIdentityException;
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
+import cm.antic.cell_geolocator.model.FallbackCandidate;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
 import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.model.NearbyCell;
+import cm.antic.cell_geolocator.model.RelatedCell;
+import cm.antic.cell_geolocator.model.RelatedCells;
+import cm.antic.cell_geolocator.config.TowerOperatorProperties.AddressSource;
+import cm.antic.cell_geolocator.service.tower.OperatorRegistry;
+import cm.antic.cell_geolocator.service.tower.OperatorSource;
+import cm.antic.cell_geolocator.service.tower.TowerGrid;
+import cm.antic.cell_geolocator.service.tower.TowerIndex;
+import cm.antic.cell_geolocator.service.tower.TowerIndexService;
+import cm.antic.cell_geolocator.service.tower.TowerRow;
+import cm.antic.cell_geolocator.service.tower.TowerSiblings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,243 +37,453 @@ public class CellTowerLocalService {
     private static final Logger log = LoggerFactory.getLogger(CellTowerLocalService.class);
 
     private final JdbcTemplate jdbcTemplate;
-    private final ReverseGeocodeService reverseGeocodeService;
+    private final DeferredAddressService deferredAddressService;
+    private final TowerIndexService towerIndexService;
+    private final OperatorRegistry operatorRegistry;
+
+    // When the in-memory index misses, also probe the tables (catches rows added since load)
+    @Value("${tower.index.sql-fallback:false}")
+    private boolean sqlFallback;
+
+    // Upper bound on the related cells returned per request
+    @Value("${tower.siblings.max-page-size:100}")
+    private int maxRelatedCells;
 
     public CellTowerLocalService(JdbcTemplate jdbcTemplate,
-                                 ReverseGeocodeService reverseGeocodeService) {
+                                 DeferredAddressService deferredAddressService,
+                                 TowerIndexService towerIndexService,
+                                 OperatorRegistry operatorRegistry) {
         this.jdbcTemplate = jdbcTemplate;
-        this.reverseGeocodeService = reverseGeocodeService;
+        this.deferredAddressService = deferredAddressService;
+        this.towerIndexService = towerIndexService;
+        this.operatorRegistry = operatorRegistry;
     }
 
-    public List<Map<String, Object>> findCellsByBtsId(String cellId, String provider) {
-        try {
-            if ("orange".equals(provider)) {
-                String sql = """
-                    SELECT c2.lac, c2.ci, c2."Id BTS New", c2.latitude, c2.longitude,
-                           c2."Techno Cell" AS techno_cell,
-                           c2."Fréquence Cell" AS frequence_cell
-                    FROM orange_cameroon c1
-                    JOIN orange_cameroon c2 ON c1."Id BTS New" = c2."Id BTS New"
-                    WHERE c1.ci = ?
-                      AND c2.ci <> ?
-                    ORDER BY c2.ci
-                """;
-                return jdbcTemplate.queryForList(sql, cellId, cellId);
-            } else if ("mtn".equals(provider)) {
-                String sql = """
-                    SELECT DISTINCT ON (c2.lac, c2.ci) c2.lac, c2.ci, c2.latitude, c2.longitude,
-                           c2.technology AS techno_cell,
-                           c2.frequency_band AS frequence_cell
-                    FROM mtn_cameroon c1
-                    JOIN mtn_cameroon c2 ON c1.lac = c2.lac
-                    WHERE c1.ci = CAST(? AS BIGINT)
-                      AND c2.ci <> CAST(? AS BIGINT)
-                    ORDER BY c2.ci
-                """;
-                return jdbcTemplate.queryForList(sql, cellId, cellId);
+    /**
+     * Returns one page of the other cells on the same site as the given cell: same
+     * BTS for Orange, same site name for MTN. Served from the site adjacency built after
+     * each tower index, so the cost is bounded by the page size. The page is capped
+     * at {@code tower.siblings.max-page-size}; a non-positive limit means the cap.
+     * Empty until the adjacency is built, or if the cell is unknown.
+     */
+    public RelatedCells findRelatedCells(CellGlobalIdentity cell, int offset, int limit) {
+        int pageSize = limit <= 0 ? maxRelatedCells : Math.min(limit, maxRelatedCells);
+        int from = Math.max(offset, 0);
+        RelatedCells page = RelatedCells.empty(from, pageSize);
+
+        TowerSiblings siblings = towerIndexService.siblings();
+        if (siblings == null) {
+            log.debug("Site adjacency not built — no related cells for {}", cell);
+            return page;
+        }
+        if (!cell.packable()) {
+            return page;
+        }
+
+        TowerIndex index = siblings.index();
+        for (OperatorSource source : operatorRegistry.route(cell.mcc(), cell.mnc())) {
+            int id = index.find(source.getMcc(), source.getMnc(), cell.lac(), (int) cell.ci());
+            if (id == TowerIndex.NOT_FOUND) {
+                continue;
             }
-            return List.of();
-        } catch (Exception e) {
-            log.error("Failed to fetch related cells for provider {}: {}", provider, e.getMessage());
-            return List.of();
+
+            int[] ids = new int[pageSize];
+            int count = siblings.siblings(id, from, ids);
+            List<RelatedCell> cells = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                cells.add(toRelatedCell(index, ids[i]));
+            }
+            page.setTotal(siblings.count(id));
+            page.setCells(cells);
+            return page;
         }
+        return page;
     }
 
+    private static RelatedCell toRelatedCell(TowerIndex index, int id) {
+        RelatedCell cell = new RelatedCell();
+        cell.setLac(String.valueOf(index.lac(id)));
+        cell.setCi(String.valueOf(index.ci(id)));
+        cell.setBtsId(index.btsId(id));
+        cell.setSiteName(index.siteName(id));
+        cell.setLatitude(index.latitude(id));
+        cell.setLongitude(index.longitude(id));
+        cell.setTechnoCell(index.technoCell(id));
+        cell.setFrequenceCell(index.frequenceCell(id));
+        return cell;
+    }
+
+    /**
+     * Resolves a cell from the local operator tables. Only the operator routed from
+     * the request's MCC/MNC is consulted: exact (lac, ci) first, then the closest CI
+     * in the same LAC. Served from the in-memory index when it is loaded; the SQL
+     * queries are used when it is not, or on an index miss if sql-fallback is set.
+     */
     public GeolocationResponse findLocalTower(String mcc, String mnc, String lac, String cellId) {
+        CellGlobalIdentity cell;
         try {
-            // ORANGE EXACT
-            String orangeSql = """
-                SELECT latitude,
-                       longitude,
-                       nomdusite AS operator_name,
-                       "Id BTS New",
-                       "Techno Cell" AS techno_cell,
-                       "Fréquence Cell" AS frequence_cell,
-                       ci
-                FROM orange_cameroon
-                WHERE lac = ?
-                  AND ci = ?
-                LIMIT 1
-            """;
-
-            List<Map<String, Object>> exactResults =
-                    jdbcTemplate.queryForList(orangeSql, lac, cellId);
-
-            if (!exactResults.isEmpty()) {
-                GeolocationResponse resp = buildResponse(exactResults.get(0), "orange");
-                if (resp == null) return null;
-
-                resp.setCellId(cellId);
-                resp.setOriginalRequestedCellId(cellId);
-                resp.setFallbackUsed(false);
-
-                addAddressAsync(resp);
-
-                log.info("LOCAL DB HIT (orange_exact) for cellId={}", cellId);
+            cell = CellGlobalIdentity.parse(mcc, mnc, lac, cellId);
+        } catch (InvalidCellIdentityException e) {
+            log.warn("Invalid cell identity: {}", e.getMessage());
+            return null;
+        }
+        return findLocalTower(cell);
+    }
+
+    /**
+     * As {@link #findLocalTower(String, String, String, String)}, for an already
+     * validated cell. Index lookups use its ints directly; a cell too wide for the
+     * index key (see {@link CellGlobalIdentity#packable()}) is not in the local tables.
+     * A geocoded address is never waited for: it is left behind a token, see
+     * {@link DeferredAddressService#awaitAddress}. Null means the tables do not have
+     * the cell; a {@link DataAccessException} means they could not be read, not a miss.
+     */
+    public GeolocationResponse findLocalTower(CellGlobalIdentity cell) {
+        if (!cell.packable()) {
+            log.debug("Cell {} does not fit the tower index key, not a local cell", cell);
+            return null;
+        }
+        List<OperatorSource> sources = operatorRegistry.route(cell.mcc(), cell.mnc());
+        if (sources.isEmpty()) {
+            log.debug("No local tower source for MCC={} MNC={}", cell.mcc(), cell.mnc());
+            return null;
+        }
+
+        int lacValue = cell.lac();
+        int ciValue = (int) cell.ci();
+
+        for (int i = 0; i < sources.size(); i++) {
+            sources.get(i).recordLookup();
+        }
+
+        TowerIndex index = towerIndexService.current();
+
+        if (index != null) {
+            GeolocationResponse resp = findIndexedTower(index, sources, lacValue, ciValue);
+            if (resp != null) {
+                towerIndexService.recordHit();
                 return resp;
             }
+            towerIndexService.recordMiss();
 
-            // MTN EXACT (UPDATED)
-            String mtnSql = """
-                SELECT latitude,
-                       longitude,
-                       site_name AS operator_name,
-                       ci,
-                       technology AS techno_cell,
-                       frequency_band AS frequence_cell,
-                       site_name,
-                       arrondissement,
-                       departement,
-                       region,
-                       azimuth
-                FROM mtn_cameroon
-                WHERE lac = CAST(? AS BIGINT)
-                  AND ci  = CAST(? AS BIGINT)
-                LIMIT 1
-            """;
-
-            List<Map<String, Object>> mtnResults =
-                    jdbcTemplate.queryForList(mtnSql, lac, cellId);
-
-            if (!mtnResults.isEmpty()) {
-                Map<String, Object> row = mtnResults.get(0);
-
-                GeolocationResponse resp = buildResponse(row, "mtn");
-
-                resp.setCellId(cellId);
-                resp.setOriginalRequestedCellId(
-                    row.get("azimuth") != null ? row.get("azimuth").toString() : cellId
-                );
-                resp.setFallbackUsed(false);
-                resp.setTechnoCell((String) row.get("techno_cell"));
-                resp.setFrequenceCell((String) row.get("frequence_cell"));
-
-                // USE LOCAL ADDRESS (NO API)
-                buildMtnAddress(resp, row);
-
-                log.info("LOCAL DB HIT (mtn_exact) for cellId=" + cellId);
-                return resp;
+            if (!sqlFallback) {
+                sources.forEach(OperatorSource::recordMiss);
+                return null;
             }
+        }
 
-            // ORANGE FALLBACK
-            String fallbackSql = """
-                SELECT ci,
-                       latitude,
-                       longitude,
-                       nomdusite AS operator_name,
-                       "Id BTS New",
-                       ABS(CAST(ci AS INTEGER) - ?) AS distance,
-                       "Techno Cell" AS techno_cell,
-                       "Fréquence Cell" AS frequence_cell
-                FROM orange_cameroon
-                WHERE lac = ?
-                ORDER BY distance ASC
-                LIMIT 1
-            """;
+        GeolocationResponse resp = findSqlTower(sources, String.valueOf(lacValue), ciValue,
+                String.valueOf(ciValue));
+        if (resp == null) {
+            sources.forEach(OperatorSource::recordMiss);
+        }
+        return resp;
+    }
 
-            List<Map<String, Object>> fallbackResults =
-                    jdbcTemplate.queryForList(fallbackSql, Integer.parseInt(cellId), lac);
+    /**
+     * Resolves many cells at once; the result is aligned with {@code requests}, with null
+     * for cells not found locally and an error response without a position for cells
+     * whose tables could not be read. Index hits (exact, then closest CI) are answered from
+     * memory; the remaining cells are looked up with one set-based exact query per
+     * operator when the index is not loaded, or on a miss if sql-fallback is set. Unlike
+     * {@link #findLocalTower}, there is no per-cell closest-CI SQL query. Geocoding starts
+     * for every hit without waiting; see {@link DeferredAddressService#awaitAddresses}.
+     */
+    public List<GeolocationResponse> findLocalTowers(List<GeolocationRequest> requests) {
+        GeolocationResponse[] results = new GeolocationResponse[requests.size()];
+        int[] lacs = new int[requests.size()];
+        int[] cis = new int[requests.size()];
+        TowerIndex index = towerIndexService.current();
+
+        // Positions left for the set-based query, per routed source
+        Map<OperatorSource, List<Integer>> pending = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            GeolocationRequest request = requests.get(i);
+            if (request == null) continue;
+
+            CellGlobalIdentity cell;
+            try {
+                cell = request.cellIdentity();
+            } catch (InvalidCellIdentityException e) {
+                log.warn("Invalid cell identity: {}", e.getMessage());
+                continue;
+            }
+            if (!cell.packable()) continue;
+            List<OperatorSource> sources = operatorRegistry.route(cell.mcc(), cell.mnc());
+            if (sources.isEmpty()) continue;
+            lacs[i] = cell.lac();
+            cis[i] = (int) cell.ci();
+            sources.forEach(OperatorSource::recordLookup);
+
+            if (index != null) {
+                results[i] = findIndexedTower(index, sources, lacs[i], cis[i]);
+                if (results[i] != null) {
+                    towerIndexService.recordHit();
+                    continue;
+                }
+                towerIndexService.recordMiss();
+                if (!sqlFallback) {
+                    sources.forEach(OperatorSource::recordMiss);
+                    continue;
+                }
+            }
+            for (OperatorSource source : sources) {
+                pending.computeIfAbsent(source, s -> new ArrayList<>()).add(i);
+            }
+        }
 
-            if (!fallbackResults.isEmpty()) {
-                Map<String, Object> row = fallbackResults.get(0);
+        pending.forEach((source, positions) -> findSqlTowers(source, requests, positions, lacs, cis, results));
 
-                GeolocationResponse resp = buildResponse(row, "orange");
-                if (resp == null) return null;
+        pending.forEach((source, positions) -> positions.forEach(i -> {
+            if (results[i] == null) source.recordMiss();
+        }));
+        return Arrays.asList(results);
+    }
 
-                String usedCellId = row.get("ci").toString();
+    private void findSqlTowers(OperatorSource source, List<GeolocationRequest> requests,
+                               List<Integer> positions, int[] lacs, int[] cis,
+                               GeolocationResponse[] results) {
+        boolean numeric = "bigint".equals(source.idArrayType());
+        Object[] lacParams = new Object[positions.size()];
+        Object[] ciParams = new Object[positions.size()];
+        for (int p = 0; p < positions.size(); p++) {
+            int i = positions.get(p);
+            lacParams[p] = numeric ? (Object) (long) lacs[i] : String.valueOf(lacs[i]);
+            ciParams[p] = numeric ? (Object) (long) cis[i] : String.valueOf(cis[i]);
+        }
 
-                resp.setCellId(usedCellId);
-                resp.setOriginalRequestedCellId(cellId);
-                resp.setFallbackUsed(true);
+        List<TowerRow> rows;
+        try {
+            rows = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(source.batchExactSql());
+                ps.setArray(1, con.createArrayOf(source.idArrayType(), lacParams));
+                ps.setArray(2, con.createArrayOf(source.idArrayType(), ciParams));
+                return ps;
+            }, source.rowMapper());
+        } catch (DataAccessException e) {
+            log.error("Local DB batch lookup failed for {}", source.getName(), e);
+            for (int i : positions) {
+                if (results[i] == null) results[i] = lookupFailed(source);
+            }
+            return;
+        }
 
-                addAddressAsync(resp);
+        Map<Long, TowerRow> byCell = new HashMap<>();
+        for (TowerRow row : rows) {
+            long key = TowerIndex.pack(row.mcc(), row.mnc(), row.lac(), row.ci());
+            if (key != TowerIndex.INVALID_KEY) byCell.putIfAbsent(key, row);
+        }
 
-                log.info("LOCAL DB HIT (orange_fallback) requested={}, used={}", cellId, usedCellId);
-                return resp;
+        for (int i : positions) {
+            if (isHit(results[i])) continue;
+            long key = TowerIndex.pack(source.getMcc(), source.getMnc(), lacs[i], cis[i]);
+            TowerRow row = key != TowerIndex.INVALID_KEY ? byCell.get(key) : null;
+            if (row != null) {
+                source.recordSqlHit(false);
+                results[i] = toResponse(source, row, String.valueOf(cis[i]), false);
             }
+        }
+        log.info("LOCAL DB BATCH ({}) cells={}, rows={}", source.getName(), positions.size(), rows.size());
+    }
 
-            // MTN FALLBACK (UPDATED)
-            String mtnFallbackSql = """
-                SELECT ci,
-                       latitude,
-                       longitude,
-                       site_name AS operator_name,
-                       ABS(CAST(ci AS INTEGER) - ?) AS distance,
-                       technology AS techno_cell,
-                       frequency_band AS frequence_cell,
-                       site_name,
-                       arrondissement,
-                       departement,
-                       region,
-                       azimuth
-                FROM mtn_cameroon
-                WHERE lac = CAST(? AS BIGINT)
-                ORDER BY distance ASC
-                LIMIT 1
-            """;
-
-            List<Map<String, Object>> mtnFallbackResults =
-                    jdbcTemplate.queryForList(mtnFallbackSql, Integer.parseInt(cellId), lac);
-
-            if (!mtnFallbackResults.isEmpty()) {
-                Map<String, Object> row = mtnFallbackResults.get(0);
-
-                GeolocationResponse resp = buildResponse(row, "mtn");
-
-                String usedCellId = row.get("ci").toString();
-
-                resp.setCellId(usedCellId);
-                resp.setOriginalRequestedCellId(
-                    row.get("azimuth") != null ? row.get("azimuth").toString() : cellId
-                );
-                resp.setFallbackUsed(true);
-                resp.setTechnoCell((String) row.get("techno_cell"));
-                resp.setFrequenceCell((String) row.get("frequence_cell"));
-
-                // USE LOCAL ADDRESS
-                buildMtnAddress(resp, row);
-
-                log.info("LOCAL DB HIT (mtn_fallback) requested={}, used={}", cellId, usedCellId);
-                return resp;
+    // The requested cell id string is only built for a hit
+    private GeolocationResponse findIndexedTower(TowerIndex index, List<OperatorSource> sources,
+                                                 int lac, int ci) {
+        for (int i = 0; i < sources.size(); i++) {
+            OperatorSource source = sources.get(i);
+            int id = index.find(source.getMcc(), source.getMnc(), lac, ci);
+            if (id != TowerIndex.NOT_FOUND) {
+                source.recordIndexHit(false);
+                log.info("LOCAL INDEX HIT ({}_exact) for cellId={}", source.getName(), ci);
+                return toResponse(source, index.row(id), String.valueOf(ci), false);
             }
+        }
 
-            return null;
+        for (int i = 0; i < sources.size(); i++) {
+            OperatorSource source = sources.get(i);
+            int id = index.nearest(source.getMcc(), source.getMnc(), lac, ci);
+            if (id != TowerIndex.NOT_FOUND) {
+                source.recordIndexHit(true);
+                log.info("LOCAL INDEX HIT ({}_fallback) requested={}, used={}",
+                        source.getName(), ci, index.ci(id));
+                return toResponse(source, index.row(id), String.valueOf(ci), true);
+            }
+        }
 
-        } catch (DataAccessException e) {
-            log.error("Local DB lookup failed", e);
-        } catch (NumberFormatException e) {
-            log.warn("Invalid Cell ID format: {}", cellId);
+        return null;
+    }
+
+    // A DataAccessException is left to the caller: it must not be taken for a miss
+    private GeolocationResponse findSqlTower(List<OperatorSource> sources, String lac,
+                                             int ci, String cellId) {
+        for (OperatorSource source : sources) {
+            List<TowerRow> rows = jdbcTemplate.query(
+                    source.exactSql(), source.rowMapper(), lac, cellId);
+            if (!rows.isEmpty()) {
+                source.recordSqlHit(false);
+                log.info("LOCAL DB HIT ({}_exact) for cellId={}", source.getName(), cellId);
+                return toResponse(source, rows.get(0), cellId, false);
+            }
+        }
+
+        for (OperatorSource source : sources) {
+            List<TowerRow> rows = jdbcTemplate.query(
+                    source.fallbackSql(), source.rowMapper(), lac, ci);
+            if (!rows.isEmpty()) {
+                source.recordSqlHit(true);
+                log.info("LOCAL DB HIT ({}_fallback) requested={}, used={}",
+                        source.getName(), cellId, rows.get(0).ci());
+                return toResponse(source, rows.get(0), cellId, true);
+            }
         }
 
         return null;
     }
 
-    private GeolocationResponse buildResponse(Map<String, Object> row, String provider) {
-        Object latObj = row.get("latitude");
-        Object lonObj = row.get("longitude");
+    private static boolean isHit(GeolocationResponse resp) {
+        return resp != null && resp.getLatitude() != null;
+    }
+
+    private static GeolocationResponse lookupFailed(OperatorSource source) {
+        GeolocationResponse resp = new GeolocationResponse();
+        resp.setProviderUsed("LOCAL_DB_" + source.getName().toUpperCase());
+        resp.setError("Local DB lookup failed");
+        return resp;
+    }
+
+    /**
+     * Returns up to {@code k} indexed cells of the cell's LAC, closest CI first. Only
+     * the operator routed from its MCC/MNC is searched. Empty if the index is not loaded.
+     */
+    public List<FallbackCandidate> findClosestCells(CellGlobalIdentity cell, int k) {
+        return findClosestCells(operatorRegistry.route(cell.mcc(), cell.mnc()), cell, k);
+    }
+
+    /**
+     * As {@link #findClosestCells(CellGlobalIdentity, int)}, for a LAC and CI given
+     * without MCC/MNC: every operator is searched.
+     *
+     * @throws InvalidCellIdentityException if the LAC or CI is malformed
+     */
+    public List<FallbackCandidate> findClosestCells(String lac, String cellId, int k) {
+        // Any operator's MCC/MNC will do: only the LAC and CI are used
+        CellGlobalIdentity cell = CellGlobalIdentity.parse("0", "0", lac, cellId);
+        return findClosestCells(operatorRegistry.all(), cell, k);
+    }
+
+    private List<FallbackCandidate> findClosestCells(List<OperatorSource> sources, CellGlobalIdentity cell, int k) {
+        TowerIndex index = towerIndexService.current();
+        if (index == null || k <= 0 || !cell.packable()) {
+            return List.of();
+        }
+        int lacValue = cell.lac();
+        int ciValue = (int) cell.ci();
+
+        List<FallbackCandidate> candidates = new ArrayList<>();
+        int[] ids = new int[k];
+        for (OperatorSource source : sources) {
+            int count = index.nearest(source.getMcc(), source.getMnc(), lacValue, ciValue, ids);
+            for (int i = 0; i < count; i++) {
+                int id = ids[i];
+                FallbackCandidate candidate = new FallbackCandidate();
+                candidate.setProvider(source.getName());
+                candidate.setLac(String.valueOf(index.lac(id)));
+                candidate.setCellId(String.valueOf(index.ci(id)));
+                candidate.setDistance(Math.abs((long) index.ci(id) - ciValue));
+                candidate.setLatitude(index.latitude(id));
+                candidate.setLongitude(index.longitude(id));
+                candidate.setSiteName(index.siteName(id));
+                candidates.add(candidate);
+            }
+        }
+
+        candidates.sort(Comparator.comparingLong(FallbackCandidate::getDistance));
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+
+    /**
+     * Returns up to {@code k} indexed cells closest to (lat, lon) by haversine distance,
+     * optionally restricted to one operator by name. Served from the spatial grid built
+     * after each tower index; empty until it is built, or if the operator is unknown.
+     */
+    public List<NearbyCell> findNearestCells(double lat, double lon, int k, String provider) {
+        TowerGrid grid = towerIndexService.grid();
+        if (grid == null || k <= 0) {
+            return List.of();
+        }
+
+        int operator = TowerGrid.ANY_OPERATOR;
+        if (provider != null && !provider.isBlank()) {
+            OperatorSource source = operatorRegistry.byName(provider);
+            if (source == null) {
+                log.debug("Unknown provider '{}' for nearest-cell search", provider);
+                return List.of();
+            }
+            operator = TowerGrid.operatorCode(source.getMcc(), source.getMnc());
+        }
+
+        int[] ids = new int[k];
+        double[] km = new double[k];
+        int count = grid.nearest(lat, lon, operator, ids, km);
+
+        TowerIndex index = grid.index();
+        List<NearbyCell> cells = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            NearbyCell cell = new NearbyCell();
+            cell.setProvider(index.operator(id));
+            cell.setMcc(String.valueOf(index.mcc(id)));
+            cell.setMnc(String.valueOf(index.mnc(id)));
+            cell.setLac(String.valueOf(index.lac(id)));
+            cell.setCellId(String.valueOf(index.ci(id)));
+            cell.setDistanceKm(km[i]);
+            cell.setLatitude(index.latitude(id));
+            cell.setLongitude(index.longitude(id));
+            cell.setSiteName(index.siteName(id));
+            cell.setBtsId(index.btsId(id));
+            cell.setTechnoCell(index.technoCell(id));
+            cell.setFrequenceCell(index.frequenceCell(id));
+            cells.add(cell);
+        }
+        return cells;
+    }
 
-        if (latObj == null || lonObj == null) {
-            log.warn("Latitude or Longitude is null for DB row: {}", row);
+    private GeolocationResponse toResponse(OperatorSource source, TowerRow row,
+                                           String requestedCellId, boolean fallback) {
+        if (Double.isNaN(row.latitude()) || Double.isNaN(row.longitude())) {
+            log.warn("Latitude or Longitude is null for {} row lac={}, ci={}",
+                    source.getName(), row.lac(), row.ci());
             return null;
         }
 
         GeolocationResponse resp = new GeolocationResponse();
-        resp.setLatitude(Double.parseDouble(latObj.toString()));
-        resp.setLongitude(Double.parseDouble(lonObj.toString()));
-        resp.setProviderUsed("LOCAL_DB_" + provider.toUpperCase() + ": " + row.get("operator_name"));
-        resp.setTechnoCell((String) row.get("techno_cell"));
-        resp.setFrequenceCell((String) row.get("frequence_cell"));
+        resp.setLatitude(row.latitude());
+        resp.setLongitude(row.longitude());
+        resp.setProviderUsed("LOCAL_DB_" + source.getName().toUpperCase() + ": " + row.siteName());
+        resp.setTechnoCell(row.technoCell());
+        resp.setFrequenceCell(row.frequenceCell());
+        resp.setCellId(fallback ? String.valueOf(row.ci()) : requestedCellId);
+        // Sources with an azimuth column report it here (MTN), the others echo the request
+        resp.setOriginalRequestedCellId(row.azimuth() != null ? row.azimuth() : requestedCellId);
+        resp.setFallbackUsed(fallback);
+
+        if (source.getAddressSource() == AddressSource.TABLE) {
+            // USE LOCAL ADDRESS (NO API)
+            buildTableAddress(resp, row);
+        } else {
+            deferredAddressService.attach(resp);
+        }
 
         return resp;
     }
 
-    // NEW METHOD (MTN ADDRESS BUILDER)
-    private void buildMtnAddress(GeolocationResponse resp, Map<String, Object> row) {
+    private void buildTableAddress(GeolocationResponse resp, TowerRow row) {
         try {
-            String siteName = row.get("site_name") != null ? row.get("site_name").toString() : "";
-            String arrondissement = row.get("arrondissement") != null ? row.get("arrondissement").toString() : "";
-            String departement = row.get("departement") != null ? row.get("departement").toString() : "";
-            String region = row.get("region") != null ? row.get("region").toString() : "";
+            String siteName = row.siteName() != null ? row.siteName() : "";
+            String arrondissement = row.arrondissement() != null ? row.arrondissement() : "";
+            String departement = row.departement() != null ? row.departement() : "";
+            String region = row.region() != null ? row.region() : "";
 
             String address = siteName + ", " + arrondissement + ", " + region + ", Cameroon";
             resp.setAddress(address);
@@ -267,17 +499,7 @@ public class CellTowerLocalService {
             resp.setAddressDetail(detail);
 
         } catch (Exception e) {
-            log.warn("Failed to build MTN address", e);
-        }
-    }
-
-    private void addAddressAsync(GeolocationResponse resp) {
-        try {
-            reverseGeocodeService
-                .addAddressToResponseAsync(resp)
-                .get();
-        } catch (Exception e) {
-            log.warn("Reverse geocoding failed, returning response without address", e);
+            log.warn("Failed to build local address", e);
         }
     }
 }
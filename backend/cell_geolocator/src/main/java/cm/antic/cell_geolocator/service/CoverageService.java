@@ -9,8 +9,6 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.List;
-import java.util.Map;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 
@@ -50,11 +48,11 @@ public class CoverageService {
                 return response;
             }
 
-            // Fetch cells
-            List<Map<String, Object>> cells = getCellsInArea(area, provider);
+            // Count cells (only the count is reported; the rows themselves are not needed)
+            long cellCount = countCellsInArea(area, provider);
             log.info(
                 "Cells fetched | area='{}', provider='{}', count={}",
-                area, provider, cells.size()
+                area, provider, cellCount
             );
 
             // Total region area
@@ -204,16 +202,16 @@ public class CoverageService {
         }
     }
 
-    // CELL FETCH
+    // CELL COUNT
 
-    private List<Map<String, Object>> getCellsInArea(String area, String provider) {
+    private long countCellsInArea(String area, String provider) {
 
         String term = "%" + area + "%";
 
         if ("mtn".equalsIgnoreCase(provider)) {
 
             String sql = """
-                SELECT latitude, longitude
+                SELECT COUNT(*)
                 FROM mtn_cameroon
                 WHERE
                     LOWER(localité) LIKE LOWER(?)
@@ -221,13 +219,14 @@ public class CoverageService {
                     OR LOWER("Region Terr") LIKE LOWER(?)
             """;
 
-            return jdbcTemplate.queryForList(sql, term, term, term);
+            Long count = jdbcTemplate.queryForObject(sql, Long.class, term, term, term);
+            return count != null ? count : 0;
 
         } else {
             // ORANGE 
 
             String sql = """
-                SELECT latitude, longitude, geom
+                SELECT COUNT(*)
                 FROM orange_cameroon
                 WHERE
                     LOWER(localité) LIKE LOWER(?)
@@ -237,9 +236,10 @@ public class CoverageService {
                     OR LOWER("Region Bus") LIKE LOWER(?)
             """;
 
-            return jdbcTemplate.queryForList(
-                sql, term, term, term, term, term
+            Long count = jdbcTemplate.queryForObject(
+                sql, Long.class, term, term, term, term, term
             );
+            return count != null ? count : 0;
         }
     }
 
@@ -2,12 +2,13 @@ package cm.antic.cell_geolocator.service;
 
 import cm.antic.cell_geolocator.entity.User;
 import cm.antic.cell_geolocator.repository.UserRepository;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
@@ -23,7 +24,22 @@ public class CustomUserDetailsService implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         return new org.springframework.security.core.userdetails.User(
-                user.getUsername(), user.getPassword(), new ArrayList<>());
+                user.getUsername(), user.getPassword(), List.of(new SimpleGrantedAuthority(authority(user.getRole()))));
+    }
+
+    // Stored roles are "ROLE_USER"-style names; "RULE_" is the historical default's misspelling
+    static String authority(String role) {
+        if (role == null || role.isBlank()) {
+            return "ROLE_USER";
+        }
+        String name = role.trim().toUpperCase();
+        if (name.startsWith("ROLE_")) {
+            return name;
+        }
+        if (name.startsWith("RULE_")) {
+            return "ROLE_" + name.substring("RULE_".length());
+        }
+        return "ROLE_" + name;
     }
 
 }
@@ -0,0 +1,189 @@
+package cm.antic.cell_geolocator.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import cm.antic.cell_geolocator.model.DeferredAddress;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+
+/**
+ * Adds addresses to local results without making them wait for external geocoding.
+ *
+ * Geocoding runs on a scratch copy of the response and never blocks the caller. If the
+ * address arrives within the caller's budget it is copied in before the response is
+ * returned; otherwise the response keeps a token and the address can be fetched later
+ * from {@link #find}.
+ */
+@Service
+public class DeferredAddressService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeferredAddressService.class);
+
+    private final ReverseGeocodeService reverseGeocodeService;
+    private final Cache<String, CompletableFuture<DeferredAddress>> pending;
+
+    // Default wait for the address when the request does not say; 0 = never wait
+    @Value("${geo.address.timeout-ms:1500}")
+    private long defaultTimeoutMs;
+
+    @Value("${geo.address.max-timeout-ms:5000}")
+    private long maxTimeoutMs;
+
+    public DeferredAddressService(ReverseGeocodeService reverseGeocodeService,
+                                  @Value("${geo.address.token-ttl-minutes:10}") long tokenTtlMinutes,
+                                  @Value("${geo.address.max-pending:10000}") long maxPending) {
+        this.reverseGeocodeService = reverseGeocodeService;
+        this.pending = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(tokenTtlMinutes))
+                .maximumSize(maxPending)
+                .build();
+    }
+
+    /**
+     * Starts geocoding {@code resp} without waiting for it. An address already known
+     * (a geocoding cache hit) is copied in; otherwise the response gets a token.
+     * Callers that can wait use {@link #awaitAddress} afterwards.
+     */
+    public void attach(GeolocationResponse resp) {
+        GeolocationResponse scratch = new GeolocationResponse();
+        scratch.setLatitude(resp.getLatitude());
+        scratch.setLongitude(resp.getLongitude());
+        scratch.setProviderUsed(resp.getProviderUsed());
+
+        CompletableFuture<Void> geocoding;
+        try {
+            geocoding = reverseGeocodeService.addAddressToResponseAsync(scratch);
+        } catch (Exception e) {
+            log.warn("Reverse geocoding failed, returning response without address", e);
+            return;
+        }
+
+        if (geocoding.isDone()) {
+            if (!geocoding.isCompletedExceptionally()) {
+                resp.setAddress(scratch.getAddress());
+                resp.setAddressDetail(scratch.getAddressDetail());
+            }
+            return;
+        }
+
+        String token = UUID.randomUUID().toString();
+        pending.put(token, geocoding.handle((v, e) -> toDeferred(token, scratch, e)));
+        resp.setAddressToken(token);
+    }
+
+    /**
+     * Completes with {@code resp} once its pending address is in, or when the budget
+     * runs out, whichever is first; the address is then copied in and the token
+     * dropped. No thread waits meanwhile. Responses without a token complete at once.
+     *
+     * @param requestedTimeoutMs the request's budget, or null for the server default
+     */
+    public CompletableFuture<GeolocationResponse> awaitAddress(GeolocationResponse resp,
+                                                               Integer requestedTimeoutMs) {
+        return awaitAddresses(resp == null ? List.of() : List.of(resp), requestedTimeoutMs)
+                .thenApply(v -> resp);
+    }
+
+    /**
+     * As {@link #awaitAddress}, for many responses sharing a single deadline: the batch
+     * waits at most one budget in total, not one per response. Null entries are skipped.
+     */
+    public CompletableFuture<Void> awaitAddresses(List<GeolocationResponse> responses,
+                                                  Integer requestedTimeoutMs) {
+        long budget = budget(requestedTimeoutMs);
+        // Cleared at the deadline; an address arriving later stays behind the token only
+        AtomicBoolean open = new AtomicBoolean(true);
+        List<CompletableFuture<Void>> waits = new ArrayList<>();
+        for (GeolocationResponse resp : responses) {
+            if (budget == 0 || resp == null || resp.getAddressToken() == null) continue;
+            CompletableFuture<DeferredAddress> future = pending.getIfPresent(resp.getAddressToken());
+            if (future != null) {
+                waits.add(future.thenAccept(address -> inline(open, resp, address)));
+            }
+        }
+        if (waits.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // A copy, so the deadline completes only this wait and never the shared futures
+        return CompletableFuture.allOf(waits.toArray(CompletableFuture[]::new))
+                .copy()
+                .completeOnTimeout(null, budget, TimeUnit.MILLISECONDS)
+                .handle((v, e) -> {
+                    synchronized (open) {
+                        open.set(false);
+                    }
+                    return null;
+                });
+    }
+
+    private static void inline(AtomicBoolean open, GeolocationResponse resp, DeferredAddress address) {
+        if (address.getStatus() != DeferredAddress.Status.READY) {
+            return;
+        }
+        synchronized (open) {
+            if (open.get()) {
+                resp.setAddress(address.getAddress());
+                resp.setAddressDetail(address.getAddressDetail());
+                resp.setAddressToken(null);
+            }
+        }
+    }
+
+    /**
+     * The address for a token: PENDING while geocoding runs, then READY or FAILED.
+     * Empty if the token is unknown or expired.
+     */
+    public Optional<DeferredAddress> find(String token) {
+        CompletableFuture<DeferredAddress> future = pending.getIfPresent(token);
+        if (future == null) {
+            return Optional.empty();
+        }
+        if (!future.isDone()) {
+            DeferredAddress result = new DeferredAddress();
+            result.setToken(token);
+            result.setStatus(DeferredAddress.Status.PENDING);
+            return Optional.of(result);
+        }
+        return Optional.of(future.join());
+    }
+
+    /**
+     * Completes with the token's final state (READY or FAILED) once geocoding is over.
+     * Empty if the token is unknown or expired.
+     */
+    public Optional<CompletableFuture<DeferredAddress>> whenResolved(String token) {
+        return Optional.ofNullable(pending.getIfPresent(token));
+    }
+
+    private long budget(Integer requestedTimeoutMs) {
+        long requested = requestedTimeoutMs != null ? requestedTimeoutMs : defaultTimeoutMs;
+        return Math.max(0, Math.min(requested, maxTimeoutMs));
+    }
+
+    private static DeferredAddress toDeferred(String token, GeolocationResponse scratch, Throwable error) {
+        DeferredAddress result = new DeferredAddress();
+        result.setToken(token);
+        if (error != null || scratch.getAddress() == null) {
+            result.setStatus(DeferredAddress.Status.FAILED);
+            return result;
+        }
+        result.setStatus(DeferredAddress.Status.READY);
+        result.setAddress(scratch.getAddress());
+        result.setAddressDetail(scratch.getAddressDetail());
+        return result;
+    }
+}
@@ -1,19 +1,22 @@
 package cm.antic.cell_geolocator.service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import cm.antic.cell_geolocator.entity.RequestLog;
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
 import cm.antic.cell_geolocator.model.GeolocationRequest;
 import cm.antic.cell_geolocator.model.GeolocationResponse;
 import cm.antic.cell_geolocator.model.PriorityGeolocationResult;
-import cm.antic.cell_geolocator.repository.RequestLogRepository;
 import cm.antic.cell_geolocator.service.provider.ProviderClient;
+import cm.antic.cell_geolocator.service.provider.ProviderInvoker;
+import cm.antic.cell_geolocator.service.tower.GeoDistance;
 
 /**
  * Service that aggregates results from multiple geolocation providers
@@ -27,23 +30,48 @@ public class GeolocationAggregatorService {
 
     private final CellTowerLocalService cellTowerLocalService;
     private final List<ProviderClient> providers;
+    private final ProviderInvoker providerInvoker;
     private final PriorityService priorityService;
-    private final RequestLogRepository requestLogRepository;
+    private final RequestLogWriter requestLogWriter;
+    private final GeolocationCacheService geolocationCacheService;
+    private final DeferredAddressService deferredAddressService;
+    private final Executor taskExecutor;
+
+    // Decide as soon as two valid provider results agree, instead of waiting for all
+    @Value("${geolocation.quorum.enabled:true}")
+    private boolean quorumEnabled;
+
+    // Two results agree when they are at most this far apart
+    @Value("${geolocation.quorum.distance-km:0.5}")
+    private double quorumDistanceKm;
 
     public GeolocationAggregatorService(
             List<ProviderClient> providers,
+            ProviderInvoker providerInvoker,
             PriorityService priorityService,
-            RequestLogRepository requestLogRepository,
-            CellTowerLocalService cellTowerLocalService) {
+            RequestLogWriter requestLogWriter,
+            CellTowerLocalService cellTowerLocalService,
+            GeolocationCacheService geolocationCacheService,
+            DeferredAddressService deferredAddressService,
+            @Qualifier("taskExecutor") Executor taskExecutor) {
 
         this.providers = providers;
+        this.providerInvoker = providerInvoker;
         this.priorityService = priorityService;
-        this.requestLogRepository = requestLogRepository;
+        this.requestLogWriter = requestLogWriter;
         this.cellTowerLocalService = cellTowerLocalService;
+        this.geolocationCacheService = geolocationCacheService;
+        this.deferredAddressService = deferredAddressService;
+        this.taskExecutor = taskExecutor;
     }
 
     /**
      * Resolves a geolocation request using local DB first, then external providers if needed.
+     * The local lookup runs on the task executor (it may query the database); providers are
+     * called through their non-blocking clients, so no thread waits while they are in flight.
+     *
+     * Sources known from the negative cache not to have the cell are skipped, and those
+     * that answer they do not have it are recorded there.
      */
     public CompletableFuture<PriorityGeolocationResult> resolveWithPriorityAsync(
             GeolocationRequest request) {
@@ -54,61 +82,101 @@ public class GeolocationAggregatorService {
             request.getLac(), request.getCellId()
         );
 
-        return CompletableFuture.supplyAsync(() -> {
-
-            //  Local DB check
-            GeolocationResponse localResp = cellTowerLocalService.findLocalTower(
-                    request.getMcc(),
-                    request.getMnc(),
-                    request.getLac(),
-                    request.getCellId()
-            );
-
-            if (localResp != null && localResp.getLatitude() != null) {
-                log.info("Local DB hit — skipping external providers");
+        // Malformed identities are rejected here, before any lookup
+        CellGlobalIdentity cell = request.cellIdentity();
+
+        List<String> tiers = new ArrayList<>();
+        providers.forEach(p -> tiers.add(p.getProviderName()));
+        tiers.add(GeolocationCacheService.LOCAL_TIER);
+        Set<String> skip = geolocationCacheService.knownMisses(request, tiers);
+
+        //  Local DB check
+        CompletableFuture<GeolocationResponse> local;
+        if (skip.contains(GeolocationCacheService.LOCAL_TIER)) {
+            local = CompletableFuture.completedFuture(null);
+        } else {
+            // A pending address is awaited on a timer, not on the executor thread
+            local = CompletableFuture.supplyAsync(() -> cellTowerLocalService.findLocalTower(cell), taskExecutor)
+                    .thenCompose(resp -> deferredAddressService.awaitAddress(resp, request.getAddressTimeoutMs()));
+        }
+
+        return local
+            .handle((localResp, e) -> {
+                if (e != null) {
+                    // The tables could not be read: not a miss, so nothing is remembered
+                    log.warn("Local DB lookup failed — querying external providers: {}", e.getMessage());
+                    return resolveWithProviders(request, skip);
+                }
+                if (localResp != null && localResp.getLatitude() != null) {
+                    log.info("Local DB hit — skipping external providers");
+
+                    PriorityGeolocationResult result = new PriorityGeolocationResult();
+                    result.setChosen(localResp);
+                    result.setAllResponses(Map.of("LOCAL_DB", localResp));
+                    result.setDistances(Collections.emptyMap());
+                    result.setShortestPair("LOCAL_DB_ONLY");
+
+                    saveLogAsync(request, localResp);
+                    return CompletableFuture.completedFuture(result);
+                }
+
+                if (!skip.contains(GeolocationCacheService.LOCAL_TIER)) {
+                    geolocationCacheService.recordMisses(request, List.of(GeolocationCacheService.LOCAL_TIER));
+                }
+                log.info("Local DB miss — querying external providers");
+                return resolveWithProviders(request, skip);
+            })
+            .thenCompose(result -> result);
+    }
 
-                PriorityGeolocationResult result = new PriorityGeolocationResult();
-                result.setChosen(localResp);
-                result.setAllResponses(Map.of("LOCAL_DB", localResp));
-                result.setDistances(Collections.emptyMap());
-                result.setShortestPair("LOCAL_DB_ONLY");
+    private CompletableFuture<PriorityGeolocationResult> resolveWithProviders(
+            GeolocationRequest request, Set<String> skip) {
 
-                saveLogAsync(request, localResp);
-                return result;
-            }
+        //  Query providers asynchronously
+        Map<String, CompletableFuture<GeolocationResponse>> calls = new HashMap<>();
+        Map<String, CompletableFuture<GeolocationResponse>> futures = new HashMap<>();
 
-            log.info("Local DB miss — querying external providers");
-
-            //  Query providers asynchronously
-            Map<String, CompletableFuture<GeolocationResponse>> futures = new HashMap<>();
-
-            for (ProviderClient provider : providers) {
-                log.debug("Dispatching request to provider '{}'", provider.getProviderName());
-
-                futures.put(
-                    provider.getProviderName(),
-                    CompletableFuture.supplyAsync(() -> provider.resolve(request))
-                        .exceptionally(e -> {
-                            log.error(
-                                "Provider '{}' failed: {}",
-                                provider.getProviderName(),
-                                e.getMessage()
-                            );
-                            GeolocationResponse err = new GeolocationResponse();
-                            err.setProviderUsed(provider.getProviderName());
-                            err.setAddress("Error: " + e.getMessage());
-                            return err;
-                        })
-                );
+        for (ProviderClient provider : providers) {
+            if (skip.contains(provider.getProviderName())) {
+                GeolocationResponse skipped = new GeolocationResponse();
+                skipped.setProviderUsed(provider.getProviderName());
+                skipped.setError("Skipped: cell unknown to provider (cached)");
+                futures.put(provider.getProviderName(), CompletableFuture.completedFuture(skipped));
+                continue;
             }
+            log.debug("Dispatching request to provider '{}'", provider.getProviderName());
+
+            CompletableFuture<GeolocationResponse> call = providerInvoker.resolveAsync(provider, request);
+            calls.put(provider.getProviderName(), call);
+            futures.put(
+                provider.getProviderName(),
+                call
+                    .exceptionally(e -> {
+                        log.error(
+                            "Provider '{}' failed: {}",
+                            provider.getProviderName(),
+                            e.getMessage()
+                        );
+                        GeolocationResponse err = new GeolocationResponse();
+                        err.setProviderUsed(provider.getProviderName());
+                        err.setAddress("Error: " + e.getMessage());
+                        return err;
+                    })
+            );
+        }
 
-            CompletableFuture.allOf(
-                futures.values().toArray(new CompletableFuture[0])
-            ).join();
+        return awaitResults(futures, calls).thenApply(results -> {
 
-            Map<String, GeolocationResponse> results = new HashMap<>();
-            futures.forEach((k, v) -> results.put(k, v.join()));
+            // Definite "no such cell" answers only; errors and timeouts say nothing
+            List<String> unknownTo = new ArrayList<>();
+            results.forEach((name, resp) -> {
+                if (!skip.contains(name) && resp != null && resp.isUnknownCell()) {
+                    unknownTo.add(name);
+                }
+            });
+            geolocationCacheService.recordMisses(request, unknownTo);
 
+            // Providers that had not answered when the result was decided are absent
             GeolocationResponse a = results.get("OpenCellID");
             GeolocationResponse b = results.get("UnwiredLabs");
             GeolocationResponse c = results.get("Combain");
@@ -146,9 +214,9 @@ public class GeolocationAggregatorService {
             }
 
             Map<String, Double> distances = new HashMap<>();
-            distances.put("AB", ab);
-            distances.put("AC", ac);
-            distances.put("BC", bc);
+            if (a != null && b != null) distances.put("AB", ab);
+            if (a != null && c != null) distances.put("AC", ac);
+            if (b != null && c != null) distances.put("BC", bc);
 
             PriorityGeolocationResult result = new PriorityGeolocationResult();
             result.setChosen(chosen);
@@ -168,6 +236,60 @@ public class GeolocationAggregatorService {
         });
     }
 
+    /**
+     * Completes with the provider results once the choice is decided: when every provider
+     * has answered or, in quorum mode, as soon as two valid results lie within
+     * {@code geolocation.quorum.distance-km} of each other. Calls still in flight then
+     * are cancelled and left out of the results.
+     */
+    private CompletableFuture<Map<String, GeolocationResponse>> awaitResults(
+            Map<String, CompletableFuture<GeolocationResponse>> futures,
+            Map<String, CompletableFuture<GeolocationResponse>> calls) {
+
+        if (!quorumEnabled || futures.isEmpty()) {
+            return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    // All futures are complete here, join() does not wait
+                    Map<String, GeolocationResponse> results = new HashMap<>();
+                    futures.forEach((k, v) -> results.put(k, v.join()));
+                    return results;
+                });
+        }
+
+        CompletableFuture<Map<String, GeolocationResponse>> decided = new CompletableFuture<>();
+
+        Runnable check = () -> {
+            Map<String, GeolocationResponse> arrived = new HashMap<>();
+            futures.forEach((k, v) -> {
+                if (v.isDone()) arrived.put(k, v.join());
+            });
+
+            boolean complete = arrived.size() == futures.size();
+            if (!complete && !hasAgreeingPair(arrived.values())) {
+                return;
+            }
+            if (decided.complete(arrived) && !complete) {
+                log.debug("Quorum reached with {} of {} providers", arrived.size(), futures.size());
+                calls.values().forEach(call -> call.cancel(true));
+            }
+        };
+
+        futures.values().forEach(f -> f.whenComplete((r, e) -> check.run()));
+        return decided;
+    }
+
+    private boolean hasAgreeingPair(Collection<GeolocationResponse> responses) {
+        List<GeolocationResponse> valid = responses.stream().filter(this::isValid).toList();
+        for (int i = 0; i < valid.size(); i++) {
+            for (int j = i + 1; j < valid.size(); j++) {
+                if (distanceIfValid(valid.get(i), valid.get(j)) <= quorumDistanceKm) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private GeolocationResponse pickByPriorityWithFallback(
             GeolocationResponse r1,
             GeolocationResponse r2,
@@ -189,36 +311,19 @@ public class GeolocationAggregatorService {
 
     private double distanceIfValid(GeolocationResponse r1, GeolocationResponse r2) {
         if (!isValid(r1) || !isValid(r2)) return Double.MAX_VALUE;
-        return haversine(
+        return GeoDistance.haversineKm(
             r1.getLatitude(), r1.getLongitude(),
             r2.getLatitude(), r2.getLongitude()
         );
     }
 
-    /**
-     * Haversine formula (km)
-     */
-    private double haversine(
-            double lat1, double lon1,
-            double lat2, double lon2) {
-
-        final int R = 6371;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a =
-            Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-            Math.cos(Math.toRadians(lat1)) *
-            Math.cos(Math.toRadians(lat2)) *
-            Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-    }
-
     private GeolocationResponse pickByPriority(
             GeolocationResponse r1,
             GeolocationResponse r2) {
 
+        if (r1 == null) return r2;
+        if (r2 == null) return r1;
+
         List<String> priorities = priorityService.getProviderPriorities();
         int idx1 = priorities.indexOf(r1.getProviderUsed());
         int idx2 = priorities.indexOf(r2.getProviderUsed());
@@ -233,25 +338,6 @@ public class GeolocationAggregatorService {
             GeolocationRequest req,
             GeolocationResponse resp) {
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                RequestLog logEntry = new RequestLog();
-                logEntry.setMcc(req.getMcc());
-                logEntry.setMnc(req.getMnc());
-                logEntry.setLac(req.getLac());
-                logEntry.setCellId(req.getCellId());
-                logEntry.setAccuracy(resp.getAccuracy());
-                logEntry.setProviderUsed(resp.getProviderUsed());
-                logEntry.setLatitude(resp.getLatitude());
-                logEntry.setLongitude(resp.getLongitude());
-                logEntry.setTimestamp(LocalDateTime.now());
-
-                requestLogRepository.save(logEntry);
-                log.debug("Request log saved successfully");
-
-            } catch (Exception e) {
-                log.error("Failed to save request log", e);
-            }
-        });
+        requestLogWriter.submit(req, resp);
     }
 }
@@ -0,0 +1,600 @@
+package cm.antic.cell_geolocator.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import cm.antic.cell_geolocator.config.ResultCacheProperties;
+import cm.antic.cell_geolocator.entity.CachedGeolocation;
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
+import cm.antic.cell_geolocator.model.DeferredAddress;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.repository.CachedGeolocationRepository;
+import cm.antic.cell_geolocator.service.tower.TowerIndexPublishedEvent;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Two-tier cache of resolved cells, so paid provider lookups survive restarts and are
+ * shared between replicas.
+ *
+ * L1 is in-process and holds resolved responses (never futures, never failures). L2 is
+ * the {@code geolocation_cache} table: an L1 miss reads it on the task executor, and new
+ * results are queued and written in batches by {@link #flush}, off the request path.
+ * Each entry expires after the TTL of the provider that produced it; L1 keeps entries
+ * at most {@code l1.max-ttl-minutes}, after which they are read back from L2.
+ *
+ * Past {@code refresh-ahead-ratio} of its TTL an entry is stale but still served: the
+ * hit returns at once and the cell is resolved again in the background, one refresh per
+ * cell at a time. If the refresh finds no position the stale entry stays until its TTL
+ * runs out. Only an expired entry makes the caller wait for the providers.
+ *
+ * Only results with a position are cached; a cell too wide for the packed
+ * {@code cell_key} (see {@link CellGlobalIdentity#packable()}) is cached in L1 only.
+ * A local result whose address was deferred (it carries an address token) is cached
+ * with its address once geocoding completes, and not at all if geocoding fails.
+ *
+ * Cells that a tier (a provider, or the local tables as {@link #LOCAL_TIER}) did not
+ * know are remembered separately, in memory and for a short TTL: the next lookup skips
+ * those tiers, and a cell unknown to every tier is answered without any lookup. Local
+ * misses are forgotten whenever a new tower index is published.
+ *
+ * Callers do their own access checks; this class knows nothing about who is asking.
+ * Cached responses are shared and must not be modified.
+ */
+@Service
+public class GeolocationCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(GeolocationCacheService.class);
+
+    /** Tier name of the local tower tables in negative entries. */
+    public static final String LOCAL_TIER = "LOCAL";
+
+    // One statement per row whether the cell is new or cached before, so rows batch together
+    private static final String UPSERT_SQL = """
+            INSERT INTO geolocation_cache (cell_key, provider_used, payload, created_at, refresh_at, expires_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (cell_key) DO UPDATE SET
+                provider_used = EXCLUDED.provider_used,
+                payload = EXCLUDED.payload,
+                created_at = EXCLUDED.created_at,
+                refresh_at = EXCLUDED.refresh_at,
+                expires_at = EXCLUDED.expires_at
+            """;
+
+    private final CachedGeolocationRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final DeferredAddressService deferredAddressService;
+    private final ResultCacheProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Executor taskExecutor;
+
+    private final Cache<CellGlobalIdentity, Entry> l1;
+
+    // Negative entries: tiers known not to have the cell
+    private final Cache<CellGlobalIdentity, Set<String>> misses;
+
+    // Write-behind queue: latest result per cell, waiting for the next flush
+    private final Map<CellGlobalIdentity, CachedGeolocation> pending = new ConcurrentHashMap<>();
+
+    // Background refreshes of stale entries in flight, at most one per cell
+    private final Map<CellGlobalIdentity, CompletableFuture<GeolocationResponse>> refreshing = new ConcurrentHashMap<>();
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l1Misses = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+    private final LongAdder l2ReadErrors = new LongAdder();
+    private final LongAdder writesQueued = new LongAdder();
+    private final LongAdder writesFlushed = new LongAdder();
+    private final LongAdder writesDropped = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder partialNegativeHits = new LongAdder();
+    private final LongAdder tiersSkipped = new LongAdder();
+    private final LongAdder missesRecorded = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder refreshesStarted = new LongAdder();
+    private final LongAdder refreshesUpdated = new LongAdder();
+    private final LongAdder refreshesUnresolved = new LongAdder();
+    private final LongAdder refreshesFailed = new LongAdder();
+    private final LongAdder addressesAwaited = new LongAdder();
+    private final LongAdder addressesFailed = new LongAdder();
+
+    private record Entry(GeolocationResponse response, LocalDateTime refreshAt, LocalDateTime expiresAt) {
+
+        boolean isStale(LocalDateTime now) {
+            return refreshAt != null && now.isAfter(refreshAt);
+        }
+    }
+
+    public GeolocationCacheService(CachedGeolocationRepository repository,
+                                   JdbcTemplate jdbcTemplate,
+                                   DeferredAddressService deferredAddressService,
+                                   ResultCacheProperties properties,
+                                   ObjectMapper objectMapper,
+                                   @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.deferredAddressService = deferredAddressService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+
+        Duration l1MaxTtl = Duration.ofMinutes(properties.getL1().getMaxTtlMinutes());
+        this.l1 = Caffeine.newBuilder()
+                .maximumSize(properties.getL1().getMaxSize())
+                .expireAfter(Expiry.writing((CellGlobalIdentity key, Entry entry) -> {
+                    Duration left = Duration.between(LocalDateTime.now(), entry.expiresAt());
+                    return left.compareTo(l1MaxTtl) < 0 ? left : l1MaxTtl;
+                }))
+                .build();
+        this.misses = Caffeine.newBuilder()
+                .maximumSize(properties.getNegative().getMaxSize())
+                .expireAfterWrite(Duration.ofMinutes(properties.getNegative().getTtlMinutes()))
+                .build();
+    }
+
+    /**
+     * The cached result for the request's cell, or {@code resolver}'s result on a miss
+     * (stored if it has a position). A failed or cancelled resolver is not cached.
+     *
+     * {@code tiers} are the tiers that could answer. The resolver is given those known
+     * not to have the cell, to skip them; if that is all of them, it is not called and
+     * an unresolved response is returned (a negative hit).
+     *
+     * A stale hit also starts a background refresh through {@code resolver}, which must
+     * therefore not depend on the caller still waiting.
+     */
+    public CompletableFuture<GeolocationResponse> getOrResolve(
+            GeolocationRequest request, Collection<String> tiers,
+            BiFunction<GeolocationRequest, Set<String>, CompletableFuture<GeolocationResponse>> resolver) {
+
+        CellGlobalIdentity key = request.cellIdentity();
+        Entry entry = l1.getIfPresent(key);
+        if (entry != null) {
+            l1Hits.increment();
+            log.debug("Result cache L1 hit for {}", key);
+            refreshIfStale(key, entry, request, tiers, resolver);
+            return CompletableFuture.completedFuture(entry.response());
+        }
+        l1Misses.increment();
+
+        Set<String> skip = knownMisses(key, tiers);
+        if (!skip.isEmpty() && skip.size() == tiers.size()) {
+            negativeHits.increment();
+            log.debug("Result cache negative hit for {}", key);
+            return CompletableFuture.completedFuture(unknownCell(skip));
+        }
+
+        CompletableFuture<Entry> stored = properties.getL2().isEnabled()
+            ? CompletableFuture.supplyAsync(() -> readL2(key), taskExecutor)
+            : CompletableFuture.completedFuture(null);
+
+        return stored.thenCompose(hit -> {
+            if (hit != null) {
+                refreshIfStale(key, hit, request, tiers, resolver);
+                return CompletableFuture.completedFuture(hit.response());
+            }
+            if (!skip.isEmpty()) {
+                partialNegativeHits.increment();
+                tiersSkipped.add(skip.size());
+            }
+            return resolver.apply(request, skip).thenApply(resp -> {
+                put(key, resp);
+                return resp;
+            });
+        });
+    }
+
+    // Starts a background re-resolution of a stale entry, unless one is already running
+    private void refreshIfStale(CellGlobalIdentity key, Entry entry, GeolocationRequest request,
+                                Collection<String> tiers,
+                                BiFunction<GeolocationRequest, Set<String>, CompletableFuture<GeolocationResponse>> resolver) {
+        if (!entry.isStale(LocalDateTime.now())) {
+            return;
+        }
+        staleHits.increment();
+
+        Set<String> skip = knownMisses(key, tiers);
+        if (!skip.isEmpty() && skip.size() == tiers.size()) {
+            return;
+        }
+        CompletableFuture<GeolocationResponse> refresh = new CompletableFuture<>();
+        if (refreshing.putIfAbsent(key, refresh) != null) {
+            return;
+        }
+        refreshesStarted.increment();
+        log.debug("Result cache entry for {} is stale, refreshing it", key);
+
+        // Resolved on the task executor so that the hit itself returns at once
+        CompletableFuture.supplyAsync(() -> resolver.apply(request, skip), taskExecutor)
+            .thenCompose(resolved -> resolved)
+            .whenComplete((resp, e) -> {
+                if (e != null) {
+                    refreshesFailed.increment();
+                    log.debug("Refresh of {} failed, keeping the stale entry: {}", key, e.getMessage());
+                } else if (resp == null || resp.getLatitude() == null || resp.getLongitude() == null) {
+                    refreshesUnresolved.increment();
+                } else {
+                    put(key, resp);
+                    refreshesUpdated.increment();
+                }
+                refreshing.remove(key, refresh);
+                refresh.complete(resp);
+            });
+    }
+
+    /**
+     * Which of {@code tiers} are known not to have the request's cell (empty if none),
+     * for callers that consult a tier before {@link #getOrResolve}.
+     */
+    public Set<String> knownMisses(GeolocationRequest request, Collection<String> tiers) {
+        return knownMisses(request.cellIdentity(), tiers);
+    }
+
+    private Set<String> knownMisses(CellGlobalIdentity key, Collection<String> tiers) {
+        Set<String> missed = properties.getNegative().isEnabled() ? misses.getIfPresent(key) : null;
+        if (missed == null) {
+            return Set.of();
+        }
+        Set<String> known = new HashSet<>(tiers);
+        known.retainAll(missed);
+        return Set.copyOf(known);
+    }
+
+    private static GeolocationResponse unknownCell(Set<String> tiers) {
+        GeolocationResponse unknown = new GeolocationResponse();
+        for (String tier : tiers) {
+            unknown.getRawResponses().put(tier, Map.of("error", "Cell unknown to this source (cached)"));
+        }
+        return unknown;
+    }
+
+    /**
+     * Records that {@code tiers} answered without a position for the request's cell.
+     * Only definite answers belong here, not failures or timeouts.
+     */
+    public void recordMisses(GeolocationRequest request, Collection<String> tiers) {
+        if (!properties.getNegative().isEnabled() || tiers.isEmpty()) {
+            return;
+        }
+        misses.asMap().merge(request.cellIdentity(), Set.copyOf(tiers), (old, added) -> {
+            Set<String> union = new HashSet<>(old);
+            union.addAll(added);
+            return Set.copyOf(union);
+        });
+        missesRecorded.increment();
+    }
+
+    /**
+     * Forgets the local misses: a newly published tower index may have the cells the
+     * previous one did not.
+     */
+    @EventListener
+    public void onTowerIndexPublished(TowerIndexPublishedEvent event) {
+        forgetMisses(LOCAL_TIER);
+    }
+
+    /** Forgets every recorded miss of {@code tier}; the other tiers' misses are kept. */
+    public void forgetMisses(String tier) {
+        int[] forgotten = {0};
+        for (CellGlobalIdentity key : misses.asMap().keySet()) {
+            misses.asMap().computeIfPresent(key, (k, tiers) -> {
+                if (!tiers.contains(tier)) {
+                    return tiers;
+                }
+                forgotten[0]++;
+                Set<String> rest = new HashSet<>(tiers);
+                rest.remove(tier);
+                return rest.isEmpty() ? null : Set.copyOf(rest);
+            });
+        }
+        log.info("Forgot {} {} misses", forgotten[0], tier);
+    }
+
+    private Entry readL2(CellGlobalIdentity key) {
+        if (!key.packable()) {
+            // No L2 row for a cell wider than cell_key
+            l2Misses.increment();
+            return null;
+        }
+        try {
+            CachedGeolocation row = pending.get(key);
+            if (row == null) {
+                row = repository.findById(key.packed()).orElse(null);
+            }
+            if (row == null || !row.getExpiresAt().isAfter(LocalDateTime.now())) {
+                l2Misses.increment();
+                return null;
+            }
+
+            GeolocationResponse response = objectMapper.readValue(row.getPayload(), GeolocationResponse.class);
+            Entry entry = new Entry(response, row.getRefreshAt(), row.getExpiresAt());
+            l1.put(key, entry);
+            l2Hits.increment();
+            log.debug("Result cache L2 hit for {}", key);
+            return entry;
+        } catch (Exception e) {
+            l2ReadErrors.increment();
+            log.warn("Result cache L2 read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void put(CellGlobalIdentity key, GeolocationResponse resp) {
+        if (resp == null || resp.getLatitude() == null || resp.getLongitude() == null) {
+            return;
+        }
+
+        GeolocationResponse copy;
+        try {
+            // A private copy, so later changes by the caller do not reach the cache
+            copy = objectMapper.readValue(objectMapper.writeValueAsString(resp), GeolocationResponse.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Result for {} could not be serialized, not caching it: {}", key, e.getMessage());
+            return;
+        }
+
+        // Address tokens expire long before the entry does: cache the address itself, once
+        // geocoding is over. If it fails the result is not cached, so the next lookup retries.
+        String token = copy.getAddressToken();
+        copy.setAddressToken(null);
+        if (token == null) {
+            store(key, copy);
+            return;
+        }
+        addressesAwaited.increment();
+        deferredAddressService.whenResolved(token).ifPresentOrElse(
+            address -> address.thenAccept(resolved -> {
+                if (resolved.getStatus() != DeferredAddress.Status.READY) {
+                    addressesFailed.increment();
+                    return;
+                }
+                copy.setAddress(resolved.getAddress());
+                copy.setAddressDetail(resolved.getAddressDetail());
+                store(key, copy);
+            }),
+            addressesFailed::increment);
+    }
+
+    // Caches a private copy in L1 and queues it for L2
+    private void store(CellGlobalIdentity key, GeolocationResponse copy) {
+        CachedGeolocation row = new CachedGeolocation();
+        try {
+            row.setPayload(objectMapper.writeValueAsString(copy));
+        } catch (JsonProcessingException e) {
+            log.warn("Result for {} could not be serialized, not caching it: {}", key, e.getMessage());
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long ttlMinutes = ttlMinutes(copy.getProviderUsed());
+        LocalDateTime expiresAt = now.plusMinutes(ttlMinutes);
+        LocalDateTime refreshAt = refreshAt(now, ttlMinutes);
+        l1.put(key, new Entry(copy, refreshAt, expiresAt));
+
+        if (!properties.getL2().isEnabled() || !key.packable()) {
+            return;
+        }
+        if (pending.size() >= properties.getL2().getMaxPending() && !pending.containsKey(key)) {
+            writesDropped.increment();
+            return;
+        }
+        row.setCellKey(key.packed());
+        row.setProviderUsed(copy.getProviderUsed());
+        row.setCreatedAt(now);
+        row.setRefreshAt(refreshAt);
+        row.setExpiresAt(expiresAt);
+        pending.put(key, row);
+        writesQueued.increment();
+    }
+
+    // When an entry written at now becomes stale; null if refresh-ahead is off
+    private LocalDateTime refreshAt(LocalDateTime now, long ttlMinutes) {
+        double ratio = properties.getRefreshAheadRatio();
+        if (ratio <= 0 || ratio >= 1) {
+            return null;
+        }
+        return now.plusSeconds((long) (ttlMinutes * 60 * ratio));
+    }
+
+    /**
+     * Writes the queued results to L2 in batches. A batch that fails is dropped: the
+     * results are still in L1, and will be cached again when next resolved.
+     */
+    @Scheduled(
+        initialDelayString = "${geolocation.cache.l2.flush-interval-ms:2000}",
+        fixedDelayString = "${geolocation.cache.l2.flush-interval-ms:2000}"
+    )
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.max(properties.getL2().getBatchSize(), 1);
+        List<CachedGeolocation> batch = new ArrayList<>(batchSize);
+        for (CellGlobalIdentity key : pending.keySet()) {
+            CachedGeolocation row = pending.remove(key);
+            if (row == null) continue;
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<CachedGeolocation> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    CachedGeolocation row = batch.get(i);
+                    ps.setLong(1, row.getCellKey());
+                    ps.setString(2, row.getProviderUsed());
+                    ps.setString(3, row.getPayload());
+                    ps.setTimestamp(4, timestamp(row.getCreatedAt()));
+                    ps.setTimestamp(5, timestamp(row.getRefreshAt()));
+                    ps.setTimestamp(6, timestamp(row.getExpiresAt()));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+            writesFlushed.add(batch.size());
+        } catch (Exception e) {
+            writeFailures.add(batch.size());
+            log.warn("Result cache L2 write of {} rows failed: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    @Scheduled(
+        initialDelayString = "${geolocation.cache.l2.purge-interval-ms:3600000}",
+        fixedDelayString = "${geolocation.cache.l2.purge-interval-ms:3600000}"
+    )
+    public void purgeExpired() {
+        if (!properties.getL2().isEnabled()) {
+            return;
+        }
+        try {
+            int removed = repository.deleteExpired(LocalDateTime.now());
+            if (removed > 0) {
+                log.info("Result cache L2: removed {} expired rows", removed);
+            }
+        } catch (Exception e) {
+            log.warn("Result cache L2 purge failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    public Map<String, Object> stats() {
+        long l1h = l1Hits.sum();
+        long l1m = l1Misses.sum();
+        long l2h = l2Hits.sum();
+        long l2m = l2Misses.sum();
+
+        Map<String, Object> l1Stats = new LinkedHashMap<>();
+        l1Stats.put("size", l1.estimatedSize());
+        l1Stats.put("hits", l1h);
+        l1Stats.put("misses", l1m);
+        l1Stats.put("hitRatio", ratio(l1h, l1h + l1m));
+
+        Map<String, Object> l2Stats = new LinkedHashMap<>();
+        l2Stats.put("enabled", properties.getL2().isEnabled());
+        l2Stats.put("hits", l2h);
+        l2Stats.put("misses", l2m);
+        l2Stats.put("hitRatio", ratio(l2h, l2h + l2m));
+        l2Stats.put("readErrors", l2ReadErrors.sum());
+        l2Stats.put("pendingWrites", pending.size());
+        l2Stats.put("writesQueued", writesQueued.sum());
+        l2Stats.put("writesFlushed", writesFlushed.sum());
+        l2Stats.put("writesDropped", writesDropped.sum());
+        l2Stats.put("writeFailures", writeFailures.sum());
+
+        Map<String, Object> negativeStats = new LinkedHashMap<>();
+        negativeStats.put("enabled", properties.getNegative().isEnabled());
+        negativeStats.put("ttlMinutes", properties.getNegative().getTtlMinutes());
+        negativeStats.put("size", misses.estimatedSize());
+        // Every tier known to miss: answered without any lookup
+        negativeStats.put("hits", negativeHits.sum());
+        // Some tiers known to miss: only those were skipped
+        negativeStats.put("partialHits", partialNegativeHits.sum());
+        negativeStats.put("tiersSkipped", tiersSkipped.sum());
+        negativeStats.put("missesRecorded", missesRecorded.sum());
+
+        Map<String, Object> refreshStats = new LinkedHashMap<>();
+        refreshStats.put("refreshAheadRatio", properties.getRefreshAheadRatio());
+        // Hits on stale entries: served as is, each starting a refresh unless one was running
+        refreshStats.put("staleHits", staleHits.sum());
+        refreshStats.put("started", refreshesStarted.sum());
+        refreshStats.put("inFlight", refreshing.size());
+        refreshStats.put("updated", refreshesUpdated.sum());
+        refreshStats.put("unresolved", refreshesUnresolved.sum());
+        refreshStats.put("failed", refreshesFailed.sum());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("l1", l1Stats);
+        result.put("l2", l2Stats);
+        result.put("negative", negativeStats);
+        result.put("refresh", refreshStats);
+        // Local results whose address was deferred: cached once it resolved, or not at all
+        result.put("addressesAwaited", addressesAwaited.sum());
+        result.put("addressesFailed", addressesFailed.sum());
+        // Share of positive lookups answered without calling a provider
+        result.put("hitRatio", ratio(l1h + l2h, l1h + l1m));
+        result.put("defaultTtlMinutes", properties.getDefaultTtlMinutes());
+        result.put("ttlMinutes", properties.getTtlMinutes());
+        return result;
+    }
+
+    /**
+     * TTL for a result of {@code providerUsed} ("Combain", "LOCAL_DB_ORANGE: site"):
+     * the configured key equal to the provider name, else the longest key it starts
+     * with, else the default. Keys are matched ignoring case.
+     */
+    long ttlMinutes(String providerUsed) {
+        if (providerUsed == null) {
+            return properties.getDefaultTtlMinutes();
+        }
+        String name = providerUsed.split(":", 2)[0].trim().toLowerCase();
+        Long best = null;
+        int bestLength = -1;
+        for (Map.Entry<String, Long> e : properties.getTtlMinutes().entrySet()) {
+            String key = e.getKey().toLowerCase();
+            if (name.equals(key)) {
+                return e.getValue();
+            }
+            if (name.startsWith(key) && key.length() > bestLength) {
+                best = e.getValue();
+                bestLength = key.length();
+            }
+        }
+        return best != null ? best : properties.getDefaultTtlMinutes();
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 0.0 : (double) part / total;
+    }
+}
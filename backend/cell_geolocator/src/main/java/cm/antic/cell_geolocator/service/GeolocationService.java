@@ -1,28 +1,28 @@
 package cm.antic.cell_geolocator.service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.security.core.Authentication;
 
 import cm.antic.cell_geolocator.entity.User;
-import cm.antic.cell_geolocator.entity.RequestLog;
 import cm.antic.cell_geolocator.exception.AccountNotVerifiedException;
 import cm.antic.cell_geolocator.exception.UnauthenticatedException;
 import cm.antic.cell_geolocator.model.GeolocationRequest;
 import cm.antic.cell_geolocator.model.GeolocationResponse;
-import cm.antic.cell_geolocator.repository.RequestLogRepository;
 import cm.antic.cell_geolocator.repository.UserRepository;
 import cm.antic.cell_geolocator.service.provider.ProviderClient;
-import io.github.resilience4j.retry.annotation.Retry;
+import cm.antic.cell_geolocator.service.provider.ProviderInvoker;
 
 @Service
 public class GeolocationService {
@@ -36,7 +36,7 @@ public class GeolocationService {
     private final List<ProviderClient> providerClients;
 
     @Autowired
-    private RequestLogRepository requestLogRepository;
+    private RequestLogWriter requestLogWriter;
 
     @Autowired
     private ReverseGeocodeService reverseGeocodeService;
@@ -44,11 +44,32 @@ public class GeolocationService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ProviderInvoker providerInvoker;
+
+    @Autowired
+    private CellTowerLocalService cellTowerLocalService;
+
+    @Autowired
+    private GeolocationCacheService geolocationCacheService;
+
+    @Autowired
+    private DeferredAddressService deferredAddressService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // Wait for every provider and return all rawResponses (debugging); otherwise the
+    // first valid answer in priority order completes the request
+    @Value("${geolocation.resolve.collect-all:false}")
+    private boolean collectAll;
+
     public GeolocationService(List<ProviderClient> providerClients) {
         this.providerClients = providerClients;
     }
 
-    private void requireVerification() {
+    void requireVerification() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
 
         if (auth == null || !auth.isAuthenticated()) {
@@ -76,13 +97,13 @@ public class GeolocationService {
     }
 
     /**
-     * Asynchronous resolve (main logic)
+     * Asynchronous resolve (main logic).
+     * Completes as soon as the highest-priority provider that can still answer has
+     * answered validly; lower-priority calls still in flight are cancelled.
+     * If no provider can answer (circuits open, failures), the local tower tables are used.
+     * Resolved cells are served from the result cache, and sources known not to have the
+     * cell are skipped; the caller is verified either way.
      */
-    @Cacheable(
-        value = "geolocation",
-        key = "#request.mcc + '_' + #request.mnc + '_' + #request.lac + '_' + #request.cellId"
-    )
-    @Retry(name = "providerRetry")
     public CompletableFuture<GeolocationResponse> resolveAsync(GeolocationRequest request) {
 
         log.info(
@@ -91,12 +112,63 @@ public class GeolocationService {
         );
 
         requireVerification();
+        // Malformed identities are rejected here, before any lookup
+        request.cellIdentity();
+
+        return resolveCached(request, () -> CompletableFuture.completedFuture(null))
+            .thenApply(finalResponse -> {
+                saveLogAsync(request, finalResponse);
+                log.info("Geolocation resolve completed successfully");
+                return finalResponse;
+            });
+    }
+
+    /**
+     * The lookup part of {@link #resolveAsync}: the result cache, then on a miss the
+     * providers and the local fallback, once {@code admit} completes (cache warm-up uses
+     * it to pace provider calls). No verification or request log.
+     */
+    CompletableFuture<GeolocationResponse> resolveCached(GeolocationRequest request,
+                                                         Supplier<CompletableFuture<Void>> admit) {
+        List<String> tiers = new ArrayList<>(priorityService.getProviderPriorities());
+        tiers.add(GeolocationCacheService.LOCAL_TIER);
+
+        return geolocationCacheService.getOrResolve(request, tiers, (req, skip) -> admit.get()
+            .thenCompose(v -> resolveWithProviders(req, skip))
+            .thenCompose(finalResponse -> finalResponse.getLatitude() != null
+                    || skip.contains(GeolocationCacheService.LOCAL_TIER)
+                ? CompletableFuture.completedFuture(finalResponse)
+                : localFallback(req, finalResponse)));
+    }
+
+    /**
+     * The provider part of {@link #resolveAsync}, with the address of the chosen result.
+     * No verification, local fallback or request log: callers (also batch resolution) do those.
+     */
+    CompletableFuture<GeolocationResponse> resolveWithProviders(GeolocationRequest request) {
+        return resolveWithProviders(request, Set.of());
+    }
+
+    /**
+     * As {@link #resolveWithProviders(GeolocationRequest)}, without calling the providers
+     * in {@code skip}. When no provider has a position, those that answered they have no
+     * such cell are recorded as not knowing it; errors are not recorded.
+     */
+    CompletableFuture<GeolocationResponse> resolveWithProviders(GeolocationRequest request, Set<String> skip) {
 
         List<String> priorities = priorityService.getProviderPriorities();
         log.debug("Provider priority order: {}", priorities);
 
+        // Provider calls, kept so the ones no longer needed can be cancelled
+        List<CompletableFuture<GeolocationResponse>> calls = new ArrayList<>();
+
         List<CompletableFuture<ProviderResult>> futures = priorities.stream()
             .map(provider -> {
+                if (skip.contains(provider)) {
+                    return CompletableFuture.completedFuture(
+                        new ProviderResult(provider, null, "Skipped: cell unknown to provider (cached)")
+                    );
+                }
                 ProviderClient client = getClientByName(provider);
                 if (client == null) {
                     log.warn("Provider '{}' not found in configured clients", provider);
@@ -105,20 +177,26 @@ public class GeolocationService {
                     );
                 }
 
-                return client.resolveAsync(request)
+                CompletableFuture<GeolocationResponse> call = providerInvoker.resolveAsync(client, request);
+                calls.add(call);
+                return call
                     .thenApply(resp -> {
                         log.debug("Provider '{}' returned response", provider);
                         return new ProviderResult(provider, resp, null);
                     })
                     .exceptionally(e -> {
                         log.error("Provider '{}' failed: {}", provider, e.getMessage());
-                        return new ProviderResult(provider, null, e.getMessage());
+                        return new ProviderResult(provider, null, String.valueOf(e.getMessage()));
                     });
             })
             .collect(Collectors.toList());
 
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-            .thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+        CompletableFuture<List<ProviderResult>> settled = collectAll
+            ? CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+            : firstValidInPriorityOrder(priorities, futures, calls);
+
+        return settled
             .thenApply(results -> {
                 GeolocationResponse finalResponse = new GeolocationResponse();
                 Map<String, Object> raw = new HashMap<>();
@@ -140,19 +218,49 @@ public class GeolocationService {
 
                 finalResponse.setRawResponses(raw);
 
-                if (finalResponse.getLatitude() != null) {
-                    try {
-                    reverseGeocodeService.addAddressToResponseAsync(finalResponse)
-                        .get(); // BLOCKS until address is set
-                    } catch (Exception e) {
-                            log.warn("Reverse geocoding failed", e);
-                            // return null;
-                    }
+                if (finalResponse.getLatitude() == null) {
+                    // Only "no such cell" answers: failed, timed-out or refusing providers
+                    // (bad key, no credit) may still know the cell
+                    geolocationCacheService.recordMisses(request, results.stream()
+                        .filter(r -> r.response != null && r.response.isUnknownCell())
+                        .map(r -> r.provider)
+                        .collect(Collectors.toList()));
                 }
-
-                saveLogAsync(request, finalResponse);
-                log.info("Geolocation resolve completed successfully");
                 return finalResponse;
+            })
+            .thenCompose(finalResponse -> {
+                if (finalResponse.getLatitude() == null) {
+                    return CompletableFuture.completedFuture(finalResponse);
+                }
+                // Address is filled when geocoding completes, without holding a thread
+                return reverseGeocodeService.addAddressToResponseAsync(finalResponse)
+                    .exceptionally(e -> {
+                        log.warn("Reverse geocoding failed", e);
+                        return null;
+                    })
+                    .thenApply(v -> finalResponse);
+            });
+    }
+
+    // Local tower lookup when no provider answered; keeps the providers' rawResponses
+    private CompletableFuture<GeolocationResponse> localFallback(GeolocationRequest request,
+                                                                 GeolocationResponse unresolved) {
+        return CompletableFuture.supplyAsync(() -> cellTowerLocalService.findLocalTower(
+                request.cellIdentity()), taskExecutor)
+            .thenCompose(local -> deferredAddressService.awaitAddress(local, request.getAddressTimeoutMs()))
+            .handle((local, e) -> {
+                if (e != null) {
+                    // Not a miss: the tables could not be read, so nothing is remembered
+                    log.warn("Local fallback lookup failed: {}", e.getMessage());
+                    return unresolved;
+                }
+                if (local == null || local.getLatitude() == null) {
+                    geolocationCacheService.recordMisses(request, List.of(GeolocationCacheService.LOCAL_TIER));
+                    return unresolved;
+                }
+                log.info("No provider answered — using local tower {}", local.getProviderUsed());
+                local.setRawResponses(unresolved.getRawResponses());
+                return local;
             });
     }
 
@@ -170,6 +278,41 @@ public class GeolocationService {
         }
     }
 
+    /**
+     * Completes once the result is decided: every provider ahead of the first valid
+     * answer has answered (or all have, with none valid). The results of providers
+     * still running at that point are reported as cancelled, and their calls cancelled.
+     */
+    private CompletableFuture<List<ProviderResult>> firstValidInPriorityOrder(
+            List<String> priorities,
+            List<CompletableFuture<ProviderResult>> futures,
+            List<CompletableFuture<GeolocationResponse>> calls) {
+
+        CompletableFuture<List<ProviderResult>> decided = new CompletableFuture<>();
+
+        Runnable check = () -> {
+            for (CompletableFuture<ProviderResult> f : futures) {
+                if (!f.isDone()) return;    // a higher-priority provider may still answer
+                if (f.join().isValid()) break;
+            }
+
+            List<ProviderResult> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                CompletableFuture<ProviderResult> f = futures.get(i);
+                results.add(f.isDone()
+                    ? f.join()
+                    : new ProviderResult(priorities.get(i), null, "Cancelled: higher-priority answer used"));
+            }
+
+            if (decided.complete(results)) {
+                calls.forEach(call -> call.cancel(true));
+            }
+        };
+
+        futures.forEach(f -> f.whenComplete((r, e) -> check.run()));
+        return decided;
+    }
+
     private static class ProviderResult {
         String provider;
         GeolocationResponse response;
@@ -177,6 +320,10 @@ public class GeolocationService {
         ProviderResult(String p, GeolocationResponse r, String e) {
             provider = p; response = r; error = e;
         }
+
+        boolean isValid() {
+            return response != null && response.getLatitude() != null;
+        }
     }
 
     private ProviderClient getClientByName(String name) {
@@ -185,26 +332,7 @@ public class GeolocationService {
             .findFirst().orElse(null);
     }
 
-    private void saveLogAsync(GeolocationRequest request, GeolocationResponse resp) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                RequestLog logEntry = new RequestLog();
-                logEntry.setMcc(request.getMcc());
-                logEntry.setMnc(request.getMnc());
-                logEntry.setLac(request.getLac());
-                logEntry.setCellId(request.getCellId());
-                logEntry.setAccuracy(resp.getAccuracy());
-                logEntry.setProviderUsed(resp.getProviderUsed());
-                logEntry.setLatitude(resp.getLatitude());
-                logEntry.setLongitude(resp.getLongitude());
-                logEntry.setTimestamp(LocalDateTime.now());
-
-                requestLogRepository.save(logEntry);
-                log.debug("Request log saved successfully");
-
-            } catch (Exception e) {
-                log.error("Failed to persist request log", e);
-            }
-        });
+    void saveLogAsync(GeolocationRequest request, GeolocationResponse resp) {
+        requestLogWriter.submit(request, resp);
     }
 }
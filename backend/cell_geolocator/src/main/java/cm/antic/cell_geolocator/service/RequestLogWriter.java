@@ -0,0 +1,276 @@
+package cm.antic.cell_geolocator.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import cm.antic.cell_geolocator.entity.RequestLog;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind for the request log: callers enqueue a row and return, and one writer
+ * thread inserts the queue in JDBC batches, so logging holds at most one pooled
+ * connection however busy the service is.
+ *
+ * The writer takes what is queued, waits up to {@code flush-interval-ms} for a full
+ * batch of {@code batch-size}, and inserts it. Ids come from {@code request_log_seq}
+ * in blocks of {@link RequestLog#ID_BLOCK_SIZE}, as Hibernate allocates them, so one
+ * sequence call serves many rows.
+ *
+ * The queue holds at most {@code queue-capacity} rows. Past {@code sample-above} of it,
+ * new rows are kept with a probability falling from 1 to 0 as the queue fills, so an
+ * overloaded database costs a sample of the log rather than memory; a full queue drops
+ * the row. A batch that fails to insert is dropped. Rows still queued at shutdown are
+ * written before the writer stops.
+ */
+@Service
+public class RequestLogWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestLogWriter.class);
+
+    private static final String INSERT_SQL = """
+            INSERT INTO request_log (id, mcc, mnc, lac, cell_id, accuracy, provider_used,
+                                     latitude, longitude, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String NEXT_ID_SQL = "SELECT nextval('request_log_seq')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<RequestLog> queue;
+    private final int capacity;
+    private final int sampleThreshold;
+
+    @Value("${geolocation.request-log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${geolocation.request-log.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${geolocation.request-log.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    // Ids left in the current sequence block; used by the writer thread only
+    private long nextId;
+    private long blockEnd = -1;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushMs = new AtomicLong();
+    private volatile long lastFlushMs;
+    private volatile long lastLagMs;
+
+    public RequestLogWriter(JdbcTemplate jdbcTemplate,
+                            @Value("${geolocation.request-log.queue-capacity:20000}") int capacity,
+                            @Value("${geolocation.request-log.sample-above:0.5}") double sampleAbove) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = Math.max(capacity, 1);
+        this.queue = new LinkedBlockingQueue<>(this.capacity);
+        this.sampleThreshold = (int) (this.capacity * Math.min(Math.max(sampleAbove, 0.0), 1.0));
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("request-log-writer").daemon().start(this::run);
+    }
+
+    /** Queues a log row for the request and its outcome; never blocks. */
+    public void submit(GeolocationRequest request, GeolocationResponse resp) {
+        if (!admit()) {
+            sampledOut.increment();
+            return;
+        }
+
+        RequestLog row = new RequestLog();
+        row.setMcc(request.getMcc());
+        row.setMnc(request.getMnc());
+        row.setLac(request.getLac());
+        row.setCellId(request.getCellId());
+        row.setAccuracy(resp.getAccuracy());
+        row.setProviderUsed(resp.getProviderUsed());
+        row.setLatitude(resp.getLatitude());
+        row.setLongitude(resp.getLongitude());
+        row.setTimestamp(LocalDateTime.now());
+
+        if (queue.offer(row)) {
+            accepted.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    // Below the threshold every row is kept; above it, fewer the fuller the queue
+    private boolean admit() {
+        int depth = queue.size();
+        if (depth < sampleThreshold) {
+            return true;
+        }
+        double keep = (double) (capacity - depth) / Math.max(capacity - sampleThreshold, 1);
+        return ThreadLocalRandom.current().nextDouble() < keep;
+    }
+
+    private void run() {
+        List<RequestLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (collect(batch)) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                // Only stop() interrupts, after clearing running: drain what is left
+                queue.drainTo(batch);
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (Exception e) {
+                log.error("Request log writer error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Fills the batch: waits for a first row, then up to flushIntervalMs for a full batch
+    private boolean collect(List<RequestLog> batch) throws InterruptedException {
+        RequestLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long left = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || left <= 0 || !running) {
+                break;
+            }
+            RequestLog next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+
+    private void write(List<RequestLog> batch) {
+        long start = System.nanoTime();
+        try {
+            for (RequestLog row : batch) {
+                row.setId(nextId());
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    RequestLog row = batch.get(i);
+                    ps.setLong(1, row.getId());
+                    ps.setString(2, row.getMcc());
+                    ps.setString(3, row.getMnc());
+                    ps.setString(4, row.getLac());
+                    ps.setString(5, row.getCellId());
+                    ps.setObject(6, row.getAccuracy(), Types.DOUBLE);
+                    ps.setString(7, row.getProviderUsed());
+                    ps.setObject(8, row.getLatitude(), Types.DOUBLE);
+                    ps.setObject(9, row.getLongitude(), Types.DOUBLE);
+                    ps.setTimestamp(10, Timestamp.valueOf(row.getTimestamp()));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+            written.add(batch.size());
+            lastLagMs = Duration.between(batch.get(0).getTimestamp(), LocalDateTime.now()).toMillis();
+        } catch (Exception e) {
+            failedRows.add(batch.size());
+            log.warn("Request log insert of {} rows failed: {}", batch.size(), e.getMessage());
+        } finally {
+            long took = System.nanoTime() - start;
+            batches.increment();
+            flushNanos.add(took);
+            lastFlushMs = TimeUnit.NANOSECONDS.toMillis(took);
+            maxFlushMs.accumulateAndGet(lastFlushMs, Math::max);
+        }
+    }
+
+    // Same scheme as Hibernate's pooled optimizer: sequence value v covers (v - block, v]
+    private long nextId() {
+        if (nextId > blockEnd) {
+            long value = jdbcTemplate.queryForObject(NEXT_ID_SQL, Long.class);
+            nextId = Math.max(value - RequestLog.ID_BLOCK_SIZE + 1, 1);
+            blockEnd = value;
+        }
+        return nextId++;
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        writer.join(shutdownTimeoutMs);
+        if (writer.isAlive()) {
+            writer.interrupt();
+            log.warn("Request log writer did not drain within {}ms, {} rows left",
+                    shutdownTimeoutMs, queue.size());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long batchCount = batches.sum();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queueDepth", queue.size());
+        result.put("queueCapacity", capacity);
+        result.put("sampleAboveDepth", sampleThreshold);
+        result.put("accepted", accepted.sum());
+        // Not queued: left out by sampling under load, or the queue was full
+        result.put("sampledOut", sampledOut.sum());
+        result.put("dropped", dropped.sum());
+        result.put("written", written.sum());
+        result.put("failedRows", failedRows.sum());
+        result.put("batches", batchCount);
+        result.put("lastFlushMs", lastFlushMs);
+        result.put("maxFlushMs", maxFlushMs.get());
+        result.put("avgFlushMs", batchCount == 0 ? 0.0 : flushNanos.sum() / 1e6 / batchCount);
+        // Time the first row of the last batch waited in the queue before it was written
+        result.put("lastLagMs", lastLagMs);
+        result.put("batchSize", batchSize);
+        result.put("flushIntervalMs", flushIntervalMs);
+        return result;
+    }
+}
@@ -3,118 +3,208 @@ package cm.antic.cell_geolocator.service;
 import cm.antic.cell_geolocator.model.GeolocationResponse;
 import cm.antic.cell_geolocator.model.GeolocationResponse.AddressDetail;
 import cm.antic.cell_geolocator.model.NominatimResponse;
+import cm.antic.cell_geolocator.service.geo.AdminArea;
+import cm.antic.cell_geolocator.service.geo.AdminBoundaryService;
+import cm.antic.cell_geolocator.service.geo.GeoHash;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.reactive.function.client.WebClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fills the address of a resolved position.
+ *
+ * Points inside the loaded administrative boundaries are answered offline by
+ * {@link AdminBoundaryService}. LocationIQ, then Nominatim, are used for the other
+ * points, and for all points only if external enrichment is enabled (local values
+ * win; the external tier fills what the boundaries lack, e.g. the postcode).
+ *
+ * External answers are cached by geohash cell, so nearby points (usually the same
+ * tower) share one lookup; concurrent misses for a cell share one in-flight call.
+ */
 @Service
 public class ReverseGeocodeService {
 
+    private static final Logger log = LoggerFactory.getLogger(ReverseGeocodeService.class);
+
     @Autowired
     private WebClient webClient;
 
+    @Autowired
+    private AdminBoundaryService adminBoundaryService;
+
     @Value("${locationiq.api.key:}")
-    private String locationIqApiKey;  
+    private String locationIqApiKey;
+
+    // Call LocationIQ / Nominatim for points the boundary file does not cover
+    @Value("${geo.reverse.external-enabled:true}")
+    private boolean externalEnabled;
+
+    // Also call them for covered points, to complete the local result
+    @Value("${geo.reverse.external-enrich:false}")
+    private boolean externalEnrich;
+
+    @Value("${geo.reverse.cache.precision:7}")
+    private int cachePrecision;
+
+    @Value("${geo.reverse.cache.max-size:20000}")
+    private long cacheMaxSize;
+
+    @Value("${geo.reverse.cache.ttl-minutes:1440}")
+    private long cacheTtlMinutes;
+
+    @Value("${geo.boundaries.country:Cameroon}")
+    private String boundaryCountry;
+
+    @Value("${geo.boundaries.country-code:cm}")
+    private String boundaryCountryCode;
+
+    // Keyed by geohash; a future completing with null (no answer) is not retained
+    private AsyncCache<String, PlaceParts> externalCache;
+    private final LongAdder upstreamCalls = new LongAdder();
+
+    /**
+     * The address fields we keep from any geocoder. Blank values mean "unknown".
+     */
+    private record PlaceParts(String country, String countryCode, String city,
+                              String state, String postcode) {
+
+        /** This place, with blanks taken from {@code other}. */
+        PlaceParts orElse(PlaceParts other) {
+            if (other == null) return this;
+            return new PlaceParts(
+                pick(country, other.country), pick(countryCode, other.countryCode),
+                pick(city, other.city), pick(state, other.state), pick(postcode, other.postcode));
+        }
+
+        private static String pick(String preferred, String fallback) {
+            return preferred != null && !preferred.isBlank() ? preferred : fallback;
+        }
+    }
+
+    @PostConstruct
+    void initCache() {
+        externalCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .recordStats()
+                .buildAsync();
+    }
 
-    @SuppressWarnings("unchecked")
     public CompletableFuture<Void> addAddressToResponseAsync(GeolocationResponse response) {
 
         if (response.getLatitude() == null || response.getLongitude() == null) {
             return CompletableFuture.completedFuture(null);
         }
 
-        if (locationIqApiKey != null && !locationIqApiKey.isBlank()) {
-            String locationIqUrl = String.format(
-                    "https://us1.locationiq.com/v1/reverse?key=%s&lat=%s&lon=%s&format=json&addressdetails=1",
-                    locationIqApiKey, response.getLatitude(), response.getLongitude()
-            );
-
-            return webClient.get()
-                    .uri(locationIqUrl)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .toFuture()
-                    .thenAccept(data -> {
-                        try {
-                            if (data != null && data.containsKey("address")) {
-
-                                Map<String, Object> addressMap = (Map<String, Object>) data.get("address");
-
-                                String providerUsed = response.getProviderUsed();
-                                String siteName = null;
-
-                                if (providerUsed != null && providerUsed.contains(":")) {
-                                    siteName = providerUsed.split(":", 2)[1].trim();
-                                }
-
-                                // ✅ Extract only required fields
-                                String country = addressMap.getOrDefault("country", "").toString();
-                                String city = addressMap.getOrDefault("city",
-                                        addressMap.getOrDefault("town",
-                                        addressMap.getOrDefault("village", ""))).toString();
-                                String state = addressMap.getOrDefault("state",
-                                        addressMap.getOrDefault("region",
-                                        addressMap.getOrDefault("state_district", ""))).toString();
-
-                                // ✅ Build CLEAN address (NO street, NO POI)
-                                StringBuilder cleanAddress = new StringBuilder();
-
-                                if (providerUsed != null && providerUsed.startsWith("LOCAL_DB") &&
-                                        siteName != null && !siteName.isBlank()) {
-                                    cleanAddress.append(siteName).append(", ");
-                                }
-
-                                cleanAddress
-                                        .append(city).append(", ")
-                                        .append(state).append(", ")
-                                        .append(country);
-
-                                response.setAddress(cleanAddress.toString());
-                                System.out.println("Clean address: " + response.getAddress());
-
-                                // ✅ AddressDetail (same logic)
-                                AddressDetail detail = new AddressDetail();
-                                detail.setCountry(country);
-                                detail.setCountryCode(addressMap.getOrDefault("country_code", "").toString());
-                                detail.setCityOrTown(city);
-                                detail.setStateOrRegion(state);
-                                detail.setPostalCode(addressMap.getOrDefault("postcode", "").toString());
-
-                                // ✅ Street rule
-                                if (providerUsed != null && providerUsed.startsWith("LOCAL_DB") &&
-                                        siteName != null && !siteName.isBlank()) {
-                                    detail.setStreet(siteName);
-                                } else {
-                                    detail.setStreet("");
-                                }
-
-                                response.setAddressDetail(detail);
-
-                            } else {
-                                fetchFromNominatim(response);
-                            }
-                        } catch (Exception ex) {
-                            System.err.println("LocationIQ parse failed: " + ex.getMessage());
-                            fetchFromNominatim(response);
-                        }
-                    })
-                    .exceptionally(ex -> {
-                        System.err.println("LocationIQ reverse geocoding failed: " + ex.getMessage());
-                        fetchFromNominatim(response);
-                        return null;
-                    });
+        PlaceParts local = locateOffline(response.getLatitude(), response.getLongitude());
+
+        if (local != null && !externalEnrich) {
+            apply(response, local);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!externalEnabled) {
+            if (local != null) apply(response, local);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return cachedExternal(response.getLatitude(), response.getLongitude())
+                .thenAccept(external -> {
+                    PlaceParts parts = local != null ? local.orElse(external) : external;
+                    if (parts != null) {
+                        apply(response, parts);
+                    }
+                });
+    }
+
+    private PlaceParts locateOffline(double lat, double lon) {
+        AdminArea area = adminBoundaryService.locate(lat, lon);
+        if (area == null) {
+            return null;
+        }
+        String city = area.arrondissement() != null ? area.arrondissement() : area.departement();
+        return new PlaceParts(
+            boundaryCountry, boundaryCountryCode,
+            city != null ? city : "",
+            area.region() != null ? area.region() : "",
+            "");
+    }
+
+    /**
+     * External lookup through the geohash cache. The first miss for a cell geocodes
+     * the requested point; everyone else in that cell, including concurrent callers,
+     * gets the same future.
+     */
+    private CompletableFuture<PlaceParts> cachedExternal(double lat, double lon) {
+        String key = GeoHash.encode(lat, lon, cachePrecision);
+        return externalCache.get(key, (k, executor) -> {
+            upstreamCalls.increment();
+            return fetchExternal(lat, lon);
+        });
+    }
+
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = externalCache.synchronous().stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("precision", cachePrecision);
+        result.put("size", externalCache.synchronous().estimatedSize());
+        result.put("requests", stats.requestCount());
+        result.put("hits", stats.hitCount());
+        result.put("hitRatio", stats.hitRate());
+        result.put("upstreamCalls", upstreamCalls.sum());
+        // Every hit (including joining an in-flight call) is an external call not made
+        result.put("upstreamCallsSaved", stats.hitCount());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * LocationIQ when a key is configured, Nominatim otherwise or when LocationIQ
+     * has no answer. Completes with null if neither does; never exceptionally.
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<PlaceParts> fetchExternal(double lat, double lon) {
+        if (locationIqApiKey == null || locationIqApiKey.isBlank()) {
+            return fetchFromNominatim(lat, lon);
         }
 
-        return fetchFromNominatim(response);
+        String locationIqUrl = String.format(
+                "https://us1.locationiq.com/v1/reverse?key=%s&lat=%s&lon=%s&format=json&addressdetails=1",
+                locationIqApiKey, lat, lon
+        );
+
+        return webClient.get()
+                .uri(locationIqUrl)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .toFuture()
+                .thenApply(data -> data != null && data.get("address") instanceof Map<?, ?> address
+                        ? partsFrom((Map<String, ?>) address)
+                        : null)
+                .exceptionally(ex -> {
+                    log.warn("LocationIQ reverse geocoding failed: {}", ex.getMessage());
+                    return null;
+                })
+                .thenCompose(parts -> parts != null
+                        ? CompletableFuture.completedFuture(parts)
+                        : fetchFromNominatim(lat, lon));
     }
 
-    private CompletableFuture<Void> fetchFromNominatim(GeolocationResponse response) {
+    private CompletableFuture<PlaceParts> fetchFromNominatim(double lat, double lon) {
         String url = String.format(
                 "https://nominatim.openstreetmap.org/reverse?format=json&lat=%s&lon=%s&addressdetails=1",
-                response.getLatitude(), response.getLongitude()
+                lat, lon
         );
 
         return webClient.get()
@@ -122,71 +212,75 @@ public class ReverseGeocodeService {
                 .retrieve()
                 .bodyToMono(NominatimResponse.class)
                 .toFuture()
-                .thenAccept(data -> {
-                    if (data != null && data.getAddress() != null) {
-
-                        Map<String, String> addressMap = data.getAddress();
-
-                        String providerUsed = response.getProviderUsed();
-                        String siteName = null;
-
-                        if (providerUsed != null && providerUsed.contains(":")) {
-                            siteName = providerUsed.split(":", 2)[1].trim();
-                        }
-
-                        String country = addressMap.getOrDefault("country", "");
-                        String city = addressMap.getOrDefault("city",
-                                addressMap.getOrDefault("town",
-                                addressMap.getOrDefault("village", "")));
-                        String state = addressMap.getOrDefault("state",
-                                addressMap.getOrDefault("region",
-                                addressMap.getOrDefault("state_district", "")));
-
-                        // ✅ Build CLEAN address
-                        StringBuilder cleanAddress = new StringBuilder();
-
-                        if (providerUsed != null && providerUsed.startsWith("LOCAL_DB") &&
-                                siteName != null && !siteName.isBlank()) {
-                            cleanAddress.append(siteName).append(", ");
-                        }
-
-                        cleanAddress
-                                .append(city).append(", ")
-                                .append(state).append(", ")
-                                .append(country);
-
-                        response.setAddress(cleanAddress.toString());
-                        System.out.println("Clean address: " + response.getAddress());
-
-                        AddressDetail detail = new AddressDetail();
-                        detail.setCountry(country);
-                        detail.setCountryCode(addressMap.getOrDefault("country_code", ""));
-                        detail.setCityOrTown(city);
-                        detail.setStateOrRegion(state);
-                        detail.setPostalCode(addressMap.getOrDefault("postcode", ""));
-
-                        // ✅ Street rule
-                        if (providerUsed != null && providerUsed.startsWith("LOCAL_DB") &&
-                                siteName != null && !siteName.isBlank()) {
-                            detail.setStreet(siteName);
-                        } else {
-                            detail.setStreet("");
-                        }
-
-                        response.setAddressDetail(detail);
-                    }
-                })
+                .thenApply(data -> data != null && data.getAddress() != null
+                        ? partsFrom(data.getAddress())
+                        : null)
                 .exceptionally(ex -> {
-                    System.err.println("Nominatim reverse geocoding failed: " + ex.getMessage());
+                    log.warn("Nominatim reverse geocoding failed: {}", ex.getMessage());
                     return null;
                 });
     }
 
+    private static PlaceParts partsFrom(Map<String, ?> addressMap) {
+        return new PlaceParts(
+            field(addressMap, "country"),
+            field(addressMap, "country_code"),
+            field(addressMap, "city", "town", "village"),
+            field(addressMap, "state", "region", "state_district"),
+            field(addressMap, "postcode"));
+    }
+
+    // First present key wins, "" if none
+    private static String field(Map<String, ?> addressMap, String... keys) {
+        for (String key : keys) {
+            Object value = addressMap.get(key);
+            if (value != null) return value.toString();
+        }
+        return "";
+    }
+
+    /**
+     * Writes the clean address (no street, no POI) and the address detail.
+     * For local DB results the site name leads the address and is used as street.
+     */
+    private void apply(GeolocationResponse response, PlaceParts parts) {
+        String providerUsed = response.getProviderUsed();
+        String siteName = null;
+
+        if (providerUsed != null && providerUsed.contains(":")) {
+            siteName = providerUsed.split(":", 2)[1].trim();
+        }
+        boolean useSite = providerUsed != null && providerUsed.startsWith("LOCAL_DB")
+                && siteName != null && !siteName.isBlank();
+
+        StringBuilder cleanAddress = new StringBuilder();
+        if (useSite) {
+            cleanAddress.append(siteName).append(", ");
+        }
+        cleanAddress
+                .append(parts.city()).append(", ")
+                .append(parts.state()).append(", ")
+                .append(parts.country());
+
+        response.setAddress(cleanAddress.toString());
+        log.debug("Clean address: {}", response.getAddress());
+
+        AddressDetail detail = new AddressDetail();
+        detail.setCountry(parts.country());
+        detail.setCountryCode(parts.countryCode());
+        detail.setCityOrTown(parts.city());
+        detail.setStateOrRegion(parts.state());
+        detail.setPostalCode(parts.postcode());
+        detail.setStreet(useSite ? siteName : "");
+
+        response.setAddressDetail(detail);
+    }
+
     public void addAddressToResponse(GeolocationResponse response) {
         try {
             addAddressToResponseAsync(response).join();
         } catch (Exception e) {
-            System.err.println("Reverse geocoding sync failed: " + e.getMessage());
+            log.warn("Reverse geocoding sync failed: {}", e.getMessage());
         }
     }
 }
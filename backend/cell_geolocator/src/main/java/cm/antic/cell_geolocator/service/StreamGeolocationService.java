@@ -0,0 +1,105 @@
+package cm.antic.cell_geolocator.service;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cm.antic.cell_geolocator.exception.InvalidCellIdentityException;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.model.PriorityGeolocationResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Resolves an NDJSON stream of {@link GeolocationRequest} lines into a stream of results,
+ * one per non-blank line, in input order.
+ *
+ * Lines are read only as results are consumed: at most {@code window} lines are being
+ * resolved (or waiting for an earlier line to finish) at any time, so memory does not
+ * grow with the input. Each line goes through
+ * {@link GeolocationAggregatorService#resolveWithPriorityAsync}, which also logs it; a
+ * line that cannot be parsed or resolved yields a response carrying only an error, and
+ * the stream goes on.
+ */
+@Service
+public class StreamGeolocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamGeolocationService.class);
+
+    private final GeolocationAggregatorService aggregatorService;
+    private final GeolocationService geolocationService;
+    private final ObjectMapper objectMapper;
+    private final Scheduler readScheduler;
+
+    @Value("${geolocation.stream.window:32}")
+    private int window;
+
+    public StreamGeolocationService(GeolocationAggregatorService aggregatorService,
+                                    GeolocationService geolocationService,
+                                    ObjectMapper objectMapper,
+                                    @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.aggregatorService = aggregatorService;
+        this.geolocationService = geolocationService;
+        this.objectMapper = objectMapper;
+        // Reading the request body blocks; keep it off the reactive threads
+        this.readScheduler = Schedulers.fromExecutor(taskExecutor);
+    }
+
+    /**
+     * Checks the caller's account up front (on the request thread, where the security
+     * context is), then resolves lazily as the response is written.
+     */
+    public Flux<GeolocationResponse> resolveStream(InputStream ndjson) {
+        geolocationService.requireVerification();
+        AtomicLong lineNumber = new AtomicLong();
+
+        return Flux.using(
+                () -> new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8)),
+                reader -> Flux.fromStream(reader.lines()),
+                reader -> log.info("Geolocation stream finished | lines={}", lineNumber.get()))
+            .subscribeOn(readScheduler)
+            .map(line -> new Line(lineNumber.incrementAndGet(), line))
+            .filter(line -> !line.text().isBlank())
+            .flatMapSequential(this::resolve, window, 1);
+    }
+
+    private Mono<GeolocationResponse> resolve(Line line) {
+        GeolocationRequest request;
+        try {
+            request = objectMapper.readValue(line.text(), GeolocationRequest.class);
+            request.cellIdentity();
+        } catch (JsonProcessingException e) {
+            return Mono.just(error("Invalid line " + line.number() + ": " + e.getOriginalMessage()));
+        } catch (InvalidCellIdentityException e) {
+            return Mono.just(error("Invalid line " + line.number() + ": " + e.getMessage()));
+        }
+
+        return Mono.fromFuture(() -> aggregatorService.resolveWithPriorityAsync(request))
+            .map(PriorityGeolocationResult::getChosen)
+            .onErrorResume(e -> Mono.just(error("Line " + line.number() + " failed: " + e.getMessage())));
+    }
+
+    private static GeolocationResponse error(String message) {
+        GeolocationResponse err = new GeolocationResponse();
+        err.setError(message);
+        return err;
+    }
+
+    private record Line(long number, String text) {
+    }
+}
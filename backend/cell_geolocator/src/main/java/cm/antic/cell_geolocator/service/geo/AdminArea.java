@@ -0,0 +1,8 @@
+package cm.antic.cell_geolocator.service.geo;
+
+/**
+ * Administrative units containing a point, from the largest to the smallest.
+ * A field is null when the boundary file does not carry that level.
+ */
+public record AdminArea(String region, String departement, String arrondissement) {
+}
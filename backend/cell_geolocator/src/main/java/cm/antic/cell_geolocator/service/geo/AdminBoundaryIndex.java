@@ -0,0 +1,267 @@
+package cm.antic.cell_geolocator.service.geo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Point-in-polygon index over administrative boundaries read from a GeoJSON
+ * FeatureCollection of Polygon / MultiPolygon features.
+ *
+ * Each feature is one smallest-level unit (e.g. an arrondissement) whose
+ * properties also name its parent units. Polygons are prepared once: their edges
+ * are bucketed into horizontal bands, so a ray-casting test only visits the edges
+ * that cross the query latitude. A coarse grid over the polygon bounding boxes
+ * selects the candidates. Immutable once loaded.
+ */
+public final class AdminBoundaryIndex {
+
+    private static final int GRID_SIZE = 64;
+    private static final int EDGES_PER_BAND = 8;
+    private static final int MAX_BANDS = 512;
+
+    private final List<Polygon> polygons;
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+    private final double cellLat;
+    private final double cellLon;
+    private final int[][] grid;
+
+    private AdminBoundaryIndex(List<Polygon> polygons) {
+        this.polygons = polygons;
+
+        double minLatAll = Double.POSITIVE_INFINITY;
+        double maxLatAll = Double.NEGATIVE_INFINITY;
+        double minLonAll = Double.POSITIVE_INFINITY;
+        double maxLonAll = Double.NEGATIVE_INFINITY;
+        for (Polygon p : polygons) {
+            minLatAll = Math.min(minLatAll, p.minLat);
+            maxLatAll = Math.max(maxLatAll, p.maxLat);
+            minLonAll = Math.min(minLonAll, p.minLon);
+            maxLonAll = Math.max(maxLonAll, p.maxLon);
+        }
+        this.minLat = minLatAll;
+        this.maxLat = maxLatAll;
+        this.minLon = minLonAll;
+        this.maxLon = maxLonAll;
+        this.cellLat = Math.max((maxLatAll - minLatAll) / GRID_SIZE, 1e-9);
+        this.cellLon = Math.max((maxLonAll - minLonAll) / GRID_SIZE, 1e-9);
+
+        List<List<Integer>> cells = new ArrayList<>(GRID_SIZE * GRID_SIZE);
+        for (int c = 0; c < GRID_SIZE * GRID_SIZE; c++) {
+            cells.add(new ArrayList<>());
+        }
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon p = polygons.get(i);
+            for (int row = row(p.minLat); row <= row(p.maxLat); row++) {
+                for (int col = col(p.minLon); col <= col(p.maxLon); col++) {
+                    cells.get(row * GRID_SIZE + col).add(i);
+                }
+            }
+        }
+        this.grid = new int[GRID_SIZE * GRID_SIZE][];
+        for (int c = 0; c < grid.length; c++) {
+            grid[c] = cells.get(c).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Reads a GeoJSON FeatureCollection. Features without a polygon geometry are skipped.
+     *
+     * @param regionProperty         feature property holding the region name
+     * @param departementProperty    feature property holding the department name
+     * @param arrondissementProperty feature property holding the arrondissement name
+     */
+    public static AdminBoundaryIndex load(InputStream geoJson, ObjectMapper mapper,
+                                          String regionProperty, String departementProperty,
+                                          String arrondissementProperty) throws IOException {
+        JsonNode root = mapper.readTree(geoJson);
+        JsonNode features = root.path("features");
+        if (!features.isArray()) {
+            throw new IOException("Not a GeoJSON FeatureCollection");
+        }
+
+        List<Polygon> polygons = new ArrayList<>();
+        for (JsonNode feature : features) {
+            JsonNode props = feature.path("properties");
+            AdminArea area = new AdminArea(
+                text(props, regionProperty),
+                text(props, departementProperty),
+                text(props, arrondissementProperty));
+
+            JsonNode geometry = feature.path("geometry");
+            String type = geometry.path("type").asText();
+            JsonNode coords = geometry.path("coordinates");
+            if ("Polygon".equals(type)) {
+                addPolygon(polygons, area, coords);
+            } else if ("MultiPolygon".equals(type)) {
+                for (JsonNode part : coords) {
+                    addPolygon(polygons, area, part);
+                }
+            }
+        }
+
+        if (polygons.isEmpty()) {
+            throw new IOException("No polygon features in boundary file");
+        }
+        return new AdminBoundaryIndex(polygons);
+    }
+
+    public int size() {
+        return polygons.size();
+    }
+
+    /**
+     * The administrative units containing (lat, lon), or null if the point is
+     * outside every polygon.
+     */
+    public AdminArea locate(double lat, double lon) {
+        if (!(lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon)) return null;
+
+        for (int i : grid[row(lat) * GRID_SIZE + col(lon)]) {
+            Polygon p = polygons.get(i);
+            if (p.contains(lat, lon)) {
+                return p.area;
+            }
+        }
+        return null;
+    }
+
+    private static void addPolygon(List<Polygon> polygons, AdminArea area, JsonNode rings) {
+        Polygon polygon = Polygon.of(area, rings);
+        // Degenerate rings (fewer than three edges) cannot contain a point
+        if (polygon.lat1.length >= 3) {
+            polygons.add(polygon);
+        }
+    }
+
+    private int row(double lat) {
+        return Math.min((int) ((lat - minLat) / cellLat), GRID_SIZE - 1);
+    }
+
+    private int col(double lon) {
+        return Math.min((int) ((lon - minLon) / cellLon), GRID_SIZE - 1);
+    }
+
+    private static String text(JsonNode props, String name) {
+        if (name == null || name.isBlank()) return null;
+        JsonNode value = props.get(name);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    /**
+     * One polygon (outer ring and holes) with its edges bucketed by latitude band.
+     * Even-odd ray casting over all rings handles the holes.
+     */
+    private static final class Polygon {
+
+        final AdminArea area;
+        final double minLat;
+        final double maxLat;
+        final double minLon;
+        final double maxLon;
+        final double[] lat1;
+        final double[] lon1;
+        final double[] lat2;
+        final double[] lon2;
+        final double bandHeight;
+        final int[] bandStart;
+        final int[] bandEdges;
+
+        private Polygon(AdminArea area, double[] lat1, double[] lon1, double[] lat2, double[] lon2) {
+            this.area = area;
+            this.lat1 = lat1;
+            this.lon1 = lon1;
+            this.lat2 = lat2;
+            this.lon2 = lon2;
+
+            double loLat = Double.POSITIVE_INFINITY;
+            double hiLat = Double.NEGATIVE_INFINITY;
+            double loLon = Double.POSITIVE_INFINITY;
+            double hiLon = Double.NEGATIVE_INFINITY;
+            for (int e = 0; e < lat1.length; e++) {
+                loLat = Math.min(loLat, Math.min(lat1[e], lat2[e]));
+                hiLat = Math.max(hiLat, Math.max(lat1[e], lat2[e]));
+                loLon = Math.min(loLon, Math.min(lon1[e], lon2[e]));
+                hiLon = Math.max(hiLon, Math.max(lon1[e], lon2[e]));
+            }
+            this.minLat = loLat;
+            this.maxLat = hiLat;
+            this.minLon = loLon;
+            this.maxLon = hiLon;
+
+            int bands = Math.max(1, Math.min(lat1.length / EDGES_PER_BAND, MAX_BANDS));
+            this.bandHeight = Math.max((hiLat - loLat) / bands, 1e-12);
+
+            int[] counts = new int[bands + 1];
+            for (int e = 0; e < lat1.length; e++) {
+                for (int b = band(Math.min(lat1[e], lat2[e]), bands); b <= band(Math.max(lat1[e], lat2[e]), bands); b++) {
+                    counts[b + 1]++;
+                }
+            }
+            for (int b = 0; b < bands; b++) {
+                counts[b + 1] += counts[b];
+            }
+            this.bandStart = counts;
+            int[] next = Arrays.copyOf(counts, bands);
+            this.bandEdges = new int[counts[bands]];
+            for (int e = 0; e < lat1.length; e++) {
+                for (int b = band(Math.min(lat1[e], lat2[e]), bands); b <= band(Math.max(lat1[e], lat2[e]), bands); b++) {
+                    bandEdges[next[b]++] = e;
+                }
+            }
+        }
+
+        static Polygon of(AdminArea area, JsonNode rings) {
+            int edges = 0;
+            for (JsonNode ring : rings) {
+                edges += Math.max(ring.size() - 1, 0);
+            }
+            double[] lat1 = new double[edges];
+            double[] lon1 = new double[edges];
+            double[] lat2 = new double[edges];
+            double[] lon2 = new double[edges];
+
+            // GeoJSON positions are [lon, lat]; rings are closed (last == first)
+            int e = 0;
+            for (JsonNode ring : rings) {
+                for (int i = 0; i + 1 < ring.size(); i++) {
+                    lon1[e] = ring.get(i).get(0).asDouble();
+                    lat1[e] = ring.get(i).get(1).asDouble();
+                    lon2[e] = ring.get(i + 1).get(0).asDouble();
+                    lat2[e] = ring.get(i + 1).get(1).asDouble();
+                    e++;
+                }
+            }
+            return new Polygon(area, lat1, lon1, lat2, lon2);
+        }
+
+        boolean contains(double lat, double lon) {
+            if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) return false;
+
+            int b = band(lat, bandStart.length - 1);
+            boolean inside = false;
+            for (int i = bandStart[b], end = bandStart[b + 1]; i < end; i++) {
+                int e = bandEdges[i];
+                if ((lat1[e] > lat) != (lat2[e] > lat)) {
+                    double crossLon = lon1[e] + (lat - lat1[e]) * (lon2[e] - lon1[e]) / (lat2[e] - lat1[e]);
+                    if (lon < crossLon) {
+                        inside = !inside;
+                    }
+                }
+            }
+            return inside;
+        }
+
+        private int band(double lat, int bands) {
+            return Math.max(0, Math.min((int) ((lat - minLat) / bandHeight), bands - 1));
+        }
+    }
+}
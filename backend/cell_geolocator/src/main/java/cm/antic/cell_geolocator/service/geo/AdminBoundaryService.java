@@ -0,0 +1,99 @@
+package cm.antic.cell_geolocator.service.geo;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Offline administrative lookup: region, department and arrondissement of a point,
+ * from the boundary polygons in {@code geo.boundaries.path}. Without a file (or if it
+ * cannot be read) every lookup misses and callers use the external geocoders.
+ */
+@Service
+public class AdminBoundaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminBoundaryService.class);
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${geo.boundaries.path:}")
+    private String boundariesPath;
+
+    @Value("${geo.boundaries.region-property:NAME_1}")
+    private String regionProperty;
+
+    @Value("${geo.boundaries.departement-property:NAME_2}")
+    private String departementProperty;
+
+    @Value("${geo.boundaries.arrondissement-property:NAME_3}")
+    private String arrondissementProperty;
+
+    private volatile AdminBoundaryIndex index;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AdminBoundaryService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (boundariesPath == null || boundariesPath.isBlank()) {
+            log.info("No administrative boundary file configured — addresses use external geocoders");
+            return;
+        }
+
+        Path path = Path.of(boundariesPath);
+        long start = System.nanoTime();
+        try (InputStream in = Files.newInputStream(path)) {
+            index = AdminBoundaryIndex.load(in, objectMapper,
+                    regionProperty, departementProperty, arrondissementProperty);
+            log.info("Administrative boundaries loaded | file={} | polygons={} | took={}ms",
+                    path, index.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Administrative boundary load from {} failed: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * The administrative units containing (lat, lon), or null if no boundaries
+     * are loaded or the point lies outside all of them.
+     */
+    public AdminArea locate(double lat, double lon) {
+        AdminBoundaryIndex current = index;
+        if (current == null) {
+            return null;
+        }
+        AdminArea area = current.locate(lat, lon);
+        if (area != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return area;
+    }
+
+    public Map<String, Object> stats() {
+        AdminBoundaryIndex current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", current != null);
+        stats.put("file", boundariesPath);
+        stats.put("polygons", current != null ? current.size() : 0);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,56 @@
+package cm.antic.cell_geolocator.service.geo;
+
+/**
+ * Geohash encoding, used to quantize coordinates into cache keys.
+ * Precision 7 is a cell of about 153 m x 153 m at the equator.
+ */
+public final class GeoHash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    public static String encode(double lat, double lon, int precision) {
+        double latLo = -90;
+        double latHi = 90;
+        double lonLo = -180;
+        double lonHi = 180;
+
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+        int length = 0;
+
+        while (length < precision) {
+            if (evenBit) {
+                double mid = (lonLo + lonHi) / 2;
+                if (lon >= mid) {
+                    ch = (ch << 1) | 1;
+                    lonLo = mid;
+                } else {
+                    ch <<= 1;
+                    lonHi = mid;
+                }
+            } else {
+                double mid = (latLo + latHi) / 2;
+                if (lat >= mid) {
+                    ch = (ch << 1) | 1;
+                    latLo = mid;
+                } else {
+                    ch <<= 1;
+                    latHi = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash[length++] = BASE32[ch];
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return new String(hash);
+    }
+}
@@ -106,11 +106,13 @@ public class CombainClient implements ProviderClient {
 
                     GeolocationResponse err = base;
                     err.setError("No coordinates returned from Combain");
+                    err.setUnknownCell(true);
                     return Mono.just(err);
                 })
-                .onErrorResume(ex -> {
+                .onErrorResume(ex -> !ProviderClient.isProviderFailure(ex), ex -> {
                     GeolocationResponse err = base;
                     err.setError("Combain error: " + ex.getMessage());
+                    err.setUnknownCell(ProviderClient.isCellNotFound(ex));
                     return Mono.just(err);
                 })
                 .toFuture();
@@ -0,0 +1,109 @@
+package cm.antic.cell_geolocator.service.provider;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Rolling latency histogram over the last {@code window} of time.
+ *
+ * Latencies fall into logarithmic buckets (about 12% wide, 1 ms to 60 s), so a
+ * percentile is exact to within one bucket. The window is split into slices; a slice
+ * is cleared when time comes back round to it, so old samples age out without a
+ * background task. Recording is lock-free.
+ */
+final class LatencyHistogram {
+
+    private static final double GROWTH = 1.12;
+    private static final long MAX_MS = 60_000;
+    private static final int BUCKETS = (int) Math.ceil(Math.log(MAX_MS) / Math.log(GROWTH)) + 1;
+    private static final int SLICES = 6;
+
+    private final long sliceMs;
+    private final LongSupplier clockMs;
+    private final AtomicLongArray[] counts = new AtomicLongArray[SLICES];
+    private final AtomicLong[] sliceEpochs = new AtomicLong[SLICES];
+
+    LatencyHistogram(long windowMs) {
+        this(windowMs, System::currentTimeMillis);
+    }
+
+    LatencyHistogram(long windowMs, LongSupplier clockMs) {
+        this.sliceMs = Math.max(windowMs / SLICES, 1);
+        this.clockMs = clockMs;
+        for (int s = 0; s < SLICES; s++) {
+            counts[s] = new AtomicLongArray(BUCKETS);
+            sliceEpochs[s] = new AtomicLong(-1);
+        }
+    }
+
+    void record(long latencyMs) {
+        long epoch = clockMs.getAsLong() / sliceMs;
+        int s = (int) (epoch % SLICES);
+
+        long seen = sliceEpochs[s].get();
+        if (seen != epoch && sliceEpochs[s].compareAndSet(seen, epoch)) {
+            // First sample of a new period for this slice: drop what it held
+            for (int b = 0; b < BUCKETS; b++) {
+                counts[s].set(b, 0);
+            }
+        }
+        counts[s].incrementAndGet(bucket(latencyMs));
+    }
+
+    /** The samples currently in the window. */
+    Snapshot read() {
+        long current = clockMs.getAsLong() / sliceMs;
+        long[] total = new long[BUCKETS];
+        for (int s = 0; s < SLICES; s++) {
+            long epoch = sliceEpochs[s].get();
+            if (epoch < 0 || current - epoch >= SLICES) continue;
+            for (int b = 0; b < BUCKETS; b++) {
+                total[b] += counts[s].get(b);
+            }
+        }
+        return new Snapshot(total);
+    }
+
+    /** A point-in-time view of the window. */
+    static final class Snapshot {
+
+        private final long[] buckets;
+        private final long count;
+
+        private Snapshot(long[] buckets) {
+            this.buckets = buckets;
+            long sum = 0;
+            for (long c : buckets) sum += c;
+            this.count = sum;
+        }
+
+        long count() {
+            return count;
+        }
+
+        /** Upper bound of the bucket holding the q-th quantile (0..1), or 0 if empty. */
+        long percentileMs(double q) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= Math.max(rank, 1)) {
+                    return upperBoundMs(b);
+                }
+            }
+            return MAX_MS;
+        }
+    }
+
+    private static int bucket(long latencyMs) {
+        if (latencyMs <= 1) return 0;
+        int b = (int) Math.ceil(Math.log(latencyMs) / Math.log(GROWTH));
+        return Math.min(b, BUCKETS - 1);
+    }
+
+    private static long upperBoundMs(int bucket) {
+        return Math.min((long) Math.ceil(Math.pow(GROWTH, bucket)), MAX_MS);
+    }
+}
@@ -70,12 +70,16 @@ public class OpenCellIdClient implements ProviderClient {
                     }
 
                     resp.setError("No coordinates returned");
+                    // Errors come back in the body too: only code 1 is "cell not found"
+                    Object code = body.get("code");
+                    resp.setUnknownCell(code == null || (code instanceof Number n && n.intValue() == 1));
                     return Mono.just(resp);
                 })
-                .onErrorResume(e -> {
+                .onErrorResume(e -> !ProviderClient.isProviderFailure(e), e -> {
                     GeolocationResponse errorResp = new GeolocationResponse();
                     errorResp.setProviderUsed(getProviderName());
                     errorResp.setError("OpenCellID API error: " + e.getMessage());
+                    errorResp.setUnknownCell(ProviderClient.isCellNotFound(e));
                     return Mono.just(errorResp);
                 })
                 .toFuture();
@@ -2,6 +2,8 @@ package cm.antic.cell_geolocator.service.provider;
 
 import cm.antic.cell_geolocator.model.GeolocationRequest;
 import cm.antic.cell_geolocator.model.GeolocationResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import java.util.concurrent.CompletableFuture;
 
 public interface ProviderClient {
@@ -9,4 +11,27 @@ public interface ProviderClient {
     GeolocationResponse resolve(GeolocationRequest request);
     CompletableFuture<GeolocationResponse> resolveAsync(GeolocationRequest request);
     String getProviderName();
+
+    /**
+     * Whether an error means the provider itself is failing (5xx, 429, connection or
+     * timeout) rather than rejecting this request (other 4xx). Clients let provider
+     * failures fail their future, so they count against the provider's circuit breaker;
+     * rejections are answered with an error response.
+     */
+    static boolean isProviderFailure(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return !response.getStatusCode().is4xxClientError()
+                    || response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return true;
+    }
+
+    /**
+     * Whether a rejection says the provider has no such cell (404), as opposed to
+     * refusing the request itself (bad or exhausted key, malformed query...).
+     */
+    static boolean isCellNotFound(Throwable e) {
+        return e instanceof WebClientResponseException response
+                && response.getStatusCode().value() == HttpStatus.NOT_FOUND.value();
+    }
 }
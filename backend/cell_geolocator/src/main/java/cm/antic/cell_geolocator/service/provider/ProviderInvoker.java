@@ -0,0 +1,286 @@
+package cm.antic.cell_geolocator.service.provider;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+/**
+ * Calls providers through a per-provider circuit breaker, bulkhead and adaptive deadline.
+ *
+ * An open breaker or a full bulkhead rejects the call without touching the network.
+ * The breaker and bulkhead of a provider are the resilience4j instances named after it
+ * ({@code resilience4j.circuitbreaker.*}, {@code resilience4j.bulkhead.*}).
+ *
+ * Each provider's latencies feed a rolling histogram; its deadline is the configured
+ * percentile times {@code factor}, clamped to [min-ms, max-ms]. Until a provider has
+ * {@code min-samples} in the window its deadline is max-ms. A call that misses its
+ * deadline is cancelled, counts as a breaker failure, and is recorded at the deadline,
+ * so a provider that slows down for good sees its deadline grow back.
+ *
+ * A rejected, failed or timed-out call falls back to the provider's last valid answer
+ * for the same cell, if it has one; otherwise the returned future fails.
+ */
+@Component
+public class ProviderInvoker {
+
+    private static final Logger log = LoggerFactory.getLogger(ProviderInvoker.class);
+
+    @Value("${provider.timeout.percentile:0.99}")
+    private double percentile;
+
+    @Value("${provider.timeout.factor:2.0}")
+    private double factor;
+
+    @Value("${provider.timeout.min-ms:300}")
+    private long minTimeoutMs;
+
+    @Value("${provider.timeout.max-ms:5000}")
+    private long maxTimeoutMs;
+
+    @Value("${provider.timeout.min-samples:20}")
+    private long minSamples;
+
+    private final long windowSeconds;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final Executor taskExecutor;
+    private final Map<String, ProviderStats> stats = new ConcurrentHashMap<>();
+
+    // Last valid answer per provider and cell, served when the provider cannot answer
+    private final Cache<CellKey, GeolocationResponse> lastGood;
+
+    public ProviderInvoker(List<ProviderClient> providers,
+                           CircuitBreakerRegistry circuitBreakerRegistry,
+                           BulkheadRegistry bulkheadRegistry,
+                           @Qualifier("taskExecutor") Executor taskExecutor,
+                           @Value("${provider.timeout.window-seconds:300}") long windowSeconds,
+                           @Value("${provider.fallback.max-size:20000}") long fallbackMaxSize,
+                           @Value("${provider.fallback.ttl-minutes:1440}") long fallbackTtlMinutes) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.taskExecutor = taskExecutor;
+        this.windowSeconds = windowSeconds;
+        this.lastGood = Caffeine.newBuilder()
+                .maximumSize(fallbackMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(fallbackTtlMinutes))
+                .build();
+        // Pre-register so every provider is listed in stats() before its first call
+        providers.forEach(p -> stats(p.getProviderName()));
+    }
+
+    /**
+     * {@code provider.resolveAsync(request)} under the provider's breaker, bulkhead and
+     * deadline. Cancelling the returned future cancels the call without counting it
+     * as a failure.
+     */
+    public CompletableFuture<GeolocationResponse> resolveAsync(ProviderClient provider,
+                                                               GeolocationRequest request) {
+        String name = provider.getProviderName();
+        ProviderStats providerStats = stats(name);
+        CellKey cellKey = new CellKey(name, request.cellIdentity());
+        CircuitBreaker breaker = providerStats.breaker;
+        Bulkhead bulkhead = providerStats.bulkhead;
+
+        if (!breaker.tryAcquirePermission()) {
+            providerStats.rejected.increment();
+            return fallback(name, cellKey, CallNotPermittedException.createCallNotPermittedException(breaker));
+        }
+        if (!bulkhead.tryAcquirePermission()) {
+            breaker.releasePermission();
+            providerStats.rejected.increment();
+            return fallback(name, cellKey, BulkheadFullException.createBulkheadFullException(bulkhead));
+        }
+
+        long deadlineMs = providerStats.timeoutMs();
+        long start = System.nanoTime();
+        providerStats.calls.increment();
+
+        CompletableFuture<GeolocationResponse> call;
+        try {
+            call = provider.resolveAsync(request);
+        } catch (RuntimeException e) {
+            bulkhead.onComplete();
+            breaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            return fallback(name, cellKey, e);
+        }
+
+        // The breaker permission is settled exactly once: success, failure, timeout or release
+        AtomicBoolean settled = new AtomicBoolean();
+        CompletableFuture<GeolocationResponse> result = new CompletableFuture<>();
+
+        call.whenComplete((resp, e) -> {
+            bulkhead.onComplete();
+            long took = System.nanoTime() - start;
+            if (call.isCancelled()) {
+                settle(settled, breaker::releasePermission);
+                return;
+            }
+            providerStats.histogram.record(TimeUnit.NANOSECONDS.toMillis(took));
+            if (e == null) {
+                settle(settled, () -> breaker.onSuccess(took, TimeUnit.NANOSECONDS));
+                if (resp != null && resp.getLatitude() != null && resp.getLongitude() != null) {
+                    lastGood.put(cellKey, resp);
+                }
+                result.complete(resp);
+            } else {
+                Throwable cause = unwrap(e);
+                settle(settled, () -> breaker.onError(took, TimeUnit.NANOSECONDS, cause));
+                completeWithFallback(result, name, cellKey, cause);
+            }
+        });
+
+        // Fires on the task executor, not the common pool that callers' continuations may share
+        CompletableFuture.delayedExecutor(deadlineMs, TimeUnit.MILLISECONDS, taskExecutor).execute(() -> {
+            if (call.isDone()) return;
+            TimeoutException timeout = new TimeoutException(name + " did not answer within " + deadlineMs + "ms");
+            if (settle(settled, () -> breaker.onError(deadlineMs, TimeUnit.MILLISECONDS, timeout))) {
+                providerStats.timeouts.increment();
+                providerStats.histogram.record(deadlineMs);
+                log.warn("Provider '{}' timed out after {}ms", name, deadlineMs);
+            }
+            call.cancel(true);
+            completeWithFallback(result, name, cellKey, timeout);
+        });
+
+        // Cancelled by the caller (a better answer arrived): stop the underlying request
+        result.whenComplete((resp, e) -> {
+            if (result.isCancelled()) call.cancel(true);
+        });
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        stats.forEach((name, s) -> {
+            LatencyHistogram.Snapshot snapshot = s.histogram.read();
+            CircuitBreaker.Metrics breakerMetrics = s.breaker.getMetrics();
+            Bulkhead.Metrics bulkheadMetrics = s.bulkhead.getMetrics();
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("timeoutMs", s.timeoutMs(snapshot));
+            entry.put("samples", snapshot.count());
+            entry.put("p50Ms", snapshot.percentileMs(0.50));
+            entry.put("p90Ms", snapshot.percentileMs(0.90));
+            entry.put("p99Ms", snapshot.percentileMs(0.99));
+            entry.put("calls", s.calls.sum());
+            entry.put("timeouts", s.timeouts.sum());
+            entry.put("rejected", s.rejected.sum());
+            entry.put("fallbacks", s.fallbacks.sum());
+            entry.put("circuitState", s.breaker.getState().name());
+            entry.put("failureRate", breakerMetrics.getFailureRate());
+            entry.put("bufferedCalls", breakerMetrics.getNumberOfBufferedCalls());
+            entry.put("notPermittedCalls", breakerMetrics.getNumberOfNotPermittedCalls());
+            entry.put("bulkheadAvailable", bulkheadMetrics.getAvailableConcurrentCalls());
+            entry.put("bulkheadMax", bulkheadMetrics.getMaxAllowedConcurrentCalls());
+            result.put(name, entry);
+        });
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("percentile", percentile);
+        settings.put("factor", factor);
+        settings.put("minMs", minTimeoutMs);
+        settings.put("maxMs", maxTimeoutMs);
+        settings.put("minSamples", minSamples);
+        settings.put("windowSeconds", windowSeconds);
+
+        return Map.of("providers", result, "settings", settings, "fallbackEntries", lastGood.estimatedSize());
+    }
+
+    private CompletableFuture<GeolocationResponse> fallback(String name, CellKey cellKey, Throwable cause) {
+        CompletableFuture<GeolocationResponse> result = new CompletableFuture<>();
+        completeWithFallback(result, name, cellKey, cause);
+        return result;
+    }
+
+    private void completeWithFallback(CompletableFuture<GeolocationResponse> result, String name,
+                                      CellKey cellKey, Throwable cause) {
+        GeolocationResponse previous = lastGood.getIfPresent(cellKey);
+        if (previous != null) {
+            stats(name).fallbacks.increment();
+            log.debug("Provider '{}' unavailable ({}), using its last answer for {}",
+                    name, cause.getClass().getSimpleName(), cellKey.cell());
+            result.complete(previous);
+        } else {
+            result.completeExceptionally(cause);
+        }
+    }
+
+    private ProviderStats stats(String providerName) {
+        return stats.computeIfAbsent(providerName, n -> new ProviderStats(
+                new LatencyHistogram(TimeUnit.SECONDS.toMillis(windowSeconds)),
+                circuitBreakerRegistry.circuitBreaker(n),
+                bulkheadRegistry.bulkhead(n)));
+    }
+
+    private record CellKey(String provider, CellGlobalIdentity cell) {
+    }
+
+    private static boolean settle(AtomicBoolean settled, Runnable outcome) {
+        if (settled.compareAndSet(false, true)) {
+            outcome.run();
+            return true;
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private final class ProviderStats {
+
+        final LatencyHistogram histogram;
+        final CircuitBreaker breaker;
+        final Bulkhead bulkhead;
+        final LongAdder calls = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder fallbacks = new LongAdder();
+
+        ProviderStats(LatencyHistogram histogram, CircuitBreaker breaker, Bulkhead bulkhead) {
+            this.histogram = histogram;
+            this.breaker = breaker;
+            this.bulkhead = bulkhead;
+        }
+
+        long timeoutMs() {
+            return timeoutMs(histogram.read());
+        }
+
+        long timeoutMs(LatencyHistogram.Snapshot snapshot) {
+            if (snapshot.count() < minSamples) {
+                return maxTimeoutMs;
+            }
+            long adaptive = (long) Math.ceil(snapshot.percentileMs(percentile) * factor);
+            return Math.max(minTimeoutMs, Math.min(adaptive, maxTimeoutMs));
+        }
+    }
+}
@@ -101,11 +101,16 @@ public class UnwiredLabsGeolocationClient implements ProviderClient {
 
                     GeolocationResponse err = base;
                     err.setError("No coordinates returned from UnwiredLabs");
+                    // Key and balance errors also come back as status "error"; only
+                    // "No matches found" means the cell is unknown
+                    err.setUnknownCell(!"error".equals(result.get("status"))
+                            || String.valueOf(result.get("message")).toLowerCase().contains("no matches"));
                     return Mono.just(err);
                 })
-                .onErrorResume(ex -> {
+                .onErrorResume(ex -> !ProviderClient.isProviderFailure(ex), ex -> {
                     GeolocationResponse err = base;
                     err.setError("UnwiredLabs error: " + ex.getMessage());
+                    err.setUnknownCell(ProviderClient.isCellNotFound(ex));
                     return Mono.just(err);
                 })
                 .toFuture();
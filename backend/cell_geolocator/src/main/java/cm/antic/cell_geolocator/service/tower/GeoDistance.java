@@ -0,0 +1,31 @@
+package cm.antic.cell_geolocator.service.tower;
+
+/**
+ * Great-circle distances on a spherical Earth.
+ */
+public final class GeoDistance {
+
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    /** Length of one degree of latitude (and of longitude at the equator). */
+    public static final double KM_PER_DEGREE = Math.toRadians(EARTH_RADIUS_KM);
+
+    private GeoDistance() {
+    }
+
+    /**
+     * Haversine formula (km)
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a =
+            Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+            Math.cos(Math.toRadians(lat1)) *
+            Math.cos(Math.toRadians(lat2)) *
+            Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,323 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Heap-resident {@link TowerIndex} built from table rows.
+ *
+ * Records are stored column-wise in primitive arrays, sorted by their packed
+ * (mcc, mnc, lac, ci) key. Strings are de-duplicated into a shared dictionary and
+ * referenced by int; exact lookups go through a {@link LongIntHashMap} and never box.
+ *
+ * Because of that ordering, the cells of one location area form a contiguous run
+ * of the key array with ascending CIs. The LAC map points at each run so that
+ * nearest-CI fallbacks are a binary search inside it.
+ */
+public final class InMemoryTowerIndex implements TowerIndex {
+
+    private final long[] keys;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final int[] operator;
+    private final int[] siteName;
+    private final int[] btsId;
+    private final int[] technoCell;
+    private final int[] frequenceCell;
+    private final int[] arrondissement;
+    private final int[] departement;
+    private final int[] region;
+    private final int[] azimuth;
+    private final String[] dictionary;
+    private final LongIntHashMap byKey;
+    private final LongIntHashMap lacGroups;
+    private final int[] groupStart;
+    private final int[] groupEnd;
+
+    private InMemoryTowerIndex(Builder b, int[] order, LongIntHashMap byKey) {
+        int n = order.length;
+        this.keys = new long[n];
+        this.latitude = new double[n];
+        this.longitude = new double[n];
+        this.operator = new int[n];
+        this.siteName = new int[n];
+        this.btsId = new int[n];
+        this.technoCell = new int[n];
+        this.frequenceCell = new int[n];
+        this.arrondissement = new int[n];
+        this.departement = new int[n];
+        this.region = new int[n];
+        this.azimuth = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            int src = order[i];
+            keys[i] = b.keys[src];
+            latitude[i] = b.latitude[src];
+            longitude[i] = b.longitude[src];
+            operator[i] = b.strings[src][0];
+            siteName[i] = b.strings[src][1];
+            btsId[i] = b.strings[src][2];
+            technoCell[i] = b.strings[src][3];
+            frequenceCell[i] = b.strings[src][4];
+            arrondissement[i] = b.strings[src][5];
+            departement[i] = b.strings[src][6];
+            region[i] = b.strings[src][7];
+            azimuth[i] = b.strings[src][8];
+        }
+
+        this.dictionary = b.dictionary.toArray(new String[0]);
+        this.byKey = byKey;
+
+        // One group per (mcc, mnc, lac) run of the sorted key array
+        int groups = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || TowerIndex.lacPrefix(keys[i]) != TowerIndex.lacPrefix(keys[i - 1])) groups++;
+        }
+        this.lacGroups = new LongIntHashMap(groups);
+        this.groupStart = new int[groups];
+        this.groupEnd = new int[groups];
+        int g = -1;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || TowerIndex.lacPrefix(keys[i]) != TowerIndex.lacPrefix(keys[i - 1])) {
+                g++;
+                lacGroups.putIfAbsent(TowerIndex.lacPrefix(keys[i]), g);
+                groupStart[g] = i;
+            }
+            groupEnd[g] = i + 1;
+        }
+    }
+
+    @Override
+    public int find(int mcc, int mnc, int lac, int ci) {
+        long key = TowerIndex.pack(mcc, mnc, lac, ci);
+        if (key == INVALID_KEY) return NOT_FOUND;
+        return byKey.get(key);
+    }
+
+    @Override
+    public int nearest(int mcc, int mnc, int lac, int ci) {
+        long key = TowerIndex.pack(mcc, mnc, lac, ci);
+        if (key == INVALID_KEY) return NOT_FOUND;
+
+        int g = lacGroups.get(TowerIndex.lacPrefix(key));
+        if (g == LongIntHashMap.NO_VALUE) return NOT_FOUND;
+
+        int start = groupStart[g];
+        int end = groupEnd[g];
+        int pos = Arrays.binarySearch(keys, start, end, key);
+        if (pos >= 0) return pos;
+
+        int above = -pos - 1;
+        int below = above - 1;
+        if (below < start) return above;
+        if (above >= end) return below;
+        return (ci - ci(below)) <= (ci(above) - ci) ? below : above;
+    }
+
+    @Override
+    public int nearest(int mcc, int mnc, int lac, int ci, int[] out) {
+        long key = TowerIndex.pack(mcc, mnc, lac, ci);
+        if (key == INVALID_KEY) return 0;
+
+        int g = lacGroups.get(TowerIndex.lacPrefix(key));
+        if (g == LongIntHashMap.NO_VALUE) return 0;
+
+        int start = groupStart[g];
+        int end = groupEnd[g];
+        int pos = Arrays.binarySearch(keys, start, end, key);
+        int above = pos >= 0 ? pos : -pos - 1;
+        int below = above - 1;
+
+        int count = 0;
+        while (count < out.length && (below >= start || above < end)) {
+            boolean takeBelow = above >= end
+                    || (below >= start && (ci - ci(below)) <= (ci(above) - ci));
+            out[count++] = takeBelow ? below-- : above++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public int lacGroupCount() {
+        return groupStart.length;
+    }
+
+    @Override
+    public int dictionarySize() {
+        return dictionary.length;
+    }
+
+    @Override
+    public long key(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public double latitude(int id) {
+        return latitude[id];
+    }
+
+    @Override
+    public double longitude(int id) {
+        return longitude[id];
+    }
+
+    @Override
+    public String operator(int id) {
+        return dictionary[operator[id]];
+    }
+
+    @Override
+    public String siteName(int id) {
+        return dictionary[siteName[id]];
+    }
+
+    @Override
+    public String btsId(int id) {
+        return dictionary[btsId[id]];
+    }
+
+    @Override
+    public String technoCell(int id) {
+        return dictionary[technoCell[id]];
+    }
+
+    @Override
+    public String frequenceCell(int id) {
+        return dictionary[frequenceCell[id]];
+    }
+
+    @Override
+    public String arrondissement(int id) {
+        return dictionary[arrondissement[id]];
+    }
+
+    @Override
+    public String departement(int id) {
+        return dictionary[departement[id]];
+    }
+
+    @Override
+    public String region(int id) {
+        return dictionary[region[id]];
+    }
+
+    @Override
+    public String azimuth(int id) {
+        return dictionary[azimuth[id]];
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects rows, then sorts and freezes them into an {@link InMemoryTowerIndex}.
+     * Not thread-safe; a builder is meant to be filled by a single loader.
+     */
+    public static final class Builder {
+
+        private long[] keys = new long[1024];
+        private double[] latitude = new double[1024];
+        private double[] longitude = new double[1024];
+        private int[][] strings = new int[1024][];
+        private int size;
+        private int rejected;
+
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> dictionaryIds = new HashMap<>();
+
+        private Builder() {
+            dictionary.add(null); // id 0 is reserved for null
+        }
+
+        /**
+         * Adds a row. Rows whose identity does not fit the packed key are rejected
+         * (and stay reachable through the SQL path only).
+         *
+         * @return true if the row was accepted
+         */
+        public boolean add(TowerRow row) {
+            long key = TowerIndex.pack(row.mcc(), row.mnc(), row.lac(), row.ci());
+            if (key == INVALID_KEY) {
+                rejected++;
+                return false;
+            }
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                latitude = Arrays.copyOf(latitude, capacity);
+                longitude = Arrays.copyOf(longitude, capacity);
+                strings = Arrays.copyOf(strings, capacity);
+            }
+            keys[size] = key;
+            latitude[size] = row.latitude();
+            longitude[size] = row.longitude();
+            strings[size] = new int[] {
+                intern(row.operator()),
+                intern(row.siteName()),
+                intern(row.btsId()),
+                intern(row.technoCell()),
+                intern(row.frequenceCell()),
+                intern(row.arrondissement()),
+                intern(row.departement()),
+                intern(row.region()),
+                intern(row.azimuth())
+            };
+            size++;
+            return true;
+        }
+
+        public int rejected() {
+            return rejected;
+        }
+
+        /**
+         * Sorts by packed key and drops duplicate identities, keeping the first row added.
+         */
+        public InMemoryTowerIndex build() {
+            long[] k = keys;
+            int[] sorted = IntStream.range(0, size)
+                    .boxed()
+                    .sorted((a, b) -> {
+                        int c = Long.compare(k[a], k[b]);
+                        return c != 0 ? c : Integer.compare(a, b);
+                    })
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            int[] order = new int[size];
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i > 0 && k[sorted[i]] == k[sorted[i - 1]]) continue;
+                order[n++] = sorted[i];
+            }
+            order = Arrays.copyOf(order, n);
+
+            LongIntHashMap byKey = new LongIntHashMap(n);
+            for (int i = 0; i < n; i++) {
+                byKey.putIfAbsent(k[order[i]], i);
+            }
+            return new InMemoryTowerIndex(this, order, byKey);
+        }
+
+        private int intern(String value) {
+            if (value == null) return 0;
+            Integer id = dictionaryIds.get(value);
+            if (id != null) return id;
+            int next = dictionary.size();
+            dictionary.add(value);
+            dictionaryIds.put(value, next);
+            return next;
+        }
+    }
+}
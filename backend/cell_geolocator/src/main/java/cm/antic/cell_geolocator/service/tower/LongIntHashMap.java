@@ -0,0 +1,66 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing (linear probing) map from primitive long keys to primitive int values.
+ * No boxing on either side; sized once at construction and filled by the index builders.
+ * The key {@code -1L} is reserved as the empty-slot marker.
+ */
+final class LongIntHashMap {
+
+    static final long EMPTY_KEY = -1L;
+    static final int NO_VALUE = -1;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, EMPTY_KEY);
+    }
+
+    /**
+     * Inserts the mapping if the key is absent.
+     *
+     * @return true if inserted, false if the key was already present
+     */
+    boolean putIfAbsent(long key, int value) {
+        if (key == EMPTY_KEY) {
+            throw new IllegalArgumentException("Reserved key");
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY_KEY) {
+            if (keys[slot] == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    int get(long key) {
+        int slot = slot(key);
+        long k;
+        while ((k = keys[slot]) != EMPTY_KEY) {
+            if (k == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
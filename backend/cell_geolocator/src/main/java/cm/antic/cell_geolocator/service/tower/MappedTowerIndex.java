@@ -0,0 +1,210 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * {@link TowerIndex} served from a memory-mapped {@link TowerSnapshot}.
+ *
+ * Keys and records are read in place; lookups binary-search the sorted key
+ * section. Only dictionary strings are copied to the heap, lazily, the first
+ * time each one is read.
+ */
+public final class MappedTowerIndex implements TowerIndex {
+
+    private final ByteBuffer buf;
+    private final int size;
+    private final int dictionarySize;
+    private final int lacGroupCount;
+    private final Instant createdAt;
+    private final long sourceChecksum;
+    private final int keysOffset;
+    private final int recordsOffset;
+    private final int dictionaryOffset;
+    private final int blobOffset;
+    private final String[] decoded;
+
+    MappedTowerIndex(ByteBuffer buf) {
+        this.buf = buf;
+        this.size = buf.getInt(8);
+        this.dictionarySize = buf.getInt(12);
+        this.lacGroupCount = buf.getInt(16);
+        this.createdAt = Instant.ofEpochMilli(buf.getLong(24));
+        this.keysOffset = (int) buf.getLong(32);
+        this.recordsOffset = (int) buf.getLong(40);
+        this.dictionaryOffset = (int) buf.getLong(48);
+        this.sourceChecksum = buf.getLong(64);
+        this.blobOffset = dictionaryOffset + (dictionarySize + 1) * Integer.BYTES;
+        this.decoded = new String[dictionarySize];
+    }
+
+    public Instant createdAt() {
+        return createdAt;
+    }
+
+    public long sourceChecksum() {
+        return sourceChecksum;
+    }
+
+    @Override
+    public int find(int mcc, int mnc, int lac, int ci) {
+        long key = TowerIndex.pack(mcc, mnc, lac, ci);
+        if (key == INVALID_KEY) return NOT_FOUND;
+        int pos = search(key);
+        return pos >= 0 ? pos : NOT_FOUND;
+    }
+
+    @Override
+    public int nearest(int mcc, int mnc, int lac, int ci) {
+        long key = TowerIndex.pack(mcc, mnc, lac, ci);
+        if (key == INVALID_KEY) return NOT_FOUND;
+
+        int pos = search(key);
+        if (pos >= 0) return pos;
+
+        long prefix = TowerIndex.lacPrefix(key);
+        int above = -pos - 1;
+        int below = above - 1;
+        boolean hasBelow = below >= 0 && TowerIndex.lacPrefix(key(below)) == prefix;
+        boolean hasAbove = above < size && TowerIndex.lacPrefix(key(above)) == prefix;
+
+        if (!hasBelow && !hasAbove) return NOT_FOUND;
+        if (!hasBelow) return above;
+        if (!hasAbove) return below;
+        return (ci - ci(below)) <= (ci(above) - ci) ? below : above;
+    }
+
+    @Override
+    public int nearest(int mcc, int mnc, int lac, int ci, int[] out) {
+        long key = TowerIndex.pack(mcc, mnc, lac, ci);
+        if (key == INVALID_KEY) return 0;
+
+        long prefix = TowerIndex.lacPrefix(key);
+        int pos = search(key);
+        int above = pos >= 0 ? pos : -pos - 1;
+        int below = above - 1;
+
+        int count = 0;
+        while (count < out.length) {
+            boolean hasBelow = below >= 0 && TowerIndex.lacPrefix(key(below)) == prefix;
+            boolean hasAbove = above < size && TowerIndex.lacPrefix(key(above)) == prefix;
+            if (!hasBelow && !hasAbove) break;
+
+            boolean takeBelow = !hasAbove || (hasBelow && (ci - ci(below)) <= (ci(above) - ci));
+            out[count++] = takeBelow ? below-- : above++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int lacGroupCount() {
+        return lacGroupCount;
+    }
+
+    @Override
+    public int dictionarySize() {
+        return dictionarySize;
+    }
+
+    @Override
+    public long key(int id) {
+        return buf.getLong(keysOffset + id * Long.BYTES);
+    }
+
+    @Override
+    public double latitude(int id) {
+        return buf.getDouble(recordsOffset + id * TowerSnapshot.RECORD_SIZE);
+    }
+
+    @Override
+    public double longitude(int id) {
+        return buf.getDouble(recordsOffset + id * TowerSnapshot.RECORD_SIZE + Double.BYTES);
+    }
+
+    @Override
+    public String operator(int id) {
+        return string(id, 0);
+    }
+
+    @Override
+    public String siteName(int id) {
+        return string(id, 1);
+    }
+
+    @Override
+    public String btsId(int id) {
+        return string(id, 2);
+    }
+
+    @Override
+    public String technoCell(int id) {
+        return string(id, 3);
+    }
+
+    @Override
+    public String frequenceCell(int id) {
+        return string(id, 4);
+    }
+
+    @Override
+    public String arrondissement(int id) {
+        return string(id, 5);
+    }
+
+    @Override
+    public String departement(int id) {
+        return string(id, 6);
+    }
+
+    @Override
+    public String region(int id) {
+        return string(id, 7);
+    }
+
+    @Override
+    public String azimuth(int id) {
+        return string(id, 8);
+    }
+
+    /**
+     * Binary search over the mapped key section.
+     *
+     * @return the id if found, else (-(insertion point) - 1)
+     */
+    private int search(long key) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = key(mid);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private String string(int id, int column) {
+        int ref = buf.getInt(recordsOffset + id * TowerSnapshot.RECORD_SIZE
+                + 2 * Double.BYTES + column * Integer.BYTES);
+        if (ref == 0) return null;
+
+        // Racy but benign: concurrent readers may decode the same entry twice
+        String value = decoded[ref];
+        if (value == null) {
+            int start = buf.getInt(dictionaryOffset + ref * Integer.BYTES);
+            int end = buf.getInt(dictionaryOffset + (ref + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            buf.get(blobOffset + start, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            decoded[ref] = value;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,95 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import cm.antic.cell_geolocator.config.TowerOperatorProperties;
+
+/**
+ * Routes a request's (MCC, MNC) to the local tower source that can answer it,
+ * so a lookup only touches that operator's data.
+ */
+@Component
+public class OperatorRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(OperatorRegistry.class);
+
+    private final List<OperatorSource> sources;
+    private final List<List<OperatorSource>> singletons;
+    private final boolean probeAllOnUnknown;
+    private final LongAdder unrouted = new LongAdder();
+
+    public OperatorRegistry(TowerOperatorProperties properties) {
+        this.sources = properties.getOperators().stream()
+                .map(OperatorSource::new)
+                .toList();
+        this.singletons = sources.stream()
+                .map(List::of)
+                .toList();
+        this.probeAllOnUnknown = properties.getRouting().isProbeAllOnUnknown();
+
+        sources.forEach(s -> log.info(
+            "Local tower source registered | operator={} | mcc={} | mnc={}",
+            s.getName(), s.getMcc(), s.getMnc()
+        ));
+    }
+
+    /** All configured sources, in configuration order. */
+    public List<OperatorSource> all() {
+        return sources;
+    }
+
+    /** The source with this configured name (case-insensitive), or null. */
+    public OperatorSource byName(String name) {
+        if (name == null) return null;
+        for (OperatorSource source : sources) {
+            if (source.getName().equalsIgnoreCase(name.trim())) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sources to probe for this MCC/MNC: the matching operator, or (if none matches)
+     * every operator when probe-all-on-unknown is set, otherwise none. Never allocates.
+     */
+    public List<OperatorSource> route(String mcc, String mnc) {
+        return route(parse(mcc), parse(mnc));
+    }
+
+    /** As {@link #route(String, String)}, for a parsed MCC/MNC. */
+    public List<OperatorSource> route(int mccValue, int mncValue) {
+        for (int i = 0; i < sources.size(); i++) {
+            OperatorSource source = sources.get(i);
+            if (source.getMcc() == mccValue && source.getMnc() == mncValue) {
+                return singletons.get(i);
+            }
+        }
+
+        unrouted.increment();
+        return probeAllOnUnknown ? sources : List.of();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+            "operators", sources.stream().map(OperatorSource::stats).toList(),
+            "unrouted", unrouted.sum(),
+            "probeAllOnUnknown", probeAllOnUnknown
+        );
+    }
+
+    private static int parse(String value) {
+        if (value == null) return -1;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import cm.antic.cell_geolocator.config.TowerOperatorProperties;
+import cm.antic.cell_geolocator.config.TowerOperatorProperties.AddressSource;
+import cm.antic.cell_geolocator.config.TowerOperatorProperties.Columns;
+
+/**
+ * One routed local tower source: the operator's table, the SQL generated from its
+ * column mapping, and its lookup counters.
+ */
+public final class OperatorSource {
+
+    private final String name;
+    private final int mcc;
+    private final int mnc;
+    private final boolean numericIds;
+    private final AddressSource addressSource;
+
+    private final String loadSql;
+    private final String exactSql;
+    private final String fallbackSql;
+    private final String batchExactSql;
+    private final String checksumSql;
+    private final RowMapper<TowerRow> rowMapper;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder indexHits = new LongAdder();
+    private final LongAdder sqlHits = new LongAdder();
+    private final LongAdder fallbackHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    OperatorSource(TowerOperatorProperties.Operator config) {
+        this.name = config.getName();
+        this.mcc = config.getMcc();
+        this.mnc = config.getMnc();
+        this.numericIds = config.isNumericIds();
+        this.addressSource = config.getAddressSource();
+
+        Columns c = config.getColumns();
+        String table = config.getTable();
+        String select = """
+            SELECT %s AS lac,
+                   %s AS ci,
+                   %s AS latitude,
+                   %s AS longitude,
+                   %s AS site_name,
+                   %s AS bts_id,
+                   %s AS techno_cell,
+                   %s AS frequence_cell,
+                   %s AS arrondissement,
+                   %s AS departement,
+                   %s AS region,
+                   %s AS azimuth
+            """.formatted(
+                c.getLac(), c.getCi(), c.getLatitude(), c.getLongitude(),
+                orNull(c.getSiteName()), orNull(c.getBtsId()),
+                orNull(c.getTechnoCell()), orNull(c.getFrequenceCell()),
+                orNull(c.getArrondissement()), orNull(c.getDepartement()),
+                orNull(c.getRegion()), orNull(c.getAzimuth()));
+        String param = numericIds ? "CAST(? AS BIGINT)" : "?";
+
+        this.loadSql = select + "FROM " + table;
+        this.exactSql = select
+                + "FROM " + table + "\n"
+                + "WHERE " + c.getLac() + " = " + param + "\n"
+                + "  AND " + c.getCi() + " = " + param + "\n"
+                + "LIMIT 1";
+        this.fallbackSql = select
+                + "FROM " + table + "\n"
+                + "WHERE " + c.getLac() + " = " + param + "\n"
+                + "ORDER BY ABS(CAST(" + c.getCi() + " AS INTEGER) - ?) ASC\n"
+                + "LIMIT 1";
+        // Set-based exact lookup: the requested (lac, ci) pairs arrive as two parallel arrays
+        String arrayParam = "CAST(? AS " + (numericIds ? "BIGINT[]" : "TEXT[]") + ")";
+        this.batchExactSql = select
+                + "FROM " + table + "\n"
+                + "JOIN unnest(" + arrayParam + ", " + arrayParam + ") AS req(req_lac, req_ci)\n"
+                + "  ON " + c.getLac() + " = req.req_lac AND " + c.getCi() + " = req.req_ci";
+        // Cheap server-side change detection: row count plus a sum of per-row hashes
+        this.checksumSql = "SELECT COUNT(*) AS row_count, "
+                + "COALESCE(SUM(hashtext(t::text)::bigint), 0) AS row_hash "
+                + "FROM " + table + " t";
+        this.rowMapper = this::mapRow;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMcc() {
+        return mcc;
+    }
+
+    public int getMnc() {
+        return mnc;
+    }
+
+    public AddressSource getAddressSource() {
+        return addressSource;
+    }
+
+    /** Full-table select used to build the in-memory index. */
+    public String loadSql() {
+        return loadSql;
+    }
+
+    /** Exact (lac, ci) select; binds lac, ci. */
+    public String exactSql() {
+        return exactSql;
+    }
+
+    /** Closest-CI-in-LAC select; binds lac, then the requested CI as an integer. */
+    public String fallbackSql() {
+        return fallbackSql;
+    }
+
+    /**
+     * Exact select for many cells at once; binds an array of LACs and the parallel
+     * array of CIs, built with {@link #idArrayType()} elements. May return several
+     * rows per cell if the table has duplicates.
+     */
+    public String batchExactSql() {
+        return batchExactSql;
+    }
+
+    /** SQL element type of the id arrays bound to {@link #batchExactSql()}. */
+    public String idArrayType() {
+        return numericIds ? "bigint" : "text";
+    }
+
+    /** Single-row (row_count, row_hash) select that changes whenever the table content does. */
+    public String checksumSql() {
+        return checksumSql;
+    }
+
+    public RowMapper<TowerRow> rowMapper() {
+        return rowMapper;
+    }
+
+    public void recordLookup() {
+        lookups.increment();
+    }
+
+    public void recordIndexHit(boolean fallback) {
+        indexHits.increment();
+        if (fallback) fallbackHits.increment();
+    }
+
+    public void recordSqlHit(boolean fallback) {
+        sqlHits.increment();
+        if (fallback) fallbackHits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("mcc", mcc);
+        stats.put("mnc", mnc);
+        stats.put("lookups", lookups.sum());
+        stats.put("indexHits", indexHits.sum());
+        stats.put("sqlHits", sqlHits.sum());
+        stats.put("fallbackHits", fallbackHits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    private TowerRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new TowerRow(
+            name, mcc, mnc,
+            parseInt(rs.getString("lac")),
+            parseInt(rs.getString("ci")),
+            parseDouble(rs.getString("latitude")),
+            parseDouble(rs.getString("longitude")),
+            rs.getString("site_name"),
+            rs.getString("bts_id"),
+            rs.getString("techno_cell"),
+            rs.getString("frequence_cell"),
+            rs.getString("arrondissement"),
+            rs.getString("departement"),
+            rs.getString("region"),
+            rs.getString("azimuth"));
+    }
+
+    private static String orNull(String column) {
+        return column == null || column.isBlank() ? "NULL::VARCHAR" : column;
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) return -1;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null) return Double.NaN;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
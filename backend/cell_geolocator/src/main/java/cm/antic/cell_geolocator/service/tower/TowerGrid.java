@@ -0,0 +1,286 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.util.Arrays;
+
+/**
+ * Uniform latitude/longitude grid over the records of a {@link TowerIndex}, for
+ * nearest-tower queries without a database round trip.
+ *
+ * Records are bucketed by grid cell and stored contiguously per cell, with their
+ * coordinates copied alongside so a scan touches sequential memory. A query scans
+ * rings of cells around the query point, ranking by equirectangular distance (one
+ * cosine per query), and stops once no unscanned cell can hold a closer record.
+ * The retained candidates are then ranked by exact haversine distance.
+ * Longitudes do not wrap at the antimeridian. Immutable once built.
+ */
+public final class TowerGrid {
+
+    /** Matches records of any operator in {@link #nearest}. */
+    public static final int ANY_OPERATOR = -1;
+
+    // Candidates kept beyond k so the haversine re-rank can correct the approximation
+    private static final int OVERFETCH = 8;
+    private static final int MAX_CELLS = 1 << 22;
+
+    private final TowerIndex index;
+    private final double minLat;
+    private final double minLon;
+    private final double cellDegrees;
+    private final int rows;
+    private final int cols;
+    private final int[] cellStart;
+    private final int[] ids;
+    private final double[] lats;
+    private final double[] lons;
+    private final int[] operators;
+
+    private TowerGrid(TowerIndex index, double minLat, double minLon, double cellDegrees,
+                      int rows, int cols, int[] cellStart, int[] ids,
+                      double[] lats, double[] lons, int[] operators) {
+        this.index = index;
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.cellDegrees = cellDegrees;
+        this.rows = rows;
+        this.cols = cols;
+        this.cellStart = cellStart;
+        this.ids = ids;
+        this.lats = lats;
+        this.lons = lons;
+        this.operators = operators;
+    }
+
+    /** Operator filter value for {@link #nearest}. */
+    public static int operatorCode(int mcc, int mnc) {
+        return (mcc << TowerIndex.MNC_BITS) | mnc;
+    }
+
+    /**
+     * Buckets every record with valid coordinates. The cell size is doubled until
+     * the grid has at most 4M cells, so a few outlying coordinates cannot blow it up.
+     */
+    public static TowerGrid build(TowerIndex index, double cellDegrees) {
+        int n = index.size();
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        int valid = 0;
+
+        for (int id = 0; id < n; id++) {
+            double lat = index.latitude(id);
+            double lon = index.longitude(id);
+            if (!isValid(lat, lon)) continue;
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLon = Math.max(maxLon, lon);
+            valid++;
+        }
+
+        if (valid == 0) {
+            return new TowerGrid(index, 0, 0, cellDegrees, 0, 0,
+                    new int[1], new int[0], new double[0], new double[0], new int[0]);
+        }
+
+        double cell = cellDegrees;
+        int rows;
+        int cols;
+        while (true) {
+            rows = (int) ((maxLat - minLat) / cell) + 1;
+            cols = (int) ((maxLon - minLon) / cell) + 1;
+            if ((long) rows * cols <= MAX_CELLS) break;
+            cell *= 2;
+        }
+
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[rows * cols + 1];
+        for (int id = 0; id < n; id++) {
+            double lat = index.latitude(id);
+            double lon = index.longitude(id);
+            if (!isValid(lat, lon)) {
+                cellOf[id] = -1;
+                continue;
+            }
+            int row = Math.min((int) ((lat - minLat) / cell), rows - 1);
+            int col = Math.min((int) ((lon - minLon) / cell), cols - 1);
+            cellOf[id] = row * cols + col;
+            cellStart[cellOf[id] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        int[] next = Arrays.copyOf(cellStart, rows * cols);
+        int[] ids = new int[valid];
+        double[] lats = new double[valid];
+        double[] lons = new double[valid];
+        int[] operators = new int[valid];
+        for (int id = 0; id < n; id++) {
+            if (cellOf[id] < 0) continue;
+            int slot = next[cellOf[id]]++;
+            ids[slot] = id;
+            lats[slot] = index.latitude(id);
+            lons[slot] = index.longitude(id);
+            operators[slot] = operatorCode(index.mcc(id), index.mnc(id));
+        }
+
+        return new TowerGrid(index, minLat, minLon, cell, rows, cols, cellStart, ids, lats, lons, operators);
+    }
+
+    /** The index these ids refer to. */
+    public TowerIndex index() {
+        return index;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int cellCount() {
+        return rows * cols;
+    }
+
+    public double cellDegrees() {
+        return cellDegrees;
+    }
+
+    /**
+     * Finds up to {@code outIds.length} records closest to (lat, lon), nearest first.
+     *
+     * @param operator {@link #operatorCode} to restrict to one operator, or {@link #ANY_OPERATOR}
+     * @param outIds   receives the record ids
+     * @param outKm    receives the haversine distances in km; at least as long as {@code outIds}
+     * @return the number of records written
+     */
+    public int nearest(double lat, double lon, int operator, int[] outIds, double[] outKm) {
+        int k = outIds.length;
+        if (k == 0 || ids.length == 0) return 0;
+
+        double kmPerLon = GeoDistance.KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(lat)), 1e-6);
+        int cy = clamp((int) Math.floor((lat - minLat) / cellDegrees), rows);
+        int cx = clamp((int) Math.floor((lon - minLon) / cellDegrees), cols);
+
+        // Bounded max-heap on squared equirectangular distance
+        int capacity = k + OVERFETCH;
+        double[] heapD2 = new double[capacity];
+        int[] heapSlot = new int[capacity];
+        int heapSize = 0;
+
+        for (int r = 0; ; r++) {
+            int rowLo = Math.max(cy - r, 0);
+            int rowHi = Math.min(cy + r, rows - 1);
+            int colLo = Math.max(cx - r, 0);
+            int colHi = Math.min(cx + r, cols - 1);
+
+            for (int row = rowLo; row <= rowHi; row++) {
+                boolean edgeRow = row == cy - r || row == cy + r;
+                int step = edgeRow || r == 0 ? 1 : 2 * r;
+                for (int col = edgeRow ? colLo : cx - r; col <= colHi; col += step) {
+                    if (col < colLo) continue;
+                    int c = row * cols + col;
+                    for (int s = cellStart[c], end = cellStart[c + 1]; s < end; s++) {
+                        if (operator != ANY_OPERATOR && operators[s] != operator) continue;
+                        double dy = (lats[s] - lat) * GeoDistance.KM_PER_DEGREE;
+                        double dx = (lons[s] - lon) * kmPerLon;
+                        double d2 = dy * dy + dx * dx;
+                        if (heapSize < capacity) {
+                            heapSize = siftUp(heapD2, heapSlot, heapSize, d2, s);
+                        } else if (d2 < heapD2[0]) {
+                            replaceTop(heapD2, heapSlot, heapSize, d2, s);
+                        }
+                    }
+                }
+            }
+
+            boolean covered = cy - r <= 0 && cy + r >= rows - 1 && cx - r <= 0 && cx + r >= cols - 1;
+            if (covered) break;
+            if (heapSize == capacity) {
+                double boundary = boundaryKm(lat, lon, kmPerLon, cy, cx, r);
+                if (heapD2[0] <= boundary * boundary) break;
+            }
+        }
+
+        // Exact ranking of the retained candidates (insertion sort, k is small)
+        int count = 0;
+        double[] km = new double[heapSize];
+        int[] slots = new int[heapSize];
+        for (int h = 0; h < heapSize; h++) {
+            int s = heapSlot[h];
+            double d = GeoDistance.haversineKm(lat, lon, lats[s], lons[s]);
+            int pos = count++;
+            while (pos > 0 && km[pos - 1] > d) {
+                km[pos] = km[pos - 1];
+                slots[pos] = slots[pos - 1];
+                pos--;
+            }
+            km[pos] = d;
+            slots[pos] = s;
+        }
+
+        int written = Math.min(k, count);
+        for (int i = 0; i < written; i++) {
+            outIds[i] = ids[slots[i]];
+            outKm[i] = km[i];
+        }
+        return written;
+    }
+
+    /**
+     * Equirectangular distance from the query to the nearest edge of the scanned
+     * (2r + 1)-cell square that still has unscanned cells beyond it.
+     */
+    private double boundaryKm(double lat, double lon, double kmPerLon, int cy, int cx, int r) {
+        double boundary = Double.POSITIVE_INFINITY;
+        if (cy - r > 0) {
+            boundary = Math.min(boundary, (lat - (minLat + (cy - r) * cellDegrees)) * GeoDistance.KM_PER_DEGREE);
+        }
+        if (cy + r < rows - 1) {
+            boundary = Math.min(boundary, (minLat + (cy + r + 1) * cellDegrees - lat) * GeoDistance.KM_PER_DEGREE);
+        }
+        if (cx - r > 0) {
+            boundary = Math.min(boundary, (lon - (minLon + (cx - r) * cellDegrees)) * kmPerLon);
+        }
+        if (cx + r < cols - 1) {
+            boundary = Math.min(boundary, (minLon + (cx + r + 1) * cellDegrees - lon) * kmPerLon);
+        }
+        return Math.max(boundary, 0);
+    }
+
+    private static int siftUp(double[] d2, int[] slot, int size, double value, int s) {
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (d2[parent] >= value) break;
+            d2[i] = d2[parent];
+            slot[i] = slot[parent];
+            i = parent;
+        }
+        d2[i] = value;
+        slot[i] = s;
+        return size + 1;
+    }
+
+    private static void replaceTop(double[] d2, int[] slot, int size, double value, int s) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && d2[child + 1] > d2[child]) child++;
+            if (d2[child] <= value) break;
+            d2[i] = d2[child];
+            slot[i] = slot[child];
+            i = child;
+        }
+        d2[i] = value;
+        slot[i] = s;
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(value, size - 1));
+    }
+
+    private static boolean isValid(double lat, double lon) {
+        return lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180;
+    }
+}
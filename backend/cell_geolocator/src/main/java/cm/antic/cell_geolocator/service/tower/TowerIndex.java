@@ -0,0 +1,145 @@
+package cm.antic.cell_geolocator.service.tower;
+
+/**
+ * Read-only index of the operator tower tables.
+ *
+ * Records are addressed by an int id in [0, size()) and ordered by their packed
+ * (mcc, mnc, lac, ci) key, so the cells of one location area are contiguous with
+ * ascending CIs. Implementations are immutable and safe for concurrent readers.
+ */
+public interface TowerIndex {
+
+    /** Returned by lookups when no record matches. */
+    int NOT_FOUND = -1;
+
+    /** Returned by {@link #pack} when a component does not fit its bit field. */
+    long INVALID_KEY = -1L;
+
+    // Key layout: mcc (10 bits) | mnc (10 bits) | lac (16 bits) | ci (28 bits)
+    int CI_BITS = 28;
+    int LAC_BITS = 16;
+    int MNC_BITS = 10;
+    int MCC_BITS = 10;
+
+    /** MCCs are three digits; capping them keeps a key from being all ones, i.e. INVALID_KEY. */
+    int MAX_MCC = 999;
+
+    /**
+     * Packs a cell identity into a single long, or returns {@link #INVALID_KEY}
+     * if any component is negative or too wide for its field.
+     */
+    static long pack(int mcc, int mnc, int lac, int ci) {
+        if (mcc < 0 || mcc > MAX_MCC
+                || mnc < 0 || mnc >= (1 << MNC_BITS)
+                || lac < 0 || lac >= (1 << LAC_BITS)
+                || ci < 0 || ci >= (1 << CI_BITS)) {
+            return INVALID_KEY;
+        }
+        return ((long) mcc << (MNC_BITS + LAC_BITS + CI_BITS))
+                | ((long) mnc << (LAC_BITS + CI_BITS))
+                | ((long) lac << CI_BITS)
+                | ci;
+    }
+
+    /** The key with its CI bits cleared: identifies the (mcc, mnc, lac) run. */
+    static long lacPrefix(long key) {
+        return key & ~((1L << CI_BITS) - 1);
+    }
+
+    static int mccOf(long key) {
+        return (int) (key >>> (MNC_BITS + LAC_BITS + CI_BITS));
+    }
+
+    static int mncOf(long key) {
+        return (int) ((key >>> (LAC_BITS + CI_BITS)) & ((1 << MNC_BITS) - 1));
+    }
+
+    static int lacOf(long key) {
+        return (int) ((key >>> CI_BITS) & ((1 << LAC_BITS) - 1));
+    }
+
+    static int ciOf(long key) {
+        return (int) (key & ((1 << CI_BITS) - 1));
+    }
+
+    /**
+     * Exact lookup.
+     *
+     * @return the record id, or {@link #NOT_FOUND}
+     */
+    int find(int mcc, int mnc, int lac, int ci);
+
+    /**
+     * Closest CI to {@code ci} within the same (mcc, mnc, lac), by absolute CI distance.
+     * Ties go to the lower CI. Allocation-free.
+     *
+     * @return the record id, or {@link #NOT_FOUND} if the location area is unknown
+     */
+    int nearest(int mcc, int mnc, int lac, int ci);
+
+    /**
+     * Fills {@code out} with up to {@code out.length} record ids of the same
+     * (mcc, mnc, lac), ordered by increasing CI distance to {@code ci}.
+     * Allocation-free; the caller owns the buffer.
+     *
+     * @return the number of ids written
+     */
+    int nearest(int mcc, int mnc, int lac, int ci, int[] out);
+
+    int size();
+
+    int lacGroupCount();
+
+    int dictionarySize();
+
+    long key(int id);
+
+    double latitude(int id);
+
+    double longitude(int id);
+
+    String operator(int id);
+
+    String siteName(int id);
+
+    String btsId(int id);
+
+    String technoCell(int id);
+
+    String frequenceCell(int id);
+
+    String arrondissement(int id);
+
+    String departement(int id);
+
+    String region(int id);
+
+    String azimuth(int id);
+
+    default int mcc(int id) {
+        return mccOf(key(id));
+    }
+
+    default int mnc(int id) {
+        return mncOf(key(id));
+    }
+
+    default int lac(int id) {
+        return lacOf(key(id));
+    }
+
+    default int ci(int id) {
+        return ciOf(key(id));
+    }
+
+    /**
+     * Materializes one record as a {@link TowerRow}.
+     */
+    default TowerRow row(int id) {
+        return new TowerRow(
+            operator(id), mcc(id), mnc(id), lac(id), ci(id),
+            latitude(id), longitude(id),
+            siteName(id), btsId(id), technoCell(id), frequenceCell(id),
+            arrondissement(id), departement(id), region(id), azimuth(id));
+    }
+}
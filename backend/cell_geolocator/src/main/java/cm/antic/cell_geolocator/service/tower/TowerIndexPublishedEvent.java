@@ -0,0 +1,11 @@
+package cm.antic.cell_geolocator.service.tower;
+
+/**
+ * Published by {@link TowerIndexService} each time a new index is swapped in, so
+ * that state derived from the previous index (such as remembered local misses)
+ * can be dropped.
+ *
+ * @param version the new index version
+ * @param source  where it was loaded from: "database" or "snapshot"
+ */
+public record TowerIndexPublishedEvent(long version, String source) {}
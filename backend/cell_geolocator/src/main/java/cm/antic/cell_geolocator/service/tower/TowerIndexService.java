@@ -0,0 +1,402 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Publishes the {@link TowerIndex} used for local lookups and keeps lookup statistics.
+ *
+ * At startup the index is mapped from the binary snapshot when one is configured
+ * and present (milliseconds, no database access), otherwise built from the tables
+ * of every registered {@link OperatorSource}. If the database is unreachable, an
+ * existing snapshot is used instead. Until an index is published (or if both fail),
+ * {@link #current()} returns null and callers use the SQL path.
+ *
+ * A background poll compares a checksum of the operator tables with the one the
+ * published index was built from. On a change, a new index is built off the request
+ * threads and swapped in atomically: readers keep the index they already hold and
+ * never see a partially built one. Each publication is announced with a
+ * {@link TowerIndexPublishedEvent}.
+ *
+ * The site adjacency ({@link TowerSiblings}) and the spatial grid ({@link TowerGrid})
+ * take a pass over every record, so they are built on the task executor once the index
+ * is published rather than on the startup path: a snapshot start serves lookups while
+ * they are built. Until then the previous ones stay in use (each resolves ids through
+ * the index it was built from), or none right after startup.
+ */
+@Service
+public class TowerIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(TowerIndexService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OperatorRegistry operatorRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Executor taskExecutor;
+
+    @Value("${tower.index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tower.snapshot.path:}")
+    private String snapshotPath;
+
+    // Serve from an existing snapshot at startup instead of reading the tables
+    @Value("${tower.snapshot.prefer-on-startup:true}")
+    private boolean preferSnapshot;
+
+    @Value("${tower.snapshot.write-after-load:true}")
+    private boolean writeSnapshotAfterLoad;
+
+    @Value("${tower.grid.cell-degrees:0.05}")
+    private double gridCellDegrees;
+
+    @Value("${tower.refresh.enabled:true}")
+    private boolean refreshEnabled;
+
+    private final AtomicReference<Published> published = new AtomicReference<>();
+    private final AtomicReference<Derived> derived = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Instant lastCheckedAt;
+    private volatile Long lastSeenChecksum;
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * One published index with where it came from. Swapped as a whole so the
+     * statistics always describe the index that is actually being served.
+     */
+    private record Published(
+        TowerIndex index,
+        long version,
+        long sourceChecksum,
+        String source,
+        Instant publishedAt,
+        Duration buildDuration
+    ) {}
+
+    /** The site adjacency and spatial grid of one published version, built after it. */
+    private record Derived(long version, TowerSiblings siblings, TowerGrid grid, Duration buildDuration) {}
+
+    /** An index read from the database together with the checksum taken before the read. */
+    private record Loaded(InMemoryTowerIndex index, long sourceChecksum, Duration took) {}
+
+    public TowerIndexService(JdbcTemplate jdbcTemplate, OperatorRegistry operatorRegistry,
+                             ApplicationEventPublisher eventPublisher,
+                             @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.operatorRegistry = operatorRegistry;
+        this.eventPublisher = eventPublisher;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            log.info("Tower index disabled — local lookups use SQL only");
+            return;
+        }
+
+        refreshLock.lock();
+        try {
+            Path snapshot = snapshotPath();
+            boolean snapshotExists = snapshot != null && Files.isRegularFile(snapshot);
+
+            if (snapshotExists && preferSnapshot && openSnapshot(snapshot)) {
+                return;
+            }
+
+            try {
+                Loaded loaded = loadFromDatabase();
+                publish(loaded.index(), loaded.sourceChecksum(), "database", loaded.took());
+                if (snapshot != null && writeSnapshotAfterLoad) {
+                    writeSnapshot(loaded, snapshot);
+                }
+            } catch (Exception e) {
+                log.error("Tower index load from database failed", e);
+
+                if (snapshotExists && !preferSnapshot && openSnapshot(snapshot)) {
+                    return;
+                }
+                log.warn("No tower index available — local lookups fall back to SQL");
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Polls the operator tables and rebuilds the index when their checksum differs
+     * from the published one. Skipped while another refresh is running.
+     */
+    @Scheduled(
+        initialDelayString = "${tower.refresh.poll-interval-ms:300000}",
+        fixedDelayString = "${tower.refresh.poll-interval-ms:300000}"
+    )
+    public void pollForChanges() {
+        if (!enabled || !refreshEnabled || !refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            long checksum = sourceChecksum();
+            lastCheckedAt = Instant.now();
+            lastSeenChecksum = checksum;
+
+            Published current = published.get();
+            if (current != null && current.sourceChecksum() == checksum) {
+                return;
+            }
+            log.info("Tower tables changed (checksum {}) — rebuilding index", checksum);
+            rebuild();
+        } catch (Exception e) {
+            refreshFailures.increment();
+            log.warn("Tower index refresh check failed: {}", e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds and publishes the index now, whether or not the tables changed.
+     * Waits for a refresh already in progress; lookups are never blocked.
+     *
+     * @return the published version, its source checksum and the build duration
+     */
+    public Map<String, Object> refresh() {
+        if (!enabled) {
+            throw new IllegalStateException("Tower index is disabled");
+        }
+        refreshLock.lock();
+        try {
+            long previous = published.get() != null ? published.get().version() : 0;
+            Published current = rebuild();
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("previousVersion", previous);
+            result.put("version", current.version());
+            result.put("sourceChecksum", current.sourceChecksum());
+            result.put("size", current.index().size());
+            result.put("buildDurationMs", current.buildDuration().toMillis());
+            result.put("publishedAt", current.publishedAt());
+            return result;
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            throw e;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    public TowerIndex current() {
+        Published current = published.get();
+        return current != null ? current.index() : null;
+    }
+
+    /**
+     * Site adjacency of the latest index it was built for, or null if none is built
+     * yet. Ids are resolved through {@link TowerSiblings#index()}, which is always the
+     * index the adjacency was built from.
+     */
+    public TowerSiblings siblings() {
+        Derived current = derived.get();
+        return current != null ? current.siblings() : null;
+    }
+
+    /**
+     * Spatial grid of the latest index it was built for, or null if none is built yet.
+     * Ids are resolved through {@link TowerGrid#index()}.
+     */
+    public TowerGrid grid() {
+        Derived current = derived.get();
+        return current != null ? current.grid() : null;
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Published current = published.get();
+        Derived site = derived.get();
+        TowerIndex index = current != null ? current.index() : null;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("loaded", index != null);
+        stats.put("version", current != null ? current.version() : 0);
+        stats.put("source", current != null ? current.source() : null);
+        stats.put("sourceChecksum", current != null ? current.sourceChecksum() : null);
+        stats.put("size", index != null ? index.size() : 0);
+        stats.put("lacGroups", index != null ? index.lacGroupCount() : 0);
+        stats.put("dictionarySize", index != null ? index.dictionarySize() : 0);
+        // Version the site adjacency and grid were built for; behind version while building
+        stats.put("derivedVersion", site != null ? site.version() : 0);
+        stats.put("derivedBuildMs", site != null ? site.buildDuration().toMillis() : null);
+        stats.put("siteGroups", site != null ? site.siblings().groupCount() : 0);
+        stats.put("gridCells", site != null ? site.grid().cellCount() : 0);
+        stats.put("gridCellDegrees", site != null ? site.grid().cellDegrees() : null);
+        stats.put("snapshotCreatedAt",
+                index instanceof MappedTowerIndex mapped ? mapped.createdAt() : null);
+        stats.put("loadedAt", current != null ? current.publishedAt() : null);
+        stats.put("loadDurationMs", current != null ? current.buildDuration().toMillis() : null);
+        stats.put("refreshEnabled", refreshEnabled);
+        stats.put("refreshes", refreshes.sum());
+        stats.put("refreshFailures", refreshFailures.sum());
+        stats.put("lastCheckedAt", lastCheckedAt);
+        stats.put("lastSeenChecksum", lastSeenChecksum);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    /**
+     * Builds the index from the database and writes it as a snapshot to {@code target}.
+     */
+    public void exportSnapshot(Path target) throws IOException {
+        Loaded loaded = loadFromDatabase();
+        TowerSnapshot.write(loaded.index(), loaded.sourceChecksum(), target);
+        log.info("Tower snapshot exported to {}", target.toAbsolutePath());
+    }
+
+    /**
+     * Combined checksum of all operator tables. Any insert, update or delete changes it.
+     */
+    long sourceChecksum() {
+        long checksum = 17;
+        for (OperatorSource source : operatorRegistry.all()) {
+            long[] parts = jdbcTemplate.queryForObject(source.checksumSql(),
+                    (rs, rowNum) -> new long[] {rs.getLong("row_count"), rs.getLong("row_hash")});
+            checksum = 31 * checksum + parts[0];
+            checksum = 31 * checksum + parts[1];
+        }
+        return checksum;
+    }
+
+    // Caller holds refreshLock
+    private Published rebuild() {
+        Loaded loaded = loadFromDatabase();
+        Published current = publish(loaded.index(), loaded.sourceChecksum(), "database", loaded.took());
+        refreshes.increment();
+
+        Path snapshot = snapshotPath();
+        if (snapshot != null && writeSnapshotAfterLoad) {
+            writeSnapshot(loaded, snapshot);
+        }
+        return current;
+    }
+
+    private Loaded loadFromDatabase() {
+        long start = System.nanoTime();
+        // Taken before the read: a concurrent change makes the next poll rebuild again,
+        // which is redundant but never leaves a stale index marked as current
+        long checksum = sourceChecksum();
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+
+        Map<String, Integer> rowsByOperator = new LinkedHashMap<>();
+        for (OperatorSource source : operatorRegistry.all()) {
+            rowsByOperator.put(source.getName(), loadRows(builder, source));
+        }
+
+        InMemoryTowerIndex built = builder.build();
+        Duration took = Duration.ofNanos(System.nanoTime() - start);
+        log.info(
+            "Tower index built from database | rows={} | indexed={} | rejected={} | took={}ms",
+            rowsByOperator, built.size(), builder.rejected(), took.toMillis()
+        );
+        return new Loaded(built, checksum, took);
+    }
+
+    private boolean openSnapshot(Path snapshot) {
+        try {
+            long start = System.nanoTime();
+            MappedTowerIndex mapped = TowerSnapshot.open(snapshot);
+            publish(mapped, mapped.sourceChecksum(), "snapshot", Duration.ofNanos(System.nanoTime() - start));
+            return true;
+        } catch (IOException e) {
+            log.warn("Tower snapshot {} unusable: {}", snapshot, e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeSnapshot(Loaded loaded, Path snapshot) {
+        try {
+            TowerSnapshot.write(loaded.index(), loaded.sourceChecksum(), snapshot);
+            log.info("Tower snapshot written to {}", snapshot.toAbsolutePath());
+        } catch (IOException e) {
+            log.warn("Tower snapshot write to {} failed: {}", snapshot, e.getMessage());
+        }
+    }
+
+    private Published publish(TowerIndex built, long sourceChecksum, String from, Duration took) {
+        Published next = new Published(
+            built, versions.incrementAndGet(), sourceChecksum, from, Instant.now(), took);
+        published.set(next);
+        taskExecutor.execute(() -> buildDerived(next));
+
+        log.info("Tower index published | version={} | source={} | size={} | took={}ms",
+                next.version(), from, built.size(), took.toMillis());
+        eventPublisher.publishEvent(new TowerIndexPublishedEvent(next.version(), from));
+        return next;
+    }
+
+    // O(n) in the records; kept unless a newer version's were stored first
+    private void buildDerived(Published source) {
+        try {
+            long start = System.nanoTime();
+            TowerSiblings siblings = TowerSiblings.build(source.index());
+            TowerGrid grid = TowerGrid.build(source.index(), gridCellDegrees);
+            Derived next = new Derived(source.version(), siblings, grid, Duration.ofNanos(System.nanoTime() - start));
+            derived.accumulateAndGet(next, (old, added) -> old == null || added.version() > old.version() ? added : old);
+            log.info("Tower site adjacency and grid built | version={} | took={}ms",
+                    source.version(), next.buildDuration().toMillis());
+        } catch (RuntimeException e) {
+            log.error("Tower site adjacency and grid build failed for version {}", source.version(), e);
+        }
+    }
+
+    private Path snapshotPath() {
+        return snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+    }
+
+    private int loadRows(InMemoryTowerIndex.Builder builder, OperatorSource source) {
+        int[] count = {0};
+        jdbcTemplate.query(source.loadSql(), rs -> {
+            TowerRow row = source.rowMapper().mapRow(rs, count[0]++);
+            // Rows without usable identity or coordinates are left to the SQL path
+            if (row.lac() < 0 || row.ci() < 0
+                    || Double.isNaN(row.latitude()) || Double.isNaN(row.longitude())) {
+                return;
+            }
+            builder.add(row);
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,24 @@
+package cm.antic.cell_geolocator.service.tower;
+
+/**
+ * One operator table row. The index loader reads rows into this form before building the
+ * columnar arrays of {@link TowerIndex}; a lookup hit materializes the matched record
+ * again ({@link TowerIndex#row}) to build its response.
+ */
+public record TowerRow(
+        String operator,
+        int mcc,
+        int mnc,
+        int lac,
+        int ci,
+        double latitude,
+        double longitude,
+        String siteName,
+        String btsId,
+        String technoCell,
+        String frequenceCell,
+        String arrondissement,
+        String departement,
+        String region,
+        String azimuth) {
+}
@@ -0,0 +1,106 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Site adjacency over a {@link TowerIndex}: for each record, the other cells
+ * installed on the same site of the same operator.
+ *
+ * A site is the BTS id when the operator table has one (Orange), otherwise the
+ * site name (MTN). Members are stored contiguously per site in key order, so
+ * listing the siblings of a cell is O(siblings) with no allocation.
+ * Built once per published index and immutable afterwards.
+ */
+public final class TowerSiblings {
+
+    private final TowerIndex index;
+    private final int[] groupOf;
+    private final int[] groupStart;
+    private final int[] members;
+
+    private TowerSiblings(TowerIndex index, int[] groupOf, int[] groupStart, int[] members) {
+        this.index = index;
+        this.groupOf = groupOf;
+        this.groupStart = groupStart;
+        this.members = members;
+    }
+
+    public static TowerSiblings build(TowerIndex index) {
+        int n = index.size();
+        int[] groupOf = new int[n];
+        int[] counts = new int[16];
+        Map<String, Integer> groups = new HashMap<>();
+
+        for (int id = 0; id < n; id++) {
+            String site = index.btsId(id) != null ? index.btsId(id) : index.siteName(id);
+            if (site == null || site.isBlank()) {
+                groupOf[id] = -1;
+                continue;
+            }
+            String groupKey = index.mcc(id) + "/" + index.mnc(id) + "/" + site;
+            int group = groups.computeIfAbsent(groupKey, k -> groups.size());
+            if (group == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+            groupOf[id] = group;
+            counts[group]++;
+        }
+
+        int groupCount = groups.size();
+        int[] groupStart = new int[groupCount + 1];
+        for (int g = 0; g < groupCount; g++) {
+            groupStart[g + 1] = groupStart[g] + counts[g];
+        }
+
+        int[] next = Arrays.copyOf(groupStart, groupCount);
+        int[] members = new int[groupStart[groupCount]];
+        for (int id = 0; id < n; id++) {
+            if (groupOf[id] >= 0) {
+                members[next[groupOf[id]]++] = id;
+            }
+        }
+        return new TowerSiblings(index, groupOf, groupStart, members);
+    }
+
+    /** The index these ids refer to. */
+    public TowerIndex index() {
+        return index;
+    }
+
+    public int groupCount() {
+        return groupStart.length - 1;
+    }
+
+    /** Number of other cells on the same site as {@code id}. */
+    public int count(int id) {
+        int group = groupOf[id];
+        return group < 0 ? 0 : groupStart[group + 1] - groupStart[group] - 1;
+    }
+
+    /**
+     * Writes up to {@code out.length} sibling ids of {@code id}, in key order,
+     * skipping the first {@code offset}. The cell itself is not included.
+     *
+     * @return the number of ids written
+     */
+    public int siblings(int id, int offset, int[] out) {
+        int group = groupOf[id];
+        if (group < 0 || offset < 0) return 0;
+
+        int start = groupStart[group];
+        int end = groupStart[group + 1];
+        // Members are ascending ids, so the cell's own slot is found by binary search;
+        // sibling p is the member at p, or p + 1 once past that slot
+        int self = Arrays.binarySearch(members, start, end, id) - start;
+
+        int count = 0;
+        for (int p = offset; count < out.length; p++) {
+            int i = start + p + (p >= self ? 1 : 0);
+            if (i >= end) break;
+            out[count++] = members[i];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,199 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a {@link TowerIndex}, opened with {@link FileChannel#map} so
+ * lookups read straight from the mapped pages.
+ *
+ * <pre>
+ * header (72 bytes)
+ *   int  magic "TWRS"      int  format version
+ *   int  record count      int  dictionary size
+ *   int  LAC group count   int  reserved
+ *   long created at (epoch ms)
+ *   long keys offset       long records offset
+ *   long dictionary offset long file length
+ *   long source checksum (of the tables the index was built from)
+ * keys        record count x long, sorted packed (mcc, mnc, lac, ci)
+ * records     record count x 56 bytes: latitude, longitude (double),
+ *             9 dictionary refs (int: operator, site, BTS, techno, frequency,
+ *             arrondissement, departement, region, azimuth), 4 bytes padding
+ * dictionary  (size + 1) x int byte offsets, then the UTF-8 bytes; entry 0 is null
+ * </pre>
+ */
+public final class TowerSnapshot {
+
+    static final int MAGIC = 0x54575253; // "TWRS"
+    static final int FORMAT_VERSION = 2;
+
+    static final int HEADER_SIZE = 72;
+    static final int RECORD_SIZE = 56;
+    static final int STRING_REFS = 9;
+
+    private TowerSnapshot() {
+    }
+
+    /**
+     * Writes {@code index} to {@code path}. The file is written next to the target
+     * and moved into place, so readers never observe a partial snapshot.
+     *
+     * @param sourceChecksum checksum of the tables the index was built from, kept so
+     *                       a later refresh can tell whether the snapshot is current
+     */
+    public static void write(TowerIndex index, long sourceChecksum, Path path) throws IOException {
+        int n = index.size();
+
+        List<byte[]> strings = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        strings.add(new byte[0]); // id 0 is null
+        int[][] refs = new int[n][];
+        for (int id = 0; id < n; id++) {
+            refs[id] = new int[] {
+                intern(index.operator(id), strings, ids),
+                intern(index.siteName(id), strings, ids),
+                intern(index.btsId(id), strings, ids),
+                intern(index.technoCell(id), strings, ids),
+                intern(index.frequenceCell(id), strings, ids),
+                intern(index.arrondissement(id), strings, ids),
+                intern(index.departement(id), strings, ids),
+                intern(index.region(id), strings, ids),
+                intern(index.azimuth(id), strings, ids)
+            };
+        }
+
+        long blobSize = strings.stream().mapToLong(b -> b.length).sum();
+        long keysOffset = HEADER_SIZE;
+        long recordsOffset = keysOffset + (long) n * Long.BYTES;
+        long dictionaryOffset = recordsOffset + (long) n * RECORD_SIZE;
+        long fileLength = dictionaryOffset + (long) (strings.size() + 1) * Integer.BYTES + blobSize;
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("Tower snapshot too large: " + fileLength + " bytes");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) fileLength).order(ByteOrder.BIG_ENDIAN);
+        buf.putInt(MAGIC)
+           .putInt(FORMAT_VERSION)
+           .putInt(n)
+           .putInt(strings.size())
+           .putInt(index.lacGroupCount())
+           .putInt(0)
+           .putLong(System.currentTimeMillis())
+           .putLong(keysOffset)
+           .putLong(recordsOffset)
+           .putLong(dictionaryOffset)
+           .putLong(fileLength)
+           .putLong(sourceChecksum);
+
+        buf.position((int) keysOffset);
+        for (int id = 0; id < n; id++) {
+            buf.putLong(index.key(id));
+        }
+
+        for (int id = 0; id < n; id++) {
+            buf.position((int) (recordsOffset + (long) id * RECORD_SIZE));
+            buf.putDouble(index.latitude(id)).putDouble(index.longitude(id));
+            for (int ref : refs[id]) {
+                buf.putInt(ref);
+            }
+        }
+
+        buf.position((int) dictionaryOffset);
+        int offset = 0;
+        for (byte[] s : strings) {
+            buf.putInt(offset);
+            offset += s.length;
+        }
+        buf.putInt(offset);
+        for (byte[] s : strings) {
+            buf.put(s);
+        }
+        buf.flip();
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot read-only and validates its header.
+     *
+     * @throws IOException if the file is missing, truncated, of another format version,
+     *         or its sections do not match the counts in its header
+     */
+    public static MappedTowerIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid tower snapshot size: " + size);
+            }
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.BIG_ENDIAN);
+
+            if (buf.getInt(0) != MAGIC) {
+                throw new IOException("Not a tower snapshot: " + path);
+            }
+            int version = buf.getInt(4);
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported tower snapshot version " + version
+                        + " (expected " + FORMAT_VERSION + ")");
+            }
+            if (buf.getLong(56) != size) {
+                throw new IOException("Truncated tower snapshot: " + path);
+            }
+            if (!layoutMatches(buf, size)) {
+                throw new IOException("Corrupt tower snapshot: " + path);
+            }
+            return new MappedTowerIndex(buf);
+        }
+    }
+
+    // Section offsets must follow from the counts, as write() lays them out, and the
+    // last dictionary offset must end the file; otherwise lookups would read garbage
+    private static boolean layoutMatches(ByteBuffer buf, long size) {
+        long n = buf.getInt(8);
+        long dictionarySize = buf.getInt(12);
+        if (n < 0 || dictionarySize < 1) {
+            return false;
+        }
+        long keysOffset = HEADER_SIZE;
+        long recordsOffset = keysOffset + n * Long.BYTES;
+        long dictionaryOffset = recordsOffset + n * RECORD_SIZE;
+        long blobOffset = dictionaryOffset + (dictionarySize + 1) * Integer.BYTES;
+        if (buf.getLong(32) != keysOffset || buf.getLong(40) != recordsOffset
+                || buf.getLong(48) != dictionaryOffset || blobOffset > size) {
+            return false;
+        }
+        return blobOffset + buf.getInt((int) (blobOffset - Integer.BYTES)) == size;
+    }
+
+    private static int intern(String value, List<byte[]> strings, Map<String, Integer> ids) {
+        if (value == null) return 0;
+        Integer id = ids.get(value);
+        if (id != null) return id;
+        int next = strings.size();
+        strings.add(value.getBytes(StandardCharsets.UTF_8));
+        ids.put(value, next);
+        return next;
+    }
+}
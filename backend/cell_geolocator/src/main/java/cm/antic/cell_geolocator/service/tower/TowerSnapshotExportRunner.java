@@ -0,0 +1,65 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Export command: {@code java -jar cell_geolocator.jar --export-tower-snapshot[=path]}
+ * reads the operator tables, writes the binary tower snapshot, and exits.
+ * Without a path, {@code tower.snapshot.path} is used.
+ */
+@Component
+public class TowerSnapshotExportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(TowerSnapshotExportRunner.class);
+
+    static final String OPTION = "export-tower-snapshot";
+
+    private final TowerIndexService towerIndexService;
+    private final ApplicationContext context;
+
+    @Value("${tower.snapshot.path:}")
+    private String snapshotPath;
+
+    public TowerSnapshotExportRunner(TowerIndexService towerIndexService, ApplicationContext context) {
+        this.towerIndexService = towerIndexService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+
+        List<String> values = args.getOptionValues(OPTION);
+        String target = values != null && !values.isEmpty() && !values.get(0).isBlank()
+                ? values.get(0)
+                : snapshotPath;
+
+        int exitCode = 0;
+        if (target == null || target.isBlank()) {
+            log.error("No snapshot path: pass --{}=<path> or set tower.snapshot.path", OPTION);
+            exitCode = 2;
+        } else {
+            try {
+                towerIndexService.exportSnapshot(Path.of(target));
+            } catch (Exception e) {
+                log.error("Tower snapshot export failed", e);
+                exitCode = 1;
+            }
+        }
+
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
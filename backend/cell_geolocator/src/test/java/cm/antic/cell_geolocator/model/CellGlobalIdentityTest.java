@@ -0,0 +1,66 @@
+package cm.antic.cell_geolocator.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import cm.antic.cell_geolocator.exception.InvalidCellIdentityException;
+import cm.antic.cell_geolocator.service.tower.TowerIndex;
+
+class CellGlobalIdentityTest {
+
+    @Test
+    void parsesDecimalFields() {
+        CellGlobalIdentity cell = CellGlobalIdentity.parse("624", " 02 ", "10", "12345");
+
+        assertThat(cell).isEqualTo(new CellGlobalIdentity(624, 2, 10, 12345));
+        assertThat(cell.packable()).isTrue();
+        assertThat(CellGlobalIdentity.fromPacked(cell.packed())).isEqualTo(cell);
+        assertThat(cell).hasToString("624_2_10_12345");
+    }
+
+    @Test
+    void acceptsNrIdentitiesTooWideForTheIndexKey() {
+        // 24-bit TAC and 36-bit NCI, the widest a 5G NR cell has
+        CellGlobalIdentity cell = CellGlobalIdentity.parse("624", "1", "16777215", "68719476735");
+
+        assertThat(cell.lac()).isEqualTo(16_777_215);
+        assertThat(cell.ci()).isEqualTo(68_719_476_735L);
+        assertThat(cell.packable()).isFalse();
+        assertThat(cell.packed()).isEqualTo(TowerIndex.INVALID_KEY);
+    }
+
+    @Test
+    void anyComponentPastTheIndexLayoutIsUnpackable() {
+        assertThat(CellGlobalIdentity.parse("624", "1", "65535", "268435455").packable()).isTrue();
+        assertThat(CellGlobalIdentity.parse("624", "1", "65536", "1").packable()).isFalse();
+        assertThat(CellGlobalIdentity.parse("624", "1", "1", "268435456").packable()).isFalse();
+        // Would wrap to a small int if cast before the width check
+        assertThat(CellGlobalIdentity.parse("624", "1", "1", "4294967297").packable()).isFalse();
+    }
+
+    @Test
+    void rejectsMalformedFields() {
+        assertThatThrownBy(() -> CellGlobalIdentity.parse(null, "1", "1", "1"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("mcc is required");
+        assertThatThrownBy(() -> CellGlobalIdentity.parse("624", " ", "1", "1"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("mnc is required");
+        assertThatThrownBy(() -> CellGlobalIdentity.parse("624", "1", "-1", "1"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("decimal");
+        assertThatThrownBy(() -> CellGlobalIdentity.parse("624", "1", "1", "0x1F"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("decimal");
+    }
+
+    @Test
+    void rejectsFieldsWiderThanAnyCell() {
+        assertThatThrownBy(() -> CellGlobalIdentity.parse("1024", "1", "1", "1"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("mcc is too large");
+        assertThatThrownBy(() -> CellGlobalIdentity.parse("624", "1", "16777216", "1"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("lac is too large");
+        assertThatThrownBy(() -> CellGlobalIdentity.parse("624", "1", "1", "68719476736"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("cellId is too large");
+        assertThatThrownBy(() -> CellGlobalIdentity.parse("624", "1", "1", "99999999999999999999"))
+                .isInstanceOf(InvalidCellIdentityException.class).hasMessageContaining("cellId is too large");
+    }
+}
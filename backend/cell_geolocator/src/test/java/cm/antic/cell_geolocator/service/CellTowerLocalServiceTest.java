@@ -0,0 +1,136 @@
+package cm.antic.cell_geolocator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+
+import cm.antic.cell_geolocator.exception.InvalidCellIdentityException;
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
+import cm.antic.cell_geolocator.model.FallbackCandidate;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.service.tower.InMemoryTowerIndex;
+import cm.antic.cell_geolocator.service.tower.OperatorRegistry;
+import cm.antic.cell_geolocator.service.tower.OperatorSource;
+import cm.antic.cell_geolocator.service.tower.TowerIndexService;
+import cm.antic.cell_geolocator.service.tower.TowerRow;
+
+class CellTowerLocalServiceTest {
+
+    private final OperatorSource orange = operator("ORANGE", 624, 2);
+    private final OperatorSource mtn = operator("MTN", 624, 1);
+
+    private JdbcTemplate jdbcTemplate;
+    private TowerIndexService towerIndexService;
+    private OperatorRegistry registry;
+    private CellTowerLocalService service;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        builder.add(row("ORANGE", 2, 10, 100));
+        builder.add(row("ORANGE", 2, 10, 110));
+        builder.add(row("ORANGE", 2, 10, 200));
+        builder.add(row("MTN", 1, 10, 105));
+
+        towerIndexService = mock(TowerIndexService.class);
+        when(towerIndexService.current()).thenReturn(builder.build());
+
+        registry = mock(OperatorRegistry.class);
+        when(registry.route(624, 2)).thenReturn(List.of(orange));
+        when(registry.all()).thenReturn(List.of(orange, mtn));
+
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new CellTowerLocalService(jdbcTemplate, mock(DeferredAddressService.class),
+                towerIndexService, registry);
+    }
+
+    @Test
+    void closestCellsSearchTheRoutedOperator() {
+        List<FallbackCandidate> candidates = service.findClosestCells(new CellGlobalIdentity(624, 2, 10, 104), 2);
+
+        assertThat(candidates).extracting(FallbackCandidate::getCellId).containsExactly("100", "110");
+        assertThat(candidates).extracting(FallbackCandidate::getProvider).containsOnly("ORANGE");
+    }
+
+    @Test
+    void closestCellsWithoutOperatorSearchThemAll() {
+        List<FallbackCandidate> candidates = service.findClosestCells("10", "104", 2);
+
+        assertThat(candidates).extracting(FallbackCandidate::getCellId).containsExactly("105", "100");
+    }
+
+    @Test
+    void closestCellsRejectMalformedIdentities() {
+        assertThatThrownBy(() -> service.findClosestCells("10", "12a", 2))
+                .isInstanceOf(InvalidCellIdentityException.class);
+    }
+
+    @Test
+    void cellTooWideForTheIndexIsALocalMiss() {
+        CellGlobalIdentity nr = new CellGlobalIdentity(624, 2, 10, 68_000_000_000L);
+
+        assertThat(service.findLocalTower(nr)).isNull();
+        verifyNoInteractions(registry);
+        assertThat(service.findClosestCells(nr, 5)).isEmpty();
+    }
+
+    @Test
+    void unreadableTablesAreNotAMiss() {
+        when(towerIndexService.current()).thenReturn(null);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        assertThatThrownBy(() -> service.findLocalTower(new CellGlobalIdentity(624, 2, 10, 100)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    @Test
+    void batchMarksUnreadableCellsApartFromMisses() {
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        ReflectionTestUtils.setField(service, "sqlFallback", true);
+
+        List<GeolocationResponse> results = service.findLocalTowers(List.of(
+                GeolocationCacheServiceTest.request("624", "2", "10", "100"),
+                GeolocationCacheServiceTest.request("624", "2", "11", "100"),
+                GeolocationCacheServiceTest.request("624", "9", "10", "100")));
+
+        assertThat(results.get(0).getLatitude()).isEqualTo(4.05);
+        assertThat(results.get(1).getLatitude()).isNull();
+        assertThat(results.get(1).getError()).contains("failed");
+        // No operator routed: a plain miss
+        assertThat(results.get(2)).isNull();
+    }
+
+    private static OperatorSource operator(String name, int mcc, int mnc) {
+        OperatorSource source = mock(OperatorSource.class);
+        when(source.getName()).thenReturn(name);
+        when(source.getMcc()).thenReturn(mcc);
+        when(source.getMnc()).thenReturn(mnc);
+        when(source.exactSql()).thenReturn("SELECT exact");
+        when(source.fallbackSql()).thenReturn("SELECT fallback");
+        when(source.batchExactSql()).thenReturn("SELECT batch");
+        when(source.idArrayType()).thenReturn("bigint");
+        when(source.rowMapper()).thenReturn((rs, rowNum) -> null);
+        return source;
+    }
+
+    private static TowerRow row(String operator, int mnc, int lac, int ci) {
+        return new TowerRow(operator, 624, mnc, lac, ci, 4.05, 9.7, "SITE_" + ci, null,
+                null, null, null, null, null, null);
+    }
+}
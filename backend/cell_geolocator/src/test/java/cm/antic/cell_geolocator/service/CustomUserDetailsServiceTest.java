@@ -0,0 +1,22 @@
+package cm.antic.cell_geolocator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class CustomUserDetailsServiceTest {
+
+    @Test
+    void storedRolesMapToSpringAuthorities() {
+        assertThat(CustomUserDetailsService.authority("ROLE_ADMIN")).isEqualTo("ROLE_ADMIN");
+        assertThat(CustomUserDetailsService.authority("admin")).isEqualTo("ROLE_ADMIN");
+        assertThat(CustomUserDetailsService.authority(" ROLE_USER ")).isEqualTo("ROLE_USER");
+    }
+
+    @Test
+    void legacyDefaultIsAPlainUser() {
+        assertThat(CustomUserDetailsService.authority("RULE_USER")).isEqualTo("ROLE_USER");
+        assertThat(CustomUserDetailsService.authority(null)).isEqualTo("ROLE_USER");
+        assertThat(CustomUserDetailsService.authority("")).isEqualTo("ROLE_USER");
+    }
+}
@@ -0,0 +1,141 @@
+package cm.antic.cell_geolocator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import cm.antic.cell_geolocator.model.DeferredAddress;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+
+class DeferredAddressServiceTest {
+
+    private ReverseGeocodeService reverseGeocodeService;
+    private DeferredAddressService service;
+
+    // Geocoding calls not yet completed, in call order
+    private final List<Runnable> geocodings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        reverseGeocodeService = mock(ReverseGeocodeService.class);
+        when(reverseGeocodeService.addAddressToResponseAsync(any())).thenAnswer(inv -> {
+            GeolocationResponse scratch = inv.getArgument(0);
+            CompletableFuture<Void> geocoding = new CompletableFuture<>();
+            geocodings.add(() -> {
+                scratch.setAddress("Akwa, Douala");
+                geocoding.complete(null);
+            });
+            return geocoding;
+        });
+        service = new DeferredAddressService(reverseGeocodeService, 10, 100);
+        ReflectionTestUtils.setField(service, "defaultTimeoutMs", 1_500L);
+        ReflectionTestUtils.setField(service, "maxTimeoutMs", 5_000L);
+    }
+
+    @Test
+    void attachNeverWaits() {
+        GeolocationResponse resp = position();
+
+        service.attach(resp);
+
+        assertThat(resp.getAddress()).isNull();
+        assertThat(resp.getAddressToken()).isNotNull();
+        assertThat(service.find(resp.getAddressToken())).get()
+                .extracting(DeferredAddress::getStatus).isEqualTo(DeferredAddress.Status.PENDING);
+
+        geocodings.get(0).run();
+        assertThat(service.find(resp.getAddressToken())).get()
+                .extracting(DeferredAddress::getAddress).isEqualTo("Akwa, Douala");
+    }
+
+    @Test
+    void knownAddressIsCopiedInAtOnce() {
+        when(reverseGeocodeService.addAddressToResponseAsync(any())).thenAnswer(inv -> {
+            inv.<GeolocationResponse>getArgument(0).setAddress("Bonanjo, Douala");
+            return CompletableFuture.completedFuture(null);
+        });
+        GeolocationResponse resp = position();
+
+        service.attach(resp);
+
+        assertThat(resp.getAddress()).isEqualTo("Bonanjo, Douala");
+        assertThat(resp.getAddressToken()).isNull();
+    }
+
+    @Test
+    void addressArrivingWithinTheBudgetIsInlined() {
+        GeolocationResponse resp = position();
+        service.attach(resp);
+
+        CompletableFuture<GeolocationResponse> waiting = service.awaitAddress(resp, 5_000);
+        assertThat(waiting).isNotDone();
+
+        geocodings.get(0).run();
+
+        assertThat(waiting.join()).isSameAs(resp);
+        assertThat(resp.getAddress()).isEqualTo("Akwa, Douala");
+        assertThat(resp.getAddressToken()).isNull();
+    }
+
+    @Test
+    void addressArrivingAfterTheDeadlineStaysBehindTheToken() {
+        GeolocationResponse resp = position();
+        service.attach(resp);
+        String token = resp.getAddressToken();
+
+        service.awaitAddress(resp, 20).join();
+        geocodings.get(0).run();
+
+        assertThat(resp.getAddress()).isNull();
+        assertThat(resp.getAddressToken()).isEqualTo(token);
+        assertThat(service.find(token)).get()
+                .extracting(DeferredAddress::getStatus).isEqualTo(DeferredAddress.Status.READY);
+    }
+
+    @Test
+    void zeroBudgetCompletesAtOnce() {
+        GeolocationResponse resp = position();
+        service.attach(resp);
+
+        assertThat(service.awaitAddress(resp, 0)).isCompletedWithValue(resp);
+        assertThat(service.awaitAddress(null, 5_000)).isCompletedWithValue(null);
+        assertThat(resp.getAddressToken()).isNotNull();
+    }
+
+    @Test
+    void aBatchSharesOneDeadline() {
+        List<GeolocationResponse> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GeolocationResponse resp = position();
+            service.attach(resp);
+            batch.add(resp);
+        }
+        batch.add(null);
+
+        CompletableFuture<Void> waiting = service.awaitAddresses(batch, 5_000);
+        geocodings.get(0).run();
+        geocodings.get(2).run();
+        assertThat(waiting).isNotDone();
+        geocodings.get(1).run();
+
+        assertThat(waiting).isDone();
+        assertThat(batch.subList(0, 3)).allSatisfy(resp -> assertThat(resp.getAddress()).isEqualTo("Akwa, Douala"));
+    }
+
+    private static GeolocationResponse position() {
+        GeolocationResponse resp = new GeolocationResponse();
+        resp.setLatitude(4.05);
+        resp.setLongitude(9.7);
+        resp.setProviderUsed("LOCAL_DB_ORANGE: Akwa");
+        return resp;
+    }
+}
@@ -0,0 +1,224 @@
+package cm.antic.cell_geolocator.service;
+
+import static cm.antic.cell_geolocator.service.GeolocationServiceTest.position;
+import static cm.antic.cell_geolocator.service.GeolocationServiceTest.provider;
+import static cm.antic.cell_geolocator.service.GeolocationServiceTest.rejected;
+import static cm.antic.cell_geolocator.service.GeolocationServiceTest.unknownCell;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cm.antic.cell_geolocator.config.ResultCacheProperties;
+import cm.antic.cell_geolocator.model.CellGlobalIdentity;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.model.PriorityGeolocationResult;
+import cm.antic.cell_geolocator.repository.CachedGeolocationRepository;
+import cm.antic.cell_geolocator.service.provider.ProviderClient;
+import cm.antic.cell_geolocator.service.provider.ProviderInvoker;
+
+class GeolocationAggregatorServiceTest {
+
+    private final ProviderClient openCellId = provider("OpenCellID");
+    private final ProviderClient unwiredLabs = provider("UnwiredLabs");
+    private final ProviderClient combain = provider("Combain");
+
+    private ProviderInvoker invoker;
+    private CellTowerLocalService local;
+    private GeolocationAggregatorService aggregator;
+
+    @BeforeEach
+    void setUp() {
+        invoker = mock(ProviderInvoker.class);
+        local = mock(CellTowerLocalService.class);
+        GeolocationCacheService cache = new GeolocationCacheService(mock(CachedGeolocationRepository.class),
+                mock(JdbcTemplate.class), mock(DeferredAddressService.class), new ResultCacheProperties(),
+                new ObjectMapper(), Runnable::run);
+
+        PriorityService priorities = new PriorityService();
+        priorities.setProviderPriorities(List.of("OpenCellID", "UnwiredLabs", "Combain"));
+
+        aggregator = new GeolocationAggregatorService(List.of(openCellId, unwiredLabs, combain), invoker,
+                priorities, mock(RequestLogWriter.class), local, cache,
+                new DeferredAddressService(mock(ReverseGeocodeService.class), 10, 100), Runnable::run);
+    }
+
+    @Test
+    void secondLookupOfAnUnknownCellTouchesNoSource() throws Exception {
+        GeolocationRequest request = request("99");
+        answer(openCellId, unknownCell());
+        answer(unwiredLabs, unknownCell());
+        answer(combain, unknownCell());
+
+        PriorityGeolocationResult first = aggregator.resolveWithPriorityAsync(request).get();
+        assertThat(first.getChosen().getProviderUsed()).isEqualTo("None");
+        verify(local).findLocalTower(any(CellGlobalIdentity.class));
+        verify(invoker, times(3)).resolveAsync(any(), any());
+
+        clearInvocations(local, invoker);
+        PriorityGeolocationResult second = aggregator.resolveWithPriorityAsync(request("99")).get();
+
+        assertThat(second.getChosen().getProviderUsed()).isEqualTo("None");
+        verifyNoInteractions(local, invoker);
+        assertThat(second.getAllResponses().get("Combain").getError()).contains("cached");
+    }
+
+    @Test
+    void onlyTheProvidersThatMissedAreSkipped() throws Exception {
+        answer(openCellId, unknownCell());
+        answer(unwiredLabs, rejected("UnwiredLabs error: 403 Forbidden"));
+        answer(combain, unknownCell());
+        aggregator.resolveWithPriorityAsync(request("100")).get();
+
+        clearInvocations(local, invoker);
+        answer(unwiredLabs, position(3.86, 11.52));
+        PriorityGeolocationResult second = aggregator.resolveWithPriorityAsync(request("100")).get();
+
+        verifyNoInteractions(local);
+        verify(invoker).resolveAsync(eq(unwiredLabs), any());
+        verify(invoker, never()).resolveAsync(eq(openCellId), any());
+        verify(invoker, never()).resolveAsync(eq(combain), any());
+        assertThat(second.getChosen().getLatitude()).isEqualTo(3.86);
+    }
+
+    @Test
+    void failuresAreNotRemembered() throws Exception {
+        CompletableFuture<GeolocationResponse> down =
+                CompletableFuture.failedFuture(new IllegalStateException("503 Service Unavailable"));
+        when(invoker.resolveAsync(any(), any())).thenReturn(down);
+
+        aggregator.resolveWithPriorityAsync(request("101")).get();
+        clearInvocations(invoker);
+        aggregator.resolveWithPriorityAsync(request("101")).get();
+
+        verify(invoker, times(3)).resolveAsync(any(), any());
+    }
+
+    @Test
+    void localHitSkipsProviders() throws Exception {
+        GeolocationResponse tower = position(4.05, 9.7);
+        tower.setProviderUsed("LOCAL_DB_ORANGE");
+        when(local.findLocalTower(any(CellGlobalIdentity.class))).thenReturn(tower);
+
+        PriorityGeolocationResult result = aggregator.resolveWithPriorityAsync(request("102")).get();
+
+        assertThat(result.getChosen()).isSameAs(tower);
+        verifyNoInteractions(invoker);
+    }
+
+    @Test
+    void unreadableLocalTablesAreNotRemembered() throws Exception {
+        when(local.findLocalTower(any(CellGlobalIdentity.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        answer(openCellId, position(3.86, 11.52));
+        answer(unwiredLabs, unknownCell());
+        answer(combain, unknownCell());
+
+        PriorityGeolocationResult first = aggregator.resolveWithPriorityAsync(request("106")).get();
+        assertThat(first.getChosen().getLatitude()).isEqualTo(3.86);
+
+        clearInvocations(local);
+        aggregator.resolveWithPriorityAsync(request("106")).get();
+        verify(local).findLocalTower(any(CellGlobalIdentity.class));
+    }
+
+    @Test
+    void nrCellTooWideForTheIndexStillReachesProviders() throws Exception {
+        answer(openCellId, unknownCell());
+        answer(unwiredLabs, position(3.87, 11.51));
+        answer(combain, unknownCell());
+        GeolocationRequest request = GeolocationCacheServiceTest.request("624", "1", "1000000", "68000000000");
+
+        PriorityGeolocationResult result = aggregator.resolveWithPriorityAsync(request).get();
+
+        assertThat(result.getChosen().getLatitude()).isEqualTo(3.87);
+        verify(invoker, times(3)).resolveAsync(any(), any());
+    }
+
+    @Test
+    void quorumDecidesOnceTwoProvidersAgree() {
+        enableQuorum();
+        CompletableFuture<GeolocationResponse> openCellIdCall = pending(openCellId);
+        answer(unwiredLabs, position(3.8480, 11.5021));
+        answer(combain, position(3.8490, 11.5025));
+
+        PriorityGeolocationResult result = aggregator.resolveWithPriorityAsync(request("103")).join();
+
+        assertThat(openCellIdCall).isCancelled();
+        assertThat(result.getAllResponses()).containsOnlyKeys("UnwiredLabs", "Combain");
+        assertThat(result.getChosen().getProviderUsed()).isEqualTo("UnwiredLabs");
+        assertThat(result.getShortestPair()).isEqualTo("BC");
+    }
+
+    @Test
+    void quorumWaitsWhileTheAnswersDisagree() {
+        enableQuorum();
+        CompletableFuture<GeolocationResponse> openCellIdCall = pending(openCellId);
+        answer(unwiredLabs, position(3.8480, 11.5021));
+        answer(combain, position(4.0511, 9.7679));
+
+        CompletableFuture<PriorityGeolocationResult> result = aggregator.resolveWithPriorityAsync(request("104"));
+        assertThat(result).isNotDone();
+
+        GeolocationResponse a = position(4.0515, 9.7680);
+        a.setProviderUsed("OpenCellID");
+        openCellIdCall.complete(a);
+
+        assertThat(result.join().getAllResponses()).containsOnlyKeys("OpenCellID", "UnwiredLabs", "Combain");
+        assertThat(result.join().getShortestPair()).isEqualTo("AC");
+        assertThat(result.join().getChosen().getProviderUsed()).isEqualTo("OpenCellID");
+    }
+
+    @Test
+    void withoutQuorumEveryProviderIsAwaited() {
+        CompletableFuture<GeolocationResponse> openCellIdCall = pending(openCellId);
+        answer(unwiredLabs, position(3.8480, 11.5021));
+        answer(combain, position(3.8490, 11.5025));
+
+        CompletableFuture<PriorityGeolocationResult> result = aggregator.resolveWithPriorityAsync(request("105"));
+        assertThat(result).isNotDone();
+
+        openCellIdCall.complete(unknownCell());
+
+        assertThat(result.join().getChosen().getProviderUsed()).isEqualTo("UnwiredLabs");
+        assertThat(openCellIdCall).isNotCancelled();
+    }
+
+    private void enableQuorum() {
+        ReflectionTestUtils.setField(aggregator, "quorumEnabled", true);
+        ReflectionTestUtils.setField(aggregator, "quorumDistanceKm", 0.5);
+    }
+
+    private CompletableFuture<GeolocationResponse> pending(ProviderClient client) {
+        CompletableFuture<GeolocationResponse> call = new CompletableFuture<>();
+        when(invoker.resolveAsync(eq(client), any())).thenReturn(call);
+        return call;
+    }
+
+    private void answer(ProviderClient client, GeolocationResponse resp) {
+        resp.setProviderUsed(client.getProviderName());
+        when(invoker.resolveAsync(eq(client), any())).thenReturn(CompletableFuture.completedFuture(resp));
+    }
+
+    private static GeolocationRequest request(String cellId) {
+        return GeolocationCacheServiceTest.request("624", "2", "10", cellId);
+    }
+}
@@ -0,0 +1,319 @@
+package cm.antic.cell_geolocator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cm.antic.cell_geolocator.config.ResultCacheProperties;
+import cm.antic.cell_geolocator.model.DeferredAddress;
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.repository.CachedGeolocationRepository;
+import cm.antic.cell_geolocator.service.tower.TowerIndexPublishedEvent;
+
+class GeolocationCacheServiceTest {
+
+    private CachedGeolocationRepository repository;
+    private JdbcTemplate jdbcTemplate;
+    private DeferredAddressService deferredAddressService;
+    private GeolocationCacheService cache;
+    private final AtomicInteger resolverCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(CachedGeolocationRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        deferredAddressService = mock(DeferredAddressService.class);
+        cache = new GeolocationCacheService(repository, jdbcTemplate, deferredAddressService, new ResultCacheProperties(),
+                new ObjectMapper(), Runnable::run);
+    }
+
+    @Test
+    void secondLookupIsServedFromL1() throws Exception {
+        GeolocationRequest request = request("624", "2", "10", "20");
+
+        cache.getOrResolve(request, List.of("Combain"), resolver(position())).get();
+        GeolocationResponse cached = cache.getOrResolve(request, List.of("Combain"), resolver(position())).get();
+
+        assertThat(resolverCalls).hasValue(1);
+        assertThat(cached.getLatitude()).isEqualTo(3.86);
+    }
+
+    @Test
+    void l2MissReadsTheRepository() throws Exception {
+        when(repository.findById(any())).thenReturn(Optional.empty());
+
+        cache.getOrResolve(request("624", "2", "10", "21"), List.of("Combain"), resolver(position())).get();
+
+        verify(repository).findById(any());
+        assertThat(resolverCalls).hasValue(1);
+    }
+
+    @Test
+    void flushUpsertsQueuedRowsInOneJdbcBatch() throws Exception {
+        for (int ci = 1; ci <= 3; ci++) {
+            cache.getOrResolve(request("624", "2", "10", String.valueOf(ci)), List.of("Combain"),
+                    resolver(position())).get();
+        }
+
+        cache.flush();
+
+        ArgumentCaptor<BatchPreparedStatementSetter> setter = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).batchUpdate(sql.capture(), setter.capture());
+        assertThat(sql.getValue()).contains("ON CONFLICT (cell_key) DO UPDATE");
+        assertThat(setter.getValue().getBatchSize()).isEqualTo(3);
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    void cellTooWideForTheL2KeyIsCachedInL1Only() throws Exception {
+        GeolocationRequest request = request("624", "1", "1000000", "68000000000");
+
+        cache.getOrResolve(request, List.of("Combain"), resolver(position())).get();
+        cache.getOrResolve(request, List.of("Combain"), resolver(position())).get();
+        cache.flush();
+
+        assertThat(resolverCalls).hasValue(1);
+        verify(repository, never()).findById(any());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+    }
+
+    @Test
+    void emptyQueueFlushesNothing() {
+        cache.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+    }
+
+    @Test
+    void resultsWithoutPositionAreNotCached() throws Exception {
+        GeolocationRequest request = request("624", "2", "10", "30");
+
+        cache.getOrResolve(request, List.of("Combain"), resolver(new GeolocationResponse())).get();
+        cache.getOrResolve(request, List.of("Combain"), resolver(new GeolocationResponse())).get();
+        cache.flush();
+
+        assertThat(resolverCalls).hasValue(2);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+    }
+
+    @Test
+    void ttlFollowsTheLongestMatchingProviderKey() {
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.getTtlMinutes().put("LOCAL_DB", 60L);
+        properties.getTtlMinutes().put("Combain", 10080L);
+        GeolocationCacheService configured = new GeolocationCacheService(repository, jdbcTemplate,
+                deferredAddressService, properties,
+                new ObjectMapper(), Runnable::run);
+
+        assertThat(configured.ttlMinutes("combain")).isEqualTo(10080);
+        assertThat(configured.ttlMinutes("LOCAL_DB_ORANGE: site")).isEqualTo(60);
+        assertThat(configured.ttlMinutes("OpenCellID")).isEqualTo(properties.getDefaultTtlMinutes());
+        assertThat(configured.ttlMinutes(null)).isEqualTo(properties.getDefaultTtlMinutes());
+    }
+
+    @Test
+    void deferredAddressIsCachedOnceGeocodingCompletes() throws Exception {
+        GeolocationRequest request = request("624", "2", "10", "40");
+        CompletableFuture<DeferredAddress> geocoding = new CompletableFuture<>();
+        when(deferredAddressService.whenResolved("token-1")).thenReturn(Optional.of(geocoding));
+        GeolocationResponse local = position();
+        local.setAddressToken("token-1");
+
+        GeolocationResponse first = cache.getOrResolve(request, List.of("Combain"), resolver(local)).get();
+        assertThat(first.getAddressToken()).isEqualTo("token-1");
+
+        // Not cached while the address is pending: a repeat lookup resolves again
+        cache.getOrResolve(request, List.of("Combain"), resolver(local)).get();
+        assertThat(resolverCalls).hasValue(2);
+
+        DeferredAddress ready = new DeferredAddress();
+        ready.setToken("token-1");
+        ready.setStatus(DeferredAddress.Status.READY);
+        ready.setAddress("Yaounde, Centre, Cameroon");
+        geocoding.complete(ready);
+
+        GeolocationResponse cached = cache.getOrResolve(request, List.of("Combain"), resolver(local)).get();
+        assertThat(resolverCalls).hasValue(2);
+        assertThat(cached.getAddress()).isEqualTo("Yaounde, Centre, Cameroon");
+        assertThat(cached.getAddressToken()).isNull();
+    }
+
+    @Test
+    void failedDeferredAddressIsNotCached() throws Exception {
+        GeolocationRequest request = request("624", "2", "10", "41");
+        DeferredAddress failed = new DeferredAddress();
+        failed.setToken("token-2");
+        failed.setStatus(DeferredAddress.Status.FAILED);
+        when(deferredAddressService.whenResolved("token-2"))
+                .thenReturn(Optional.of(CompletableFuture.completedFuture(failed)));
+        GeolocationResponse local = position();
+        local.setAddressToken("token-2");
+
+        cache.getOrResolve(request, List.of("Combain"), resolver(local)).get();
+        cache.getOrResolve(request, List.of("Combain"), resolver(local)).get();
+
+        assertThat(resolverCalls).hasValue(2);
+    }
+
+    @Test
+    void newTowerIndexForgetsOnlyLocalMisses() {
+        GeolocationRequest request = request("624", "2", "10", "42");
+        GeolocationRequest localOnly = request("624", "2", "10", "43");
+        cache.recordMisses(request, List.of(GeolocationCacheService.LOCAL_TIER, "Combain"));
+        cache.recordMisses(localOnly, List.of(GeolocationCacheService.LOCAL_TIER));
+
+        cache.onTowerIndexPublished(new TowerIndexPublishedEvent(2, "database"));
+
+        List<String> tiers = List.of(GeolocationCacheService.LOCAL_TIER, "Combain");
+        assertThat(cache.knownMisses(request, tiers)).containsExactly("Combain");
+        assertThat(cache.knownMisses(localOnly, tiers)).isEmpty();
+    }
+
+    @Test
+    void staleHitIsServedAtOnceAndRefreshedInTheBackground() throws Exception {
+        Queue<Runnable> background = new ConcurrentLinkedQueue<>();
+        GeolocationCacheService stale = refreshAheadCache(background::add);
+        GeolocationRequest request = request("624", "2", "10", "50");
+        stale.getOrResolve(request, List.of("Combain"), resolver(position())).get();
+
+        CompletableFuture<GeolocationResponse> refresh = new CompletableFuture<>();
+        CompletableFuture<GeolocationResponse> hit = stale.getOrResolve(request, List.of("Combain"),
+                (req, skip) -> {
+                    resolverCalls.incrementAndGet();
+                    return refresh;
+                });
+
+        assertThat(hit).isCompleted();
+        assertThat(hit.get().getLatitude()).isEqualTo(3.86);
+        assertThat(resolverCalls).hasValue(1);
+
+        background.forEach(Runnable::run);
+        assertThat(resolverCalls).hasValue(2);
+        GeolocationResponse moved = position();
+        moved.setLatitude(3.87);
+        refresh.complete(moved);
+
+        GeolocationResponse next = stale.getOrResolve(request, List.of("Combain"),
+                (req, skip) -> new CompletableFuture<>()).get();
+        assertThat(next.getLatitude()).isEqualTo(3.87);
+    }
+
+    @Test
+    void concurrentStaleHitsStartOneRefreshPerCell() throws Exception {
+        GeolocationCacheService stale = refreshAheadCache(Runnable::run);
+        GeolocationRequest request = request("624", "2", "10", "51");
+        stale.getOrResolve(request, List.of("Combain"), resolver(position())).get();
+
+        CompletableFuture<GeolocationResponse> refresh = new CompletableFuture<>();
+        BiFunction<GeolocationRequest, Set<String>, CompletableFuture<GeolocationResponse>> slow = (req, skip) -> {
+            resolverCalls.incrementAndGet();
+            return refresh;
+        };
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<GeolocationResponse>> hits = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            hits.add(pool.submit(() -> {
+                start.await();
+                return stale.getOrResolve(request, List.of("Combain"), slow).get();
+            }));
+        }
+        start.countDown();
+        for (Future<GeolocationResponse> hit : hits) {
+            assertThat(hit.get(5, TimeUnit.SECONDS).getLatitude()).isEqualTo(3.86);
+        }
+        pool.shutdown();
+
+        assertThat(resolverCalls).hasValue(2);
+
+        // Once it is over, the next stale hit may refresh again
+        refresh.complete(position());
+        stale.getOrResolve(request, List.of("Combain"), slow).get();
+        assertThat(resolverCalls).hasValue(3);
+    }
+
+    @Test
+    void unresolvedOrFailedRefreshKeepsTheStaleEntry() throws Exception {
+        GeolocationCacheService stale = refreshAheadCache(Runnable::run);
+        GeolocationRequest request = request("624", "2", "10", "52");
+        stale.getOrResolve(request, List.of("Combain"), resolver(position())).get();
+
+        GeolocationResponse unknown = new GeolocationResponse();
+        unknown.setError("Cell not found");
+        stale.getOrResolve(request, List.of("Combain"), resolver(unknown)).get();
+        stale.getOrResolve(request, List.of("Combain"),
+                (req, skip) -> CompletableFuture.failedFuture(new IllegalStateException("503"))).get();
+
+        GeolocationResponse kept = stale.getOrResolve(request, List.of("Combain"),
+                (req, skip) -> new CompletableFuture<>()).get();
+        assertThat(kept.getLatitude()).isEqualTo(3.86);
+        assertThat(kept.getError()).isNull();
+        assertThat(resolverCalls).hasValue(2);
+    }
+
+    // Entries go stale as soon as they are written and expire after a minute
+    private GeolocationCacheService refreshAheadCache(Executor executor) {
+        ResultCacheProperties properties = new ResultCacheProperties();
+        properties.setDefaultTtlMinutes(1);
+        properties.setRefreshAheadRatio(0.01);
+        properties.getL2().setEnabled(false);
+        return new GeolocationCacheService(repository, jdbcTemplate, deferredAddressService, properties,
+                new ObjectMapper(), executor);
+    }
+
+    private BiFunction<GeolocationRequest, Set<String>, CompletableFuture<GeolocationResponse>> resolver(
+            GeolocationResponse answer) {
+        return (req, skip) -> {
+            resolverCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(answer);
+        };
+    }
+
+    static GeolocationResponse position() {
+        GeolocationResponse resp = new GeolocationResponse();
+        resp.setLatitude(3.86);
+        resp.setLongitude(11.52);
+        resp.setProviderUsed("Combain");
+        return resp;
+    }
+
+    static GeolocationRequest request(String mcc, String mnc, String lac, String cellId) {
+        GeolocationRequest request = new GeolocationRequest();
+        request.setMcc(mcc);
+        request.setMnc(mnc);
+        request.setLac(lac);
+        request.setCellId(cellId);
+        return request;
+    }
+}
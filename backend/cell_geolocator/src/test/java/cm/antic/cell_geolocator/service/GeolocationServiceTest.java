@@ -0,0 +1,201 @@
+package cm.antic.cell_geolocator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import cm.antic.cell_geolocator.service.provider.ProviderClient;
+import cm.antic.cell_geolocator.service.provider.ProviderInvoker;
+
+class GeolocationServiceTest {
+
+    private final ProviderClient openCellId = provider("OpenCellID");
+    private final ProviderClient unwiredLabs = provider("UnwiredLabs");
+    private final ProviderClient combain = provider("Combain");
+
+    private ProviderInvoker invoker;
+    private GeolocationCacheService cache;
+    private GeolocationService service;
+    private final GeolocationRequest request = GeolocationCacheServiceTest.request("624", "2", "10", "20");
+
+    @BeforeEach
+    void setUp() {
+        invoker = mock(ProviderInvoker.class);
+        cache = mock(GeolocationCacheService.class);
+        ReverseGeocodeService reverseGeocodeService = mock(ReverseGeocodeService.class);
+        when(reverseGeocodeService.addAddressToResponseAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        service = new GeolocationService(List.of(openCellId, unwiredLabs, combain));
+        PriorityService priorities = new PriorityService();
+        priorities.setProviderPriorities(List.of("OpenCellID", "UnwiredLabs", "Combain"));
+        ReflectionTestUtils.setField(service, "priorityService", priorities);
+        ReflectionTestUtils.setField(service, "providerInvoker", invoker);
+        ReflectionTestUtils.setField(service, "geolocationCacheService", cache);
+        ReflectionTestUtils.setField(service, "reverseGeocodeService", reverseGeocodeService);
+    }
+
+    @Test
+    void onlyUnknownCellAnswersAreRecordedAsMisses() throws Exception {
+        answer(openCellId, unknownCell());
+        answer(unwiredLabs, rejected("UnwiredLabs error: 403 Forbidden"));
+        fail(combain);
+
+        GeolocationResponse resp = service.resolveWithProviders(request).get();
+
+        assertThat(resp.getLatitude()).isNull();
+        assertThat(recordedMisses()).containsExactly("OpenCellID");
+    }
+
+    @Test
+    void errorsAloneRecordNothing() throws Exception {
+        answer(openCellId, rejected("OpenCellID API error: 401 Unauthorized"));
+        answer(unwiredLabs, rejected("UnwiredLabs error: 402 Payment Required"));
+        fail(combain);
+
+        service.resolveWithProviders(request).get();
+
+        assertThat(recordedMisses()).isEmpty();
+    }
+
+    @Test
+    void skippedProvidersAreNotCalled() throws Exception {
+        answer(unwiredLabs, position(4.05, 9.7));
+        CompletableFuture<GeolocationResponse> combainCall = new CompletableFuture<>();
+        when(invoker.resolveAsync(eq(combain), any())).thenReturn(combainCall);
+
+        GeolocationResponse resp = service.resolveWithProviders(request, Set.of("OpenCellID")).get();
+
+        assertThat(resp.getProviderUsed()).isEqualTo("UnwiredLabs");
+        verify(invoker, never()).resolveAsync(eq(openCellId), any());
+        assertThat(resp.getRawResponses().get("OpenCellID")).isInstanceOf(Map.class);
+        // Lower priority than the answer used: cancelled
+        assertThat(combainCall).isCancelled();
+    }
+
+    @Test
+    void higherPriorityProviderIsWaitedFor() {
+        CompletableFuture<GeolocationResponse> openCellIdCall = pending(openCellId);
+        answer(unwiredLabs, position(4.05, 9.7));
+        CompletableFuture<GeolocationResponse> combainCall = pending(combain);
+
+        CompletableFuture<GeolocationResponse> resp = service.resolveWithProviders(request);
+        assertThat(resp).isNotDone();
+
+        openCellIdCall.complete(position(3.86, 11.52));
+
+        assertThat(resp.join().getProviderUsed()).isEqualTo("OpenCellID");
+        assertThat(combainCall).isCancelled();
+        assertThat(resp.join().getRawResponses().get("Combain")).isEqualTo(
+                Map.of("error", "Cancelled: higher-priority answer used"));
+    }
+
+    @Test
+    void lowerPriorityAnswerIsUsedOnceTheOnesAheadHaveNone() {
+        fail(openCellId);
+        CompletableFuture<GeolocationResponse> unwiredLabsCall = pending(unwiredLabs);
+        answer(combain, position(4.05, 9.7));
+
+        CompletableFuture<GeolocationResponse> resp = service.resolveWithProviders(request);
+        assertThat(resp).isNotDone();
+
+        unwiredLabsCall.complete(unknownCell());
+
+        assertThat(resp.join().getProviderUsed()).isEqualTo("Combain");
+        assertThat(resp.join().getLatitude()).isEqualTo(4.05);
+    }
+
+    @Test
+    void firstProviderAnswerEndsTheRaceAtOnce() {
+        answer(openCellId, position(3.86, 11.52));
+        CompletableFuture<GeolocationResponse> unwiredLabsCall = pending(unwiredLabs);
+        CompletableFuture<GeolocationResponse> combainCall = pending(combain);
+
+        GeolocationResponse resp = service.resolveWithProviders(request).join();
+
+        assertThat(resp.getProviderUsed()).isEqualTo("OpenCellID");
+        assertThat(unwiredLabsCall).isCancelled();
+        assertThat(combainCall).isCancelled();
+        verify(cache, never()).recordMisses(any(), any());
+    }
+
+    @Test
+    void collectAllWaitsForEveryProvider() {
+        ReflectionTestUtils.setField(service, "collectAll", true);
+        answer(openCellId, position(3.86, 11.52));
+        CompletableFuture<GeolocationResponse> combainCall = pending(combain);
+        answer(unwiredLabs, position(4.05, 9.7));
+
+        CompletableFuture<GeolocationResponse> resp = service.resolveWithProviders(request);
+        assertThat(resp).isNotDone();
+
+        combainCall.complete(position(4.06, 9.71));
+
+        assertThat(resp.join().getProviderUsed()).isEqualTo("OpenCellID");
+        assertThat(resp.join().getRawResponses()).containsOnlyKeys("OpenCellID", "UnwiredLabs", "Combain");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<String> recordedMisses() {
+        ArgumentCaptor<Collection<String>> tiers = ArgumentCaptor.forClass(Collection.class);
+        verify(cache).recordMisses(eq(request), tiers.capture());
+        return tiers.getValue();
+    }
+
+    void answer(ProviderClient client, GeolocationResponse resp) {
+        when(invoker.resolveAsync(eq(client), any())).thenReturn(CompletableFuture.completedFuture(resp));
+    }
+
+    CompletableFuture<GeolocationResponse> pending(ProviderClient client) {
+        CompletableFuture<GeolocationResponse> call = new CompletableFuture<>();
+        when(invoker.resolveAsync(eq(client), any())).thenReturn(call);
+        return call;
+    }
+
+    void fail(ProviderClient client) {
+        when(invoker.resolveAsync(eq(client), any()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("503 Service Unavailable")));
+    }
+
+    static ProviderClient provider(String name) {
+        ProviderClient client = mock(ProviderClient.class);
+        when(client.getProviderName()).thenReturn(name);
+        return client;
+    }
+
+    static GeolocationResponse position(double lat, double lon) {
+        GeolocationResponse resp = new GeolocationResponse();
+        resp.setLatitude(lat);
+        resp.setLongitude(lon);
+        return resp;
+    }
+
+    static GeolocationResponse unknownCell() {
+        GeolocationResponse resp = new GeolocationResponse();
+        resp.setError("No coordinates returned");
+        resp.setUnknownCell(true);
+        return resp;
+    }
+
+    static GeolocationResponse rejected(String error) {
+        GeolocationResponse resp = new GeolocationResponse();
+        resp.setError(error);
+        return resp;
+    }
+}
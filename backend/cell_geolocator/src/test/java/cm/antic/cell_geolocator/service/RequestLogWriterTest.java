@@ -0,0 +1,175 @@
+package cm.antic.cell_geolocator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import cm.antic.cell_geolocator.entity.RequestLog;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+
+class RequestLogWriterTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    // Size of each batch handed to batchUpdate, in order
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(50L, 100L, 150L);
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenAnswer(inv -> {
+            batches.add(inv.<BatchPreparedStatementSetter>getArgument(1).getBatchSize());
+            return new int[0];
+        });
+    }
+
+    @Test
+    void belowTheThresholdEveryRowIsKept() {
+        RequestLogWriter writer = writer(10, 0.5);
+
+        submit(writer, 5);
+
+        assertThat(writer.stats()).containsEntry("accepted", 5L).containsEntry("sampledOut", 0L);
+    }
+
+    @Test
+    void aboveTheThresholdRowsAreSampledAndAFullQueueKeepsNone() {
+        RequestLogWriter writer = writer(10, 0.5);
+
+        submit(writer, 200);
+
+        Map<String, Object> stats = writer.stats();
+        long accepted = (long) stats.get("accepted");
+        assertThat(accepted).isBetween(5L, 10L);
+        assertThat(stats.get("queueDepth")).isEqualTo((int) accepted);
+        assertThat(stats.get("sampledOut")).isEqualTo(200 - accepted);
+    }
+
+    @Test
+    void withoutSamplingTheQueueFillsUpFirst() {
+        RequestLogWriter writer = writer(3, 1.0);
+
+        submit(writer, 5);
+
+        assertThat(writer.stats()).containsEntry("accepted", 3L).containsEntry("sampledOut", 2L);
+    }
+
+    @Test
+    void idsComeFromSequenceBlocks() {
+        RequestLogWriter writer = writer(10, 0.5);
+
+        for (long expected = 1; expected <= 51; expected++) {
+            assertThat(nextId(writer)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void aSequenceValueBelowTheBlockSizeStartsAtOne() {
+        // A fresh sequence (start 1): the first block is (1 - 50, 1], only id 1 is valid
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L, 51L);
+        RequestLogWriter writer = writer(10, 0.5);
+
+        assertThat(nextId(writer)).isEqualTo(1);
+        assertThat(nextId(writer)).isEqualTo(2);
+        for (int i = 0; i < RequestLog.ID_BLOCK_SIZE - 2; i++) {
+            nextId(writer);
+        }
+        assertThat(nextId(writer)).isEqualTo(51);
+    }
+
+    @Test
+    void stopWritesWhatIsQueued() throws Exception {
+        RequestLogWriter writer = writer(100, 0.5);
+        submit(writer, 7);
+
+        writer.start();
+        writer.stop();
+
+        assertThat(writer.stats()).containsEntry("written", 7L);
+        assertThat(batches.stream().mapToInt(Integer::intValue).sum()).isEqualTo(7);
+    }
+
+    @Test
+    void writerInterruptedAtShutdownStillDrainsTheQueue() throws Exception {
+        CountDownLatch inInsert = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenAnswer(inv -> {
+            batches.add(inv.<BatchPreparedStatementSetter>getArgument(1).getBatchSize());
+            if (batches.size() == 1) {
+                inInsert.countDown();
+                awaitUninterruptibly(release);
+            }
+            return new int[0];
+        });
+        RequestLogWriter writer = writer(100, 0.5);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "shutdownTimeoutMs", 50L);
+        writer.start();
+
+        submit(writer, 2);
+        assertThat(inInsert.await(5, TimeUnit.SECONDS)).isTrue();
+        submit(writer, 5);
+        // Times out on the stuck insert and interrupts the writer
+        writer.stop();
+        release.countDown();
+        ((Thread) ReflectionTestUtils.getField(writer, "writer")).join(5_000);
+
+        // The rest is drained at once, regardless of the batch size
+        assertThat(batches).containsExactly(2, 5);
+        assertThat(writer.stats()).containsEntry("written", 7L);
+    }
+
+    private RequestLogWriter writer(int capacity, double sampleAbove) {
+        RequestLogWriter writer = new RequestLogWriter(jdbcTemplate, capacity, sampleAbove);
+        ReflectionTestUtils.setField(writer, "batchSize", 500);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(writer, "shutdownTimeoutMs", 5_000L);
+        return writer;
+    }
+
+    private static long nextId(RequestLogWriter writer) {
+        return ReflectionTestUtils.<Long>invokeMethod(writer, "nextId");
+    }
+
+    private static void submit(RequestLogWriter writer, int rows) {
+        for (int i = 0; i < rows; i++) {
+            GeolocationResponse resp = new GeolocationResponse();
+            resp.setLatitude(3.86);
+            resp.setLongitude(11.52);
+            resp.setProviderUsed("Combain");
+            writer.submit(GeolocationCacheServiceTest.request("624", "2", "10", String.valueOf(i)), resp);
+        }
+    }
+
+    // Keeps the interrupt for the caller, as a JDBC driver finishing its round trip would
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
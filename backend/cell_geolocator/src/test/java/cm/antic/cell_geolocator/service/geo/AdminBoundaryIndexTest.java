@@ -0,0 +1,162 @@
+package cm.antic.cell_geolocator.service.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AdminBoundaryIndexTest {
+
+    private static final AdminArea SQUARE = new AdminArea("Littoral", "Wouri", "Douala I");
+    private static final AdminArea ELL = new AdminArea("Littoral", "Wouri", "Douala II");
+    private static final AdminArea ISLANDS = new AdminArea("Sud-Ouest", "Fako", "Limbe");
+    private static final AdminArea STAR = new AdminArea("Centre", "Mfoundi", "Yaoundé I");
+
+    private static AdminBoundaryIndex index;
+
+    @BeforeAll
+    static void load() throws IOException {
+        String geoJson = """
+                {"type": "FeatureCollection", "features": [
+                  %s,
+                  %s,
+                  %s,
+                  %s,
+                  {"type": "Feature", "properties": {"name": "no geometry"}, "geometry": null},
+                  %s
+                ]}
+                """.formatted(
+                // lat 0..2 x lon 0..2, with a hole at 0.5..1.5
+                feature(SQUARE, "Polygon", "[" + ring(0, 0, 2, 0, 2, 2, 0, 2) + ", " + ring(0.5, 0.5, 1.5, 0.5, 1.5, 1.5, 0.5, 1.5) + "]"),
+                // Concave L: lat 3..6 x lon 0..3, without lat 4..6 x lon 1..3
+                feature(ELL, "Polygon", "[" + ring(3, 0, 6, 0, 6, 1, 4, 1, 4, 3, 3, 3) + "]"),
+                feature(ISLANDS, "MultiPolygon",
+                        "[[" + ring(10, 10, 11, 10, 11, 11, 10, 11) + "], [" + ring(12, 10, 13, 10, 13, 11, 12, 11) + "]]"),
+                feature(STAR, "Polygon", "[" + star() + "]"),
+                // Two edges only: dropped
+                feature(new AdminArea("x", "x", "x"), "Polygon", "[" + ring(20, 20, 21, 20) + "]"));
+
+        index = AdminBoundaryIndex.load(new ByteArrayInputStream(geoJson.getBytes(StandardCharsets.UTF_8)),
+                new ObjectMapper(), "region", "departement", "arrondissement");
+    }
+
+    @Test
+    void loadsEveryPolygonPart() {
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    @Test
+    void locatesPointsInsidePolygonsAndNotInHoles() {
+        assertThat(index.locate(0.25, 0.25)).isEqualTo(SQUARE);
+        assertThat(index.locate(1.75, 1.0)).isEqualTo(SQUARE);
+        assertThat(index.locate(1.0, 1.0)).isNull();
+    }
+
+    @Test
+    void followsConcaveOutlines() {
+        assertThat(index.locate(5.0, 0.5)).isEqualTo(ELL);
+        assertThat(index.locate(3.5, 2.5)).isEqualTo(ELL);
+        assertThat(index.locate(5.0, 2.5)).isNull();
+    }
+
+    @Test
+    void locatesEveryPartOfAMultiPolygon() {
+        assertThat(index.locate(10.5, 10.5)).isEqualTo(ISLANDS);
+        assertThat(index.locate(12.5, 10.5)).isEqualTo(ISLANDS);
+        assertThat(index.locate(11.5, 10.5)).isNull();
+    }
+
+    @Test
+    void pointsOutsideTheBoundsAreNowhere() {
+        assertThat(index.locate(-1, -1)).isNull();
+        assertThat(index.locate(50, 50)).isNull();
+        assertThat(index.locate(Double.NaN, 1)).isNull();
+    }
+
+    @Test
+    void manyEdgedPolygonMatchesPlainRayCasting() {
+        double[][] star = starVertices();
+        Random random = new Random(11);
+        for (int i = 0; i < 5_000; i++) {
+            double lat = 4 + random.nextDouble() * 4;
+            double lon = 4 + random.nextDouble() * 4;
+            boolean inside = contains(star, lat, lon);
+
+            assertThat(index.locate(lat, lon)).as("(%s, %s)", lat, lon).isEqualTo(inside ? STAR : null);
+        }
+    }
+
+    @Test
+    void rejectsFilesWithoutPolygons() {
+        String empty = "{\"type\": \"FeatureCollection\", \"features\": []}";
+
+        assertThatThrownBy(() -> AdminBoundaryIndex.load(new ByteArrayInputStream(empty.getBytes(StandardCharsets.UTF_8)),
+                new ObjectMapper(), "region", "departement", "arrondissement"))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> AdminBoundaryIndex.load(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)),
+                new ObjectMapper(), "region", "departement", "arrondissement"))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static String feature(AdminArea area, String type, String coordinates) {
+        return """
+                {"type": "Feature",
+                 "properties": {"region": "%s", "departement": "%s", "arrondissement": "%s"},
+                 "geometry": {"type": "%s", "coordinates": %s}}"""
+                .formatted(area.region(), area.departement(), area.arrondissement(), type, coordinates);
+    }
+
+    // Closed GeoJSON ring from (lat, lon) pairs; positions are written [lon, lat]
+    private static String ring(double... latLon) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i <= latLon.length; i += 2) {
+            int j = i % latLon.length;
+            if (i > 0) sb.append(", ");
+            sb.append('[').append(latLon[j + 1]).append(", ").append(latLon[j]).append(']');
+        }
+        return sb.append(']').toString();
+    }
+
+    // A 400-vertex star around (6, 6), enough edges to use many latitude bands
+    private static double[][] starVertices() {
+        int n = 400;
+        double[][] vertices = new double[n][];
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n;
+            double radius = i % 2 == 0 ? 1.8 : 0.9;
+            vertices[i] = new double[] {6 + radius * Math.sin(angle), 6 + radius * Math.cos(angle)};
+        }
+        return vertices;
+    }
+
+    private static String star() {
+        double[][] vertices = starVertices();
+        double[] latLon = new double[vertices.length * 2];
+        for (int i = 0; i < vertices.length; i++) {
+            latLon[2 * i] = vertices[i][0];
+            latLon[2 * i + 1] = vertices[i][1];
+        }
+        return ring(latLon);
+    }
+
+    private static boolean contains(double[][] vertices, double lat, double lon) {
+        boolean inside = false;
+        for (int i = 0, j = vertices.length - 1; i < vertices.length; j = i++) {
+            double[] a = vertices[i];
+            double[] b = vertices[j];
+            if ((a[0] > lat) != (b[0] > lat)
+                    && lon < a[1] + (lat - a[0]) * (b[1] - a[1]) / (b[0] - a[0])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,39 @@
+package cm.antic.cell_geolocator.service.geo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class GeoHashTest {
+
+    @Test
+    void matchesReferenceHashes() {
+        assertThat(GeoHash.encode(57.64911, 10.40744, 11)).isEqualTo("u4pruydqqvj");
+        assertThat(GeoHash.encode(42.605, -5.603, 5)).isEqualTo("ezs42");
+        assertThat(GeoHash.encode(0, 0, 4)).isEqualTo("s000");
+        assertThat(GeoHash.encode(-90, -180, 3)).isEqualTo("000");
+        assertThat(GeoHash.encode(90, 180, 3)).isEqualTo("zzz");
+    }
+
+    @Test
+    void shorterHashIsAPrefixOfALongerOne() {
+        String full = GeoHash.encode(4.0511, 9.7679, 9);
+
+        for (int precision = 1; precision < full.length(); precision++) {
+            assertThat(GeoHash.encode(4.0511, 9.7679, precision)).isEqualTo(full.substring(0, precision));
+        }
+    }
+
+    @Test
+    void nearbyPointsShareACellAndDistantOnesDoNot() {
+        // About 3 m apart in Douala
+        assertThat(GeoHash.encode(4.05110, 9.76790, 7)).isEqualTo(GeoHash.encode(4.05112, 9.76792, 7));
+        // Douala and Yaoundé
+        assertThat(GeoHash.encode(4.0511, 9.7679, 4)).isNotEqualTo(GeoHash.encode(3.8480, 11.5021, 4));
+    }
+
+    @Test
+    void zeroPrecisionIsEmpty() {
+        assertThat(GeoHash.encode(4.05, 9.7, 0)).isEmpty();
+    }
+}
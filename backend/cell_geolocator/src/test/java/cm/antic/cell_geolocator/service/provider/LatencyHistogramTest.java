@@ -0,0 +1,90 @@
+package cm.antic.cell_geolocator.service.provider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    // 6 s window: six slices of one second
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final LatencyHistogram histogram = new LatencyHistogram(6_000, now::get);
+
+    @Test
+    void percentilesAreWithinOneBucket() {
+        for (int ms = 1; ms <= 1_000; ms++) {
+            histogram.record(ms);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.read();
+
+        assertThat(snapshot.count()).isEqualTo(1_000);
+        assertThat(snapshot.percentileMs(0.5)).isBetween(500L, 560L);
+        assertThat(snapshot.percentileMs(0.95)).isBetween(950L, 1_064L);
+        assertThat(snapshot.percentileMs(1.0)).isBetween(1_000L, 1_120L);
+        assertThat(snapshot.percentileMs(0.0)).isEqualTo(1);
+    }
+
+    @Test
+    void slowTailMovesHighPercentilesOnly() {
+        for (int i = 0; i < 98; i++) {
+            histogram.record(20);
+        }
+        histogram.record(3_000);
+        histogram.record(3_000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.read();
+
+        assertThat(snapshot.percentileMs(0.5)).isBetween(20L, 23L);
+        assertThat(snapshot.percentileMs(0.98)).isBetween(20L, 23L);
+        assertThat(snapshot.percentileMs(0.99)).isBetween(3_000L, 3_360L);
+    }
+
+    @Test
+    void emptyAndOutOfRangeSamples() {
+        assertThat(histogram.read().count()).isZero();
+        assertThat(histogram.read().percentileMs(0.99)).isZero();
+
+        histogram.record(0);
+        histogram.record(-5);
+        histogram.record(600_000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.read();
+        assertThat(snapshot.percentileMs(0.5)).isEqualTo(1);
+        assertThat(snapshot.percentileMs(1.0)).isEqualTo(60_000);
+    }
+
+    @Test
+    void samplesAgeOutOfTheWindow() {
+        histogram.record(100);
+        now.addAndGet(3_000);
+        histogram.record(200);
+
+        now.addAndGet(2_999);
+        assertThat(histogram.read().count()).isEqualTo(2);
+
+        // The first sample's slice is now a full window old
+        now.addAndGet(1);
+        assertThat(histogram.read().count()).isEqualTo(1);
+        assertThat(histogram.read().percentileMs(0.5)).isBetween(200L, 224L);
+
+        now.addAndGet(3_000);
+        assertThat(histogram.read().count()).isZero();
+    }
+
+    @Test
+    void reusedSliceDropsItsOldSamples() {
+        histogram.record(100);
+        histogram.record(100);
+
+        // Same slice, one window later
+        now.addAndGet(6_000);
+        histogram.record(400);
+
+        LatencyHistogram.Snapshot snapshot = histogram.read();
+        assertThat(snapshot.count()).isEqualTo(1);
+        assertThat(snapshot.percentileMs(0.5)).isBetween(400L, 448L);
+    }
+}
@@ -0,0 +1,32 @@
+package cm.antic.cell_geolocator.service.provider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+class ProviderClientTest {
+
+    @Test
+    void serverErrorsAndThrottlingAreProviderFailures() {
+        assertThat(ProviderClient.isProviderFailure(status(503))).isTrue();
+        assertThat(ProviderClient.isProviderFailure(status(429))).isTrue();
+        assertThat(ProviderClient.isProviderFailure(new IOException("connection reset"))).isTrue();
+        assertThat(ProviderClient.isProviderFailure(status(403))).isFalse();
+    }
+
+    @Test
+    void onlyNotFoundMeansTheCellIsUnknown() {
+        assertThat(ProviderClient.isCellNotFound(status(404))).isTrue();
+        assertThat(ProviderClient.isCellNotFound(status(401))).isFalse();
+        assertThat(ProviderClient.isCellNotFound(status(402))).isFalse();
+        assertThat(ProviderClient.isCellNotFound(status(403))).isFalse();
+        assertThat(ProviderClient.isCellNotFound(new IOException("timeout"))).isFalse();
+    }
+
+    private static WebClientResponseException status(int code) {
+        return WebClientResponseException.create(code, "status " + code, null, null, null);
+    }
+}
@@ -0,0 +1,175 @@
+package cm.antic.cell_geolocator.service.provider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import cm.antic.cell_geolocator.model.GeolocationRequest;
+import cm.antic.cell_geolocator.model.GeolocationResponse;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+class ProviderInvokerTest {
+
+    private final StubProvider provider = new StubProvider("Combain");
+
+    // Tasks run on the invoker's executor (deadline checks)
+    private final AtomicInteger executed = new AtomicInteger();
+
+    private CircuitBreakerRegistry breakers;
+    private BulkheadRegistry bulkheads;
+    private ProviderInvoker invoker;
+
+    @BeforeEach
+    void setUp() {
+        breakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .permittedNumberOfCallsInHalfOpenState(1)
+                .build());
+        bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        invoker = new ProviderInvoker(List.of(provider), breakers, bulkheads, task -> {
+            executed.incrementAndGet();
+            task.run();
+        }, 300, 100, 60);
+        ReflectionTestUtils.setField(invoker, "minTimeoutMs", 10L);
+        ReflectionTestUtils.setField(invoker, "maxTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(invoker, "minSamples", 20L);
+    }
+
+    @Test
+    void timeoutCountsAsABreakerFailure() {
+        ReflectionTestUtils.setField(invoker, "maxTimeoutMs", 50L);
+        CompletableFuture<GeolocationResponse> call = provider.willAnswer(new CompletableFuture<>());
+
+        CompletableFuture<GeolocationResponse> result = invoker.resolveAsync(provider, request("20"));
+
+        assertThatThrownBy(result::join).isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(call).isCancelled();
+        assertThat(executed).hasValue(1);
+        assertThat(breaker().getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+        assertThat(bulkheads.bulkhead("Combain").getMetrics().getAvailableConcurrentCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void cancellingReleasesThePermissionWithoutAFailure() {
+        // Half-open with a single permitted call: a leaked permission would reject the next call
+        breaker().transitionToOpenState();
+        breaker().transitionToHalfOpenState();
+        CompletableFuture<GeolocationResponse> call = provider.willAnswer(new CompletableFuture<>());
+
+        invoker.resolveAsync(provider, request("21")).cancel(true);
+
+        assertThat(call).isCancelled();
+        assertThat(breaker().getMetrics().getNumberOfFailedCalls()).isZero();
+        assertThat(breaker().getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        provider.willAnswer(CompletableFuture.completedFuture(position()));
+        assertThat(invoker.resolveAsync(provider, request("21")).join().getLatitude()).isEqualTo(3.86);
+        assertThat(provider.calls).isEqualTo(2);
+    }
+
+    @Test
+    void fullBulkheadRejectsBeforeTheClientIsCalled() {
+        provider.willAnswer(new CompletableFuture<>());
+        invoker.resolveAsync(provider, request("22"));
+
+        CompletableFuture<GeolocationResponse> rejected = invoker.resolveAsync(provider, request("23"));
+
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(BulkheadFullException.class);
+        assertThat(provider.calls).isEqualTo(1);
+        assertThat(breaker().getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
+    @Test
+    void lastGoodAnswerIsServedOnFailure() {
+        GeolocationResponse good = position();
+        provider.willAnswer(CompletableFuture.completedFuture(good));
+        invoker.resolveAsync(provider, request("24")).join();
+
+        provider.willAnswer(CompletableFuture.failedFuture(new IllegalStateException("503 Service Unavailable")));
+        assertThat(invoker.resolveAsync(provider, request("24")).join()).isSameAs(good);
+
+        // Only for the same cell
+        provider.willAnswer(CompletableFuture.failedFuture(new IllegalStateException("503 Service Unavailable")));
+        assertThatThrownBy(invoker.resolveAsync(provider, request("25"))::join)
+                .hasCauseInstanceOf(IllegalStateException.class);
+
+        // Also when the breaker rejects the call outright
+        breaker().transitionToOpenState();
+        assertThat(invoker.resolveAsync(provider, request("24")).join()).isSameAs(good);
+        assertThat(provider.calls).isEqualTo(3);
+    }
+
+    private CircuitBreaker breaker() {
+        return breakers.circuitBreaker("Combain");
+    }
+
+    private static GeolocationRequest request(String cellId) {
+        GeolocationRequest request = new GeolocationRequest();
+        request.setMcc("624");
+        request.setMnc("2");
+        request.setLac("10");
+        request.setCellId(cellId);
+        return request;
+    }
+
+    private static GeolocationResponse position() {
+        GeolocationResponse resp = new GeolocationResponse();
+        resp.setLatitude(3.86);
+        resp.setLongitude(11.52);
+        resp.setProviderUsed("Combain");
+        return resp;
+    }
+
+    /** Answers each call with the next queued future, and counts the calls. */
+    private static final class StubProvider implements ProviderClient {
+
+        private final String name;
+        private final Deque<CompletableFuture<GeolocationResponse>> answers = new ArrayDeque<>();
+        int calls;
+
+        StubProvider(String name) {
+            this.name = name;
+        }
+
+        CompletableFuture<GeolocationResponse> willAnswer(CompletableFuture<GeolocationResponse> answer) {
+            answers.add(answer);
+            return answer;
+        }
+
+        @Override
+        public CompletableFuture<GeolocationResponse> resolveAsync(GeolocationRequest request) {
+            calls++;
+            return answers.remove();
+        }
+
+        @Override
+        public GeolocationResponse resolve(GeolocationRequest request) {
+            return resolveAsync(request).join();
+        }
+
+        @Override
+        public String getProviderName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LongIntHashMapTest {
+
+    @Test
+    void getReturnsWhatWasPut() {
+        LongIntHashMap map = new LongIntHashMap(3);
+        map.putIfAbsent(0L, 10);
+        map.putIfAbsent(Long.MAX_VALUE, 20);
+        map.putIfAbsent(Long.MIN_VALUE, 30);
+
+        assertThat(map.get(0L)).isEqualTo(10);
+        assertThat(map.get(Long.MAX_VALUE)).isEqualTo(20);
+        assertThat(map.get(Long.MIN_VALUE)).isEqualTo(30);
+        assertThat(map.get(1L)).isEqualTo(LongIntHashMap.NO_VALUE);
+        assertThat(map.size()).isEqualTo(3);
+    }
+
+    @Test
+    void firstValueForAKeyWins() {
+        LongIntHashMap map = new LongIntHashMap(2);
+
+        assertThat(map.putIfAbsent(42L, 1)).isTrue();
+        assertThat(map.putIfAbsent(42L, 2)).isFalse();
+        assertThat(map.get(42L)).isEqualTo(1);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void emptyKeyIsReserved() {
+        LongIntHashMap map = new LongIntHashMap(1);
+
+        assertThatThrownBy(() -> map.putIfAbsent(LongIntHashMap.EMPTY_KEY, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(map.get(LongIntHashMap.EMPTY_KEY)).isEqualTo(LongIntHashMap.NO_VALUE);
+    }
+
+    @Test
+    void agreesWithHashMapWhenFilledToTheExpectedSize() {
+        int n = 10_000;
+        LongIntHashMap map = new LongIntHashMap(n);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        while (expected.size() < n) {
+            // Packed keys share their high bits, so probe sequences collide
+            long key = TowerIndex.pack(624, random.nextInt(3), random.nextInt(50), random.nextInt(1 << 20));
+            int value = expected.size();
+            assertThat(map.putIfAbsent(key, value)).isEqualTo(expected.putIfAbsent(key, value) == null);
+        }
+
+        assertThat(map.size()).isEqualTo(n);
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+        for (int i = 0; i < 1_000; i++) {
+            long absent = TowerIndex.pack(625, random.nextInt(3), random.nextInt(50), random.nextInt(1 << 20));
+            assertThat(map.get(absent)).isEqualTo(LongIntHashMap.NO_VALUE);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TowerGridTest {
+
+    private static TowerIndex index;
+    private static TowerGrid grid;
+
+    @BeforeAll
+    static void build() {
+        // Roughly Cameroon, with a dense cluster around Douala
+        Random random = new Random(3);
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        for (int ci = 0; ci < 5_000; ci++) {
+            boolean douala = ci % 4 == 0;
+            double lat = douala ? 4.0 + random.nextDouble() * 0.1 : 2.0 + random.nextDouble() * 11.0;
+            double lon = douala ? 9.7 + random.nextDouble() * 0.1 : 8.5 + random.nextDouble() * 7.7;
+            int mnc = 1 + ci % 2;
+            builder.add(new TowerRow("OP" + mnc, 624, mnc, 1, ci, lat, lon,
+                    null, null, null, null, null, null, null, null));
+        }
+        builder.add(new TowerRow("OP1", 624, 1, 2, 1, Double.NaN, 9.7,
+                null, null, null, null, null, null, null, null));
+        index = builder.build();
+        grid = TowerGrid.build(index, 0.05);
+    }
+
+    @Test
+    void skipsRecordsWithoutCoordinates() {
+        assertThat(grid.size()).isEqualTo(index.size() - 1);
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(5);
+        int[] ids = new int[10];
+        double[] km = new double[10];
+        for (int q = 0; q < 300; q++) {
+            // Some queries fall outside the grid, where the ring search starts from its edge
+            double lat = 1.0 + random.nextDouble() * 13.0;
+            double lon = 7.5 + random.nextDouble() * 9.7;
+            int operator = q % 3 == 0 ? TowerGrid.operatorCode(624, 2) : TowerGrid.ANY_OPERATOR;
+
+            int count = grid.nearest(lat, lon, operator, ids, km);
+
+            double[] expected = bruteForceKm(lat, lon, operator);
+            assertThat(count).isEqualTo(ids.length);
+            for (int i = 0; i < count; i++) {
+                assertThat(km[i]).isCloseTo(expected[i], within(1e-9));
+                assertThat(GeoDistance.haversineKm(lat, lon, index.latitude(ids[i]), index.longitude(ids[i])))
+                        .isCloseTo(km[i], within(1e-9));
+                if (operator != TowerGrid.ANY_OPERATOR) {
+                    assertThat(TowerIndex.mncOf(index.key(ids[i]))).isEqualTo(2);
+                }
+            }
+        }
+    }
+
+    @Test
+    void returnsFewerWhenTheOperatorHasFewerRecords() {
+        int[] ids = new int[5];
+        double[] km = new double[5];
+
+        assertThat(grid.nearest(4.05, 9.7, TowerGrid.operatorCode(624, 9), ids, km)).isZero();
+        assertThat(grid.nearest(4.05, 9.7, TowerGrid.ANY_OPERATOR, new int[0], km)).isZero();
+    }
+
+    private static double[] bruteForceKm(double lat, double lon, int operator) {
+        return IntStream.range(0, index.size())
+                .filter(id -> !Double.isNaN(index.latitude(id)))
+                .filter(id -> operator == TowerGrid.ANY_OPERATOR
+                        || TowerGrid.operatorCode(TowerIndex.mccOf(index.key(id)), TowerIndex.mncOf(index.key(id))) == operator)
+                .mapToDouble(id -> GeoDistance.haversineKm(lat, lon, index.latitude(id), index.longitude(id)))
+                .sorted()
+                .limit(10)
+                .toArray();
+    }
+}
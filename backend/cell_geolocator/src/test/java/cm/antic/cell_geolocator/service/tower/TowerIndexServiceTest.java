@@ -0,0 +1,66 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TowerIndexServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final Queue<Runnable> background = new ArrayDeque<>();
+    private JdbcTemplate jdbcTemplate;
+    private ApplicationEventPublisher events;
+    private TowerIndexService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        builder.add(new TowerRow("ORANGE", 624, 2, 10, 100, 4.05, 9.7, "Bonabéri", "BTS1",
+                null, null, null, null, null, null));
+        builder.add(new TowerRow("ORANGE", 624, 2, 10, 110, 4.06, 9.71, "Bonabéri", "BTS1",
+                null, null, null, null, null, null));
+        Path snapshot = dir.resolve("towers.snapshot");
+        TowerSnapshot.write(builder.build(), 42L, snapshot);
+
+        jdbcTemplate = mock(JdbcTemplate.class);
+        events = mock(ApplicationEventPublisher.class);
+        service = new TowerIndexService(jdbcTemplate, mock(OperatorRegistry.class), events, background::add);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "snapshotPath", snapshot.toString());
+        ReflectionTestUtils.setField(service, "preferSnapshot", true);
+        ReflectionTestUtils.setField(service, "gridCellDegrees", 0.05);
+    }
+
+    @Test
+    void snapshotStartServesLookupsBeforeTheSiteAdjacencyAndGridAreBuilt() {
+        service.loadOnStartup();
+
+        assertThat(service.current().size()).isEqualTo(2);
+        assertThat(service.siblings()).isNull();
+        assertThat(service.grid()).isNull();
+        verifyNoInteractions(jdbcTemplate);
+        verify(events).publishEvent(new TowerIndexPublishedEvent(1, "snapshot"));
+
+        background.forEach(Runnable::run);
+
+        assertThat(service.siblings().index()).isSameAs(service.current());
+        assertThat(service.siblings().count(service.current().find(624, 2, 10, 100))).isEqualTo(1);
+        assertThat(service.grid().size()).isEqualTo(2);
+        assertThat(service.stats()).containsEntry("derivedVersion", 1L).containsEntry("version", 1L);
+    }
+}
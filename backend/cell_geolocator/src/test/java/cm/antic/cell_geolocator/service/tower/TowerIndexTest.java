@@ -0,0 +1,162 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TowerIndexTest {
+
+    @Test
+    void packRoundTripsEveryField() {
+        int mcc = TowerIndex.MAX_MCC;
+        int mnc = (1 << TowerIndex.MNC_BITS) - 1;
+        int lac = (1 << TowerIndex.LAC_BITS) - 1;
+        int ci = (1 << TowerIndex.CI_BITS) - 1;
+
+        long key = TowerIndex.pack(mcc, mnc, lac, ci);
+
+        assertThat(key).isNotEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.mccOf(key)).isEqualTo(mcc);
+        assertThat(TowerIndex.mncOf(key)).isEqualTo(mnc);
+        assertThat(TowerIndex.lacOf(key)).isEqualTo(lac);
+        assertThat(TowerIndex.ciOf(key)).isEqualTo(ci);
+
+        long cameroon = TowerIndex.pack(624, 2, 10, 12345);
+        assertThat(TowerIndex.mccOf(cameroon)).isEqualTo(624);
+        assertThat(TowerIndex.mncOf(cameroon)).isEqualTo(2);
+        assertThat(TowerIndex.lacOf(cameroon)).isEqualTo(10);
+        assertThat(TowerIndex.ciOf(cameroon)).isEqualTo(12345);
+    }
+
+    @Test
+    void packRejectsNegativeOrTooWideFields() {
+        assertThat(TowerIndex.pack(-1, 2, 10, 1)).isEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.pack(624, -1, 10, 1)).isEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.pack(624, 2, -1, 1)).isEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.pack(624, 2, 10, -1)).isEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.pack(TowerIndex.MAX_MCC + 1, 2, 10, 1)).isEqualTo(TowerIndex.INVALID_KEY);
+        // Would pack to all ones, which is INVALID_KEY itself
+        assertThat(TowerIndex.pack((1 << TowerIndex.MCC_BITS) - 1, (1 << TowerIndex.MNC_BITS) - 1,
+                (1 << TowerIndex.LAC_BITS) - 1, (1 << TowerIndex.CI_BITS) - 1)).isEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.pack(624, 1 << TowerIndex.MNC_BITS, 10, 1)).isEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.pack(624, 2, 1 << TowerIndex.LAC_BITS, 1)).isEqualTo(TowerIndex.INVALID_KEY);
+        assertThat(TowerIndex.pack(624, 2, 10, 1 << TowerIndex.CI_BITS)).isEqualTo(TowerIndex.INVALID_KEY);
+    }
+
+    @Test
+    void keysSortByMccMncLacThenCi() {
+        assertThat(TowerIndex.pack(624, 2, 10, 5)).isLessThan(TowerIndex.pack(624, 2, 10, 6));
+        assertThat(TowerIndex.pack(624, 2, 10, (1 << TowerIndex.CI_BITS) - 1))
+                .isLessThan(TowerIndex.pack(624, 2, 11, 0));
+        assertThat(TowerIndex.pack(624, 1, 65535, 1)).isLessThan(TowerIndex.pack(624, 2, 0, 0));
+        assertThat(TowerIndex.pack(623, 999, 1, 1)).isLessThan(TowerIndex.pack(624, 0, 0, 0));
+    }
+
+    @Test
+    void lacPrefixIdentifiesTheLocationArea() {
+        long a = TowerIndex.pack(624, 2, 10, 1);
+        long b = TowerIndex.pack(624, 2, 10, 99_999);
+
+        assertThat(TowerIndex.lacPrefix(a)).isEqualTo(TowerIndex.lacPrefix(b));
+        assertThat(TowerIndex.lacPrefix(a)).isEqualTo(TowerIndex.pack(624, 2, 10, 0));
+        assertThat(TowerIndex.lacPrefix(a)).isNotEqualTo(TowerIndex.lacPrefix(TowerIndex.pack(624, 2, 11, 1)));
+    }
+
+    @Test
+    void findReturnsTheExactRecord() {
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        builder.add(row(2, 10, 300));
+        builder.add(row(2, 10, 100));
+        builder.add(row(1, 10, 100));
+        assertThat(builder.add(row(2, 1 << TowerIndex.LAC_BITS, 1))).isFalse();
+        TowerIndex index = builder.build();
+
+        int id = index.find(624, 2, 10, 100);
+        assertThat(id).isNotEqualTo(TowerIndex.NOT_FOUND);
+        assertThat(index.key(id)).isEqualTo(TowerIndex.pack(624, 2, 10, 100));
+        assertThat(index.siteName(id)).isEqualTo("SITE_2_100");
+        assertThat(index.find(624, 2, 10, 200)).isEqualTo(TowerIndex.NOT_FOUND);
+        assertThat(index.find(624, 3, 10, 100)).isEqualTo(TowerIndex.NOT_FOUND);
+        assertThat(index.find(624, 2, -1, 100)).isEqualTo(TowerIndex.NOT_FOUND);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void nearestPrefersTheLowerCiOnATie() {
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        builder.add(row(2, 10, 100));
+        builder.add(row(2, 10, 110));
+        builder.add(row(2, 11, 105));
+        TowerIndex index = builder.build();
+
+        assertThat(index.ci(index.nearest(624, 2, 10, 105))).isEqualTo(100);
+        assertThat(index.ci(index.nearest(624, 2, 10, 106))).isEqualTo(110);
+        assertThat(index.ci(index.nearest(624, 2, 10, 110))).isEqualTo(110);
+        assertThat(index.ci(index.nearest(624, 2, 10, 0))).isEqualTo(100);
+        assertThat(index.ci(index.nearest(624, 2, 10, Integer.MAX_VALUE >> 4))).isEqualTo(110);
+        assertThat(index.nearest(624, 2, 12, 105)).isEqualTo(TowerIndex.NOT_FOUND);
+        assertThat(index.nearest(624, 2, 10, -1)).isEqualTo(TowerIndex.NOT_FOUND);
+    }
+
+    @Test
+    void nearestStaysInsideTheLocationArea() {
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        builder.add(row(2, 10, 100));
+        builder.add(row(2, 11, 101));
+        builder.add(row(1, 10, 102));
+        TowerIndex index = builder.build();
+
+        int[] out = new int[5];
+        int count = index.nearest(624, 2, 10, 101, out);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(index.key(out[0])).isEqualTo(TowerIndex.pack(624, 2, 10, 100));
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(7);
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        List<TowerRow> rows = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            TowerRow row = row(1 + random.nextInt(2), 1 + random.nextInt(5), random.nextInt(5_000));
+            if (rows.stream().noneMatch(r -> r.mnc() == row.mnc() && r.lac() == row.lac() && r.ci() == row.ci())) {
+                rows.add(row);
+                builder.add(row);
+            }
+        }
+        TowerIndex index = builder.build();
+
+        int[] out = new int[8];
+        for (int q = 0; q < 500; q++) {
+            int mnc = 1 + random.nextInt(2);
+            int lac = 1 + random.nextInt(5);
+            int ci = random.nextInt(5_200);
+            List<Integer> expected = rows.stream()
+                    .filter(r -> r.mnc() == mnc && r.lac() == lac)
+                    .map(TowerRow::ci)
+                    .sorted(Comparator.<Integer>comparingInt(c -> Math.abs(c - ci)).thenComparing(c -> c))
+                    .toList();
+
+            int single = index.nearest(624, mnc, lac, ci);
+            assertThat(index.ci(single)).isEqualTo(expected.get(0));
+
+            int count = index.nearest(624, mnc, lac, ci, out);
+            assertThat(count).isEqualTo(Math.min(out.length, expected.size()));
+            for (int i = 0; i < count; i++) {
+                assertThat(index.lac(out[i])).isEqualTo(lac);
+                assertThat(Math.abs(index.ci(out[i]) - ci)).isEqualTo(Math.abs(expected.get(i) - ci));
+            }
+        }
+    }
+
+    static TowerRow row(int mnc, int lac, int ci) {
+        return new TowerRow("OP" + mnc, 624, mnc, lac, ci, 4.0 + ci / 1e4, 9.7, "SITE_" + mnc + "_" + ci, null,
+                null, null, null, null, null, null);
+    }
+}
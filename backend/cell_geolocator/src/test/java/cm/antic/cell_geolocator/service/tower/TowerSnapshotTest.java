@@ -0,0 +1,116 @@
+package cm.antic.cell_geolocator.service.tower;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TowerSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private InMemoryTowerIndex index;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        InMemoryTowerIndex.Builder builder = InMemoryTowerIndex.builder();
+        builder.add(new TowerRow("ORANGE", 624, 2, 10, 100, 4.05, 9.7, "Bonabéri", "BTS1",
+                "4G", "1800", "Douala IV", "Wouri", "Littoral", "120"));
+        builder.add(new TowerRow("ORANGE", 624, 2, 10, 110, 4.06, 9.71, "Bonabéri", "BTS1",
+                "4G", "1800", null, null, null, null));
+        builder.add(new TowerRow("MTN", 624, 1, 20, 7, 3.86, 11.52, null, null,
+                null, null, null, null, null, null));
+        index = builder.build();
+        file = dir.resolve("towers.snapshot");
+        TowerSnapshot.write(index, 42L, file);
+    }
+
+    @Test
+    void roundTripKeepsEveryRecord() throws IOException {
+        MappedTowerIndex mapped = TowerSnapshot.open(file);
+
+        assertThat(mapped.size()).isEqualTo(index.size());
+        assertThat(mapped.lacGroupCount()).isEqualTo(index.lacGroupCount());
+        assertThat(mapped.sourceChecksum()).isEqualTo(42L);
+        for (int id = 0; id < index.size(); id++) {
+            assertThat(mapped.row(id)).isEqualTo(index.row(id));
+        }
+        assertThat(mapped.siteName(mapped.find(624, 2, 10, 100))).isEqualTo("Bonabéri");
+        assertThat(mapped.find(624, 2, 10, 105)).isEqualTo(TowerIndex.NOT_FOUND);
+        assertThat(mapped.ci(mapped.nearest(624, 2, 10, 108))).isEqualTo(110);
+    }
+
+    @Test
+    void emptyIndexRoundTrips() throws IOException {
+        Path empty = dir.resolve("empty.snapshot");
+        TowerSnapshot.write(InMemoryTowerIndex.builder().build(), 0L, empty);
+
+        MappedTowerIndex mapped = TowerSnapshot.open(empty);
+
+        assertThat(mapped.size()).isZero();
+        assertThat(mapped.find(624, 2, 10, 100)).isEqualTo(TowerIndex.NOT_FOUND);
+    }
+
+    @Test
+    void rejectsATruncatedFile() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThatThrownBy(() -> TowerSnapshot.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Truncated");
+
+        Files.write(file, Arrays.copyOf(bytes, TowerSnapshot.HEADER_SIZE - 1));
+        assertThatThrownBy(() -> TowerSnapshot.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("size");
+    }
+
+    @Test
+    void rejectsAnotherFileType() throws IOException {
+        corrupt(buf -> buf.putInt(0, 0x504B0304));
+
+        assertThatThrownBy(() -> TowerSnapshot.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a tower snapshot");
+    }
+
+    @Test
+    void rejectsAnotherFormatVersion() throws IOException {
+        corrupt(buf -> buf.putInt(4, TowerSnapshot.FORMAT_VERSION + 1));
+
+        assertThatThrownBy(() -> TowerSnapshot.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("version");
+    }
+
+    @Test
+    void rejectsSectionsThatDisagreeWithTheHeader() throws IOException {
+        corrupt(buf -> buf.putInt(8, buf.getInt(8) + 1));
+        assertThatThrownBy(() -> TowerSnapshot.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Corrupt");
+
+        setUp();
+        corrupt(buf -> buf.putInt(12, -5));
+        assertThatThrownBy(() -> TowerSnapshot.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Corrupt");
+
+        setUp();
+        corrupt(buf -> buf.putLong(48, buf.getLong(48) + 8));
+        assertThatThrownBy(() -> TowerSnapshot.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Corrupt");
+    }
+
+    private void corrupt(Consumer<ByteBuffer> change) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        change.accept(buf);
+        Files.write(file, buf.array());
+    }
+}